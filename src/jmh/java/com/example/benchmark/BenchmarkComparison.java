@@ -0,0 +1,76 @@
+package com.example.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, e.g. of the previous and the current version:
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec@compare -Dbenchmark.baseline=old.json
+ * </pre>
+ * Prints the change of every benchmark found in both files, as a percentage where positive is better, taking the
+ * mode into account (higher throughput is better, lower time is better). Exits with status 1 if a benchmark got
+ * worse by more than the threshold, 10% unless given as the third argument.
+ */
+public final class BenchmarkComparison {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        boolean regressed = false;
+        System.out.printf("%-80s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> result : current.entrySet()) {
+            JsonNode previous = baseline.get(result.getKey());
+            if (previous == null) continue;
+            double before = previous.path("primaryMetric").path("score").asDouble();
+            double after = result.getValue().path("primaryMetric").path("score").asDouble();
+            boolean higherIsBetter = "thrpt".equals(result.getValue().path("mode").asText());
+            double change = (higherIsBetter ? after - before : before - after) / before * 100;
+            boolean worse = change < -threshold;
+            regressed |= worse;
+            String unit = result.getValue().path("primaryMetric").path("scoreUnit").asText();
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%% %s%s%n", result.getKey(), before, after, change, unit,
+                    worse ? "  REGRESSION" : "");
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) System.out.printf("%-80s missing from the current results%n", name);
+        }
+        if (regressed) System.exit(1);
+    }
+
+    /**
+     * Reads a result file, keyed by benchmark name and parameters.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder name = new StringBuilder(result.path("benchmark").asText());
+            Map<String, String> params = new TreeMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = result.path("params").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            if (!params.isEmpty()) name.append(params);
+            results.put(name.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.benchmark;
+
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.KeyDerivationService;
+import com.example.storage.PasswordEntry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry encryption throughput of {@link EntryEncryptionEngine}, in entries per second. Every invocation handles a
+ * batch of BATCH entries. The unpooled benchmark looks up a new Cipher and SecureRandom per entry for comparison.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private EntryEncryptionEngine engine;
+    private List<PasswordEntry> plaintext;
+    private List<PasswordEntry> encrypted;
+
+    @Setup
+    public void setUp() throws Exception {
+        engine = EntryEncryptionEngine.unlock("master".toCharArray(), KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS));
+        plaintext = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) plaintext.add(new PasswordEntry("user" + i, "Secret-Password-" + i, "site" + i + ".com", "Websites"));
+        encrypted = engine.encryptAll(plaintext);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<PasswordEntry> encrypt() throws Exception {
+        return engine.encryptAll(plaintext);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<PasswordEntry> decrypt() throws Exception {
+        return engine.decryptAll(encrypted);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int mixed() throws Exception {
+        int checksum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            PasswordEntry entry = (i & 1) == 0 ? engine.encryptEntry(plaintext.get(i)) : engine.decryptEntry(encrypted.get(i));
+            checksum += entry.password().length();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int encryptUnpooled() throws Exception {
+        int checksum = 0;
+        for (PasswordEntry entry : plaintext) {
+            byte[] iv = new byte[12];
+            new SecureRandom().nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, engine.getVaultKey(), new GCMParameterSpec(128, iv));
+            checksum += cipher.doFinal(entry.password().getBytes(StandardCharsets.UTF_8)).length;
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.benchmark;
+
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+import com.example.security.PasswordHandler;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of deriving a vault key versus the PBKDF2 iteration count, with the per-thread cached SecretKeyFactory of
+ * {@link KeyDerivationService} and with a factory looked up on every call as PasswordHandler used to do, and
+ * end to end through {@link PasswordHandler#hashPassword(char[], KdfParameters)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyDerivationBenchmark {
+
+    @Param({"10000", "100000", "310000", "600000"})
+    public int iterations;
+
+    private final char[] password = "correct horse battery staple".toCharArray();
+    private KdfParameters parameters;
+
+    @Setup
+    public void setUp() {
+        parameters = KeyDerivationService.newParameters(iterations);
+    }
+
+    @Benchmark
+    public byte[] cachedFactory() throws Exception {
+        return KeyDerivationService.deriveKey(password, parameters);
+    }
+
+    @Benchmark
+    public byte[] factoryPerCall() throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(password, parameters.salt(), parameters.iterations(), parameters.keyLength());
+        return SecretKeyFactory.getInstance(parameters.algorithm()).generateSecret(spec).getEncoded();
+    }
+
+    @Benchmark
+    public String passwordHandler() throws Exception {
+        return PasswordHandler.hashPassword(password, parameters);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.benchmark;
+
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.OperationMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the instrumentation on the hot paths: recording into a {@link LatencyHistogram} and a full
+ * start / success pair of {@link OperationMetrics}, next to the two System.nanoTime() calls alone. The instrumented
+ * storage operations themselves are measured by {@link StorageBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final OperationMetrics metrics = new OperationMetrics("benchmark");
+    private long value;
+
+    @Benchmark
+    public long nanoTimeOnly() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(value++ & 0xFFFFF);
+    }
+
+    @Benchmark
+    public void operationSuccess() {
+        metrics.success(OperationMetrics.start());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void operationSuccessContended() {
+        metrics.success(OperationMetrics.start());
+    }
+}
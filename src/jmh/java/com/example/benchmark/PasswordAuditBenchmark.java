@@ -0,0 +1,98 @@
+package com.example.benchmark;
+
+import com.example.additionalfuc.AuditReport;
+import com.example.additionalfuc.BreachedPasswordList;
+import com.example.additionalfuc.PasswordValidator;
+import com.example.storage.PasswordEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breach list lookup latency on a memory mapped list of random hashes, and the time of a full and an incremental
+ * audit of a vault.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordAuditBenchmark {
+
+    @Param({"10000000"})
+    public int breachedHashes;
+
+    @Param({"10000"})
+    public int entries;
+
+    private Path listFile;
+    private BreachedPasswordList breachList;
+    private byte[][] probes;
+    private int nextProbe;
+    private List<PasswordEntry> vault;
+    private PasswordValidator incrementalValidator;
+    private int edits;
+
+    @Setup
+    public void setUp() throws IOException, GeneralSecurityException {
+        Random random = new Random(42);
+        byte[][] hashes = new byte[breachedHashes][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = new byte[BreachedPasswordList.HASH_LENGTH];
+            random.nextBytes(hashes[i]);
+        }
+        Arrays.sort(hashes, Arrays::compareUnsigned);
+        listFile = Files.createTempFile("breached", ".bin");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(listFile), 1 << 16)) {
+            for (byte[] hash : hashes) out.write(hash);
+        }
+        breachList = BreachedPasswordList.open(listFile);
+        probes = new byte[1024][];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = i % 2 == 0 ? hashes[random.nextInt(hashes.length)]
+                    : BreachedPasswordList.sha1(("probe" + i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        vault = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            vault.add(new PasswordEntry("user" + i, "Secret-" + random.nextInt(entries / 2), "site" + i + ".com", null));
+        }
+        incrementalValidator = new PasswordValidator(null, breachList);
+        incrementalValidator.audit(vault);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        breachList.close();
+        Files.deleteIfExists(listFile);
+    }
+
+    @Benchmark
+    public boolean breachLookup() {
+        return breachList.contains(probes[nextProbe++ & (probes.length - 1)]);
+    }
+
+    @Benchmark
+    public AuditReport fullAudit() throws GeneralSecurityException {
+        return new PasswordValidator(null, breachList).audit(vault);
+    }
+
+    @Benchmark
+    public AuditReport incrementalAudit() throws GeneralSecurityException {
+        int index = edits % entries;
+        vault.set(index, new PasswordEntry("user" + index, "Edited-" + edits++, "site" + index + ".com", null));
+        return incrementalValidator.audit(vault);
+    }
+}
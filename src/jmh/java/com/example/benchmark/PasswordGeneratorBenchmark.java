@@ -0,0 +1,48 @@
+package com.example.benchmark;
+
+import com.example.utilities.PasswordGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passwords generated per second by the static {@link PasswordGenerator#generatePassword} and by a reusable
+ * generator, one at a time and in parallel batches of BATCH.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordGeneratorBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"16", "32"})
+    public int length;
+
+    private PasswordGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = new PasswordGenerator(true, true, true, length);
+    }
+
+    @Benchmark
+    public String staticMethod() throws Exception {
+        return PasswordGenerator.generatePassword(true, true, true, length);
+    }
+
+    @Benchmark
+    public char[] generator() {
+        return generator.generate();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<char[]> batch() {
+        return generator.generateBatch(BATCH);
+    }
+}
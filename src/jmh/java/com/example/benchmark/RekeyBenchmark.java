@@ -0,0 +1,88 @@
+package com.example.benchmark;
+
+import com.example.interfaces.VaultRekeyCallback;
+import com.example.security.EncryptionUtilities;
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+import com.example.storage.AtomicVaultFile;
+import com.example.storage.PasswordEntry;
+import com.example.storage.VaultRekeyer;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to re-key a vault file with {@link VaultRekeyer} versus the number of worker threads. Every invocation
+ * re-keys the vault from key A to key B and back, so the file stays decryptable with the current key.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RekeyBenchmark {
+
+    private static final VaultRekeyCallback NO_OP_CALLBACK = new VaultRekeyCallback() {
+        @Override
+        public void onRekeySuccess(long entriesRekeyed) {
+        }
+
+        @Override
+        public void onRekeyError(String errorMessage) {
+        }
+    };
+
+    @Param({"1000000"})
+    public int entries;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Path directory;
+    private Path vaultFile;
+    private ForkJoinPool pool;
+    private KdfParameters parameters;
+    private SecretKey currentKey;
+    private SecretKey otherKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("rekey-benchmark");
+        vaultFile = directory.resolve("passwords.vault");
+        List<PasswordEntry> vault = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) vault.add(new PasswordEntry("user" + i, "secret" + i, "site" + i + ".com", "Websites"));
+        parameters = KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS);
+        currentKey = EncryptionUtilities.deriveVaultKey("first".toCharArray(), parameters);
+        otherKey = EncryptionUtilities.deriveVaultKey("second".toCharArray(), parameters);
+        AtomicVaultFile.write(vaultFile, vault, 0);
+        pool = new ForkJoinPool(threads);
+        VaultRekeyer.rekey(vaultFile, null, currentKey, parameters, pool, NO_OP_CALLBACK);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public long rekey() throws IOException {
+        long rekeyed = VaultRekeyer.rekey(vaultFile, currentKey, otherKey, parameters, pool, NO_OP_CALLBACK);
+        SecretKey previous = currentKey;
+        currentKey = otherKey;
+        otherKey = previous;
+        return rekeyed;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.benchmark;
+
+import com.example.storage.PasswordEntry;
+import com.example.storage.PasswordSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search-as-you-type latency of {@link PasswordSearchIndex} on a large vault.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+
+    private static final String[] DOMAINS = {"com", "org", "net", "io", "dev"};
+    private static final String[] FOLDERS = {"Websites", "Applications", "Email Accounts", "Banking", "Work"};
+
+    @Param({"500000"})
+    public int entries;
+
+    private PasswordSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new PasswordSearchIndex();
+        for (int i = 0; i < entries; i++) {
+            index.add(new PasswordEntry("user" + random.nextInt(entries), "secret",
+                    "site" + i + "." + DOMAINS[i % DOMAINS.length], FOLDERS[i % FOLDERS.length]));
+        }
+    }
+
+    @Benchmark
+    public List<PasswordEntry> prefix() {
+        return index.searchPrefix("site4242", 50);
+    }
+
+    @Benchmark
+    public List<PasswordEntry> substring() {
+        return index.searchSubstring("e42424", 50);
+    }
+
+    @Benchmark
+    public List<PasswordEntry> fuzzy() {
+        return index.searchFuzzy("sitr424242", 1, 50);
+    }
+
+    @Benchmark
+    public List<PasswordEntry> searchAsYouType() {
+        return index.search("site12345.co", 50);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.benchmark;
+
+import com.example.interfaces.PasswordLoadCallback;
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.storage.PasswordEntry;
+import com.example.storage.SerializationPasswordStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of the main {@link SerializationPasswordStorage} operations versus the size of the vault: adding an entry,
+ * checking whether one exists, and saving and loading the whole vault. Vaults come from {@link VaultDataGenerator}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    private static final int PROBES = 1024;
+
+    private static final PasswordSaveCallback SAVE_CALLBACK = new PasswordSaveCallback() {
+        @Override
+        public void onPasswordSaveSuccess() {
+        }
+
+        @Override
+        public void onPasswordSaveError(String errorMessage) {
+            throw new IllegalStateException(errorMessage);
+        }
+
+        @Override
+        public void onAddPasswordEntrySuccess() {
+        }
+
+        @Override
+        public void onAddPasswordEntryError(String error) {
+        }
+    };
+
+    private static final PasswordLoadCallback LOAD_CALLBACK = new PasswordLoadCallback() {
+        @Override
+        public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+        }
+
+        @Override
+        public void onPasswordLoadError(String errorMessage) {
+            throw new IllegalStateException(errorMessage);
+        }
+    };
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+
+    private Path directory;
+    private SerializationPasswordStorage storage;
+    private SerializationPasswordStorage savedStorage;
+    private PasswordEntry[] existing;
+    private PasswordEntry[] extra;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("storage-benchmark");
+        VaultDataGenerator generator = new VaultDataGenerator(42);
+        List<PasswordEntry> vault = generator.vault(entries);
+        storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(vault);
+        existing = new PasswordEntry[PROBES];
+        extra = new PasswordEntry[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            existing[i] = vault.get((int) ((long) i * entries / PROBES));
+            extra[i] = generator.extraEntry(i);
+        }
+        // Saving opens the journal, after which every add is written to disk. Only this copy is saved.
+        savedStorage = new SerializationPasswordStorage();
+        savedStorage.addPasswordEntries(vault);
+        savedStorage.savePasswords(SAVE_CALLBACK, directory.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        savedStorage.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    /**
+     * Adds an entry and removes it again, so the vault keeps its size. This storage was never saved, so no journal
+     * is written and this measures the indexes only.
+     */
+    @Benchmark
+    public void addAndRemove() {
+        PasswordEntry passwordEntry = extra[next++ & (PROBES - 1)];
+        storage.addPasswordEntry(passwordEntry, SAVE_CALLBACK);
+        storage.removePasswordEntry(passwordEntry);
+    }
+
+    @Benchmark
+    public boolean existsHit() {
+        return storage.passwordAlreadyExists(existing[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean existsMiss() {
+        return storage.passwordAlreadyExists(extra[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public void save() {
+        savedStorage.savePasswords(SAVE_CALLBACK, directory.toString());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public int load() {
+        SerializationPasswordStorage loaded = new SerializationPasswordStorage();
+        loaded.loadPasswords(LOAD_CALLBACK, directory.toString());
+        loaded.close();
+        return loaded.size();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.benchmark;
+
+import com.example.interfaces.PasswordLoadCallback;
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.storage.PasswordEntry;
+import com.example.storage.SerializationPasswordStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Search-as-you-type latency of {@link SerializationPasswordStorage#searchPasswordEntries} right after a load,
+ * while the search index is still being built in the background, and once it is ready. Unlike
+ * {@link SearchIndexBenchmark}, this goes through the storage and its lock. The query matches nothing, so every
+ * search is a worst case.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StorageSearchBenchmark {
+
+    private static final String QUERY = "qwertz";
+
+    private static final PasswordSaveCallback SAVE_CALLBACK = new PasswordSaveCallback() {
+        @Override
+        public void onPasswordSaveSuccess() {
+        }
+
+        @Override
+        public void onPasswordSaveError(String errorMessage) {
+            throw new IllegalStateException(errorMessage);
+        }
+
+        @Override
+        public void onAddPasswordEntrySuccess() {
+        }
+
+        @Override
+        public void onAddPasswordEntryError(String error) {
+        }
+    };
+
+    private static final PasswordLoadCallback LOAD_CALLBACK = new PasswordLoadCallback() {
+        @Override
+        public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+        }
+
+        @Override
+        public void onPasswordLoadError(String errorMessage) {
+            throw new IllegalStateException(errorMessage);
+        }
+    };
+
+    @Param({"100000", "500000"})
+    public int entries;
+
+    private Path directory;
+    // Loaded once, with its index built.
+    private SerializationPasswordStorage indexed;
+
+    /**
+     * A storage loaded again before every call, so each call is the first search after a load.
+     */
+    @State(Scope.Thread)
+    public static class JustLoaded {
+
+        private SerializationPasswordStorage storage;
+
+        @Setup(Level.Invocation)
+        public void load(StorageSearchBenchmark benchmark) {
+            storage = new SerializationPasswordStorage();
+            storage.loadPasswords(LOAD_CALLBACK, benchmark.directory.toString());
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() {
+            storage.buildSearchIndex().join();
+            storage.close();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("search-benchmark");
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(new VaultDataGenerator(42).vault(entries));
+        storage.savePasswords(SAVE_CALLBACK, directory.toString());
+        storage.close();
+        indexed = new SerializationPasswordStorage();
+        indexed.loadPasswords(LOAD_CALLBACK, directory.toString());
+        indexed.buildSearchIndex().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        indexed.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    /**
+     * The first keystroke after a load, answered by scanning the entries while the index is built.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public List<PasswordEntry> firstSearch(JustLoaded justLoaded) {
+        return justLoaded.storage.searchPasswordEntries(QUERY, 50);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public List<PasswordEntry> indexedSearch() {
+        return indexed.searchPasswordEntries(QUERY, 50);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.benchmark;
+
+import com.example.storage.PasswordEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic vaults for the benchmarks. The same seed always produces the same vault, so results of
+ * different versions are measured on identical data.
+ * <p>
+ * Vaults look like real ones rather than 'site1, site2, ...': websites are drawn from a skewed distribution so some
+ * accounts share a website, usernames repeat across websites, folders are nested, and about 10% of the passwords
+ * are reused from earlier entries. Passwords are 8 to 24 printable characters.
+ */
+public final class VaultDataGenerator {
+
+    private static final String[] DOMAINS = {"com", "org", "net", "io", "dev", "co.uk", "de"};
+    private static final String[] WORDS = {"mail", "shop", "bank", "cloud", "news", "games", "social", "travel",
+            "music", "photo", "code", "forum", "market", "health", "learn", "video"};
+    private static final String[] FOLDERS = {"Websites", "Applications", "Email Accounts", "Banking", "Work",
+            "Work/Servers", "Work/Databases", "Personal/Shopping", null};
+    private static final String PASSWORD_CHARACTERS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%^&*()-_=+";
+    private static final double REUSE_RATE = 0.1;
+
+    private final Random random;
+
+    public VaultDataGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a vault of distinct entries.
+     * @param size The number of entries.
+     * @return The entries.
+     */
+    public List<PasswordEntry> vault(int size) {
+        List<PasswordEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String password = i > 0 && random.nextDouble() < REUSE_RATE
+                    ? entries.get(random.nextInt(i)).password() : password();
+            // The index keeps every account distinct, whatever the random parts are.
+            entries.add(new PasswordEntry(username() + i, password, website(size), FOLDERS[random.nextInt(FOLDERS.length)]));
+        }
+        return entries;
+    }
+
+    /**
+     * Generates one entry which is not part of any vault generated with {@link #vault}.
+     * @param index A number distinguishing the entry from the other generated entries.
+     * @return The entry.
+     */
+    public PasswordEntry extraEntry(int index) {
+        return new PasswordEntry("extra" + index, password(), website(1000), FOLDERS[index % FOLDERS.length]);
+    }
+
+    private String website(int vaultSize) {
+        // Squaring a uniform value skews the distribution towards the first websites.
+        double skewed = random.nextDouble();
+        int site = (int) (skewed * skewed * Math.max(vaultSize / 4, 1));
+        return WORDS[site % WORDS.length] + site + "." + DOMAINS[site % DOMAINS.length];
+    }
+
+    private String username() {
+        return WORDS[random.nextInt(WORDS.length)] + "." + WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private String password() {
+        char[] password = new char[8 + random.nextInt(17)];
+        for (int i = 0; i < password.length; i++) {
+            password[i] = PASSWORD_CHARACTERS.charAt(random.nextInt(PASSWORD_CHARACTERS.length()));
+        }
+        return new String(password);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.additionalfuc;
+
+import java.util.List;
+
+/**
+ * Outcome of a vault audit.
+ * @param entries The audit result of every entry, in the order of the audited collection.
+ * @param analysed The number of entries analysed by this audit; the others were unchanged since the last one.
+ * @param elapsedNanos The time the audit took.
+ */
+public record AuditReport(List<EntryAudit> entries, int analysed, long elapsedNanos) {
+
+    public AuditReport {
+        entries = List.copyOf(entries);
+    }
+
+    /**
+     * Returns the entries which need the user's attention.
+     * @return The weak, breached or reused entries.
+     */
+    public List<EntryAudit> atRisk() {
+        return entries.stream().filter(EntryAudit::isAtRisk).toList();
+    }
+
+    public long breachedCount() {
+        return entries.stream().filter(EntryAudit::breached).count();
+    }
+
+    public long reusedCount() {
+        return entries.stream().filter(audit -> audit.reuseCount() > 0).count();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.additionalfuc;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Local list of breached passwords, e.g. the 'Pwned Passwords' SHA-1 list, looked up without loading it into the
+ * heap.
+ * <p>
+ * The list is kept as a binary file of sorted 20 byte SHA-1 hashes, see {@link #convert}. The file is memory
+ * mapped in segments of up to SEGMENT_RECORDS hashes (a single mapping is limited to 2 GB) and searched with a
+ * binary search, which touches about 30 pages of a list of a billion hashes; the pages on the search path stay in
+ * the OS page cache, so lookups take microseconds. Lookups are thread-safe.
+ */
+public class BreachedPasswordList implements Closeable {
+
+    public static final int HASH_LENGTH = 20;
+
+    static final long SEGMENT_RECORDS = (1 << 30) / HASH_LENGTH;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private BreachedPasswordList(FileChannel channel, MappedByteBuffer[] segments, long size) {
+        this.channel = channel;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Maps a binary hash list written by {@link #convert}.
+     * @param file The binary hash list.
+     * @return The list.
+     * @throws IOException If the file could not be mapped or is not a list of hashes.
+     */
+    public static BreachedPasswordList open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length % HASH_LENGTH != 0) throw new IOException("Breach list size is not a multiple of " + HASH_LENGTH);
+            long size = length / HASH_LENGTH;
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = i * SEGMENT_RECORDS;
+                long records = Math.min(SEGMENT_RECORDS, size - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * HASH_LENGTH, records * HASH_LENGTH);
+            }
+            return new BreachedPasswordList(channel, segments, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Converts a text list of upper or lower case hex SHA-1 hashes, one per line and in ascending order, into the
+     * binary format. Anything after a ':' on a line (the breach count of the 'Pwned Passwords' downloads) is
+     * ignored. The text list is streamed, so lists of any size can be converted.
+     * @param textFile The text list, as downloaded.
+     * @param binaryFile The binary list to write.
+     * @return The number of hashes written.
+     * @throws IOException If the text list could not be read, is malformed or is not sorted.
+     */
+    public static long convert(Path textFile, Path binaryFile) throws IOException {
+        Path tempFile = binaryFile.resolveSibling(binaryFile.getFileName() + ".tmp");
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(textFile, StandardCharsets.US_ASCII);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16)) {
+            byte[] previous = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int end = line.indexOf(':');
+                String hex = (end < 0 ? line : line.substring(0, end)).trim();
+                if (hex.isEmpty()) continue;
+                if (hex.length() != HASH_LENGTH * 2) throw new IOException("Invalid hash on line " + (count + 1) + ": " + hex);
+                byte[] hash;
+                try {
+                    hash = HexFormat.of().parseHex(hex);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid hash on line " + (count + 1) + ": " + hex, e);
+                }
+                if (previous != null && Arrays.compareUnsigned(previous, hash) >= 0) {
+                    throw new IOException("Breach list is not sorted by hash at line " + (count + 1));
+                }
+                out.write(hash);
+                previous = hash;
+                count++;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Returns the SHA-1 of a password, as used by breach lists.
+     * @param password The UTF-8 encoded password.
+     * @return The hash.
+     */
+    public static byte[] sha1(byte[] password) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(password);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Returns true if the hash of a password is in the list.
+     * @param hash The SHA-1 of the password.
+     * @return True if the password was breached.
+     */
+    public boolean contains(byte[] hash) {
+        if (hash.length != HASH_LENGTH) throw new IllegalArgumentException("Not a SHA-1 hash");
+        long low = 0;
+        long high = size - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int comparison = compare(middle, hash);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of hashes in the list.
+     * @return The number of hashes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Closes the file. The mappings are released once the list is garbage collected.
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Compares the hash at the given index with the given hash, as unsigned bytes, without copying it.
+     */
+    private int compare(long index, byte[] hash) {
+        MappedByteBuffer segment = segments[(int) (index / SEGMENT_RECORDS)];
+        int offset = (int) (index % SEGMENT_RECORDS) * HASH_LENGTH;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int comparison = Integer.compare(Byte.toUnsignedInt(segment.get(offset + i)), Byte.toUnsignedInt(hash[i]));
+            if (comparison != 0) return comparison;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.additionalfuc;
+
+import com.example.security.EncryptionUtilities;
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Encrypted archive format used for exports, protected by a passphrase of its own rather than the vault key, so an
+ * archive can be moved to another vault.
+ * <p>
+ * The header holds the magic number, the version, the KDF parameters of the archive key and a random nonce prefix.
+ * The content follows in chunks of up to CHUNK_SIZE bytes, each encrypted separately with AES-GCM so neither side
+ * ever holds more than one chunk. A chunk is a final flag byte, the int length of the ciphertext and the
+ * ciphertext. The IV of a chunk is the nonce prefix followed by the chunk number, and the final flag is
+ * authenticated, so reordered, dropped or truncated chunks fail to decrypt.
+ */
+public class EncryptedArchive {
+
+    public static final int MAGIC = 0x53504541; // "SPEA"
+    public static final short VERSION = 1;
+
+    // Archives come from outside the vault, so their KDF cost is bounded before any key is derived. Exports use
+    // far fewer iterations; the cap keeps a crafted header from stalling an import for minutes.
+    public static final int MAX_ITERATIONS = 5_000_000;
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int NONCE_PREFIX_LENGTH = 8;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private EncryptedArchive() {
+    }
+
+    /**
+     * Starts a new archive. The returned stream must be closed to write the final chunk.
+     * @param out The stream to write the archive to.
+     * @param passphrase The passphrase of the archive.
+     * @param iterations The number of KDF iterations for the archive key.
+     * @return The stream to write the plaintext content to.
+     * @throws IOException If the header could not be written or the key could not be derived.
+     */
+    public static OutputStream newOutputStream(OutputStream out, char[] passphrase, int iterations) throws IOException {
+        KdfParameters parameters = KeyDerivationService.newParameters(iterations);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        RANDOM.nextBytes(noncePrefix);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeUTF(parameters.algorithm());
+        header.writeInt(parameters.iterations());
+        header.writeInt(parameters.keyLength());
+        byte[] salt = parameters.salt();
+        header.writeShort(salt.length);
+        header.write(salt);
+        header.write(noncePrefix);
+        return new ChunkOutputStream(out, deriveKey(passphrase, parameters), noncePrefix);
+    }
+
+    /**
+     * Opens an archive for reading.
+     * @param in The stream to read the archive from.
+     * @param passphrase The passphrase of the archive.
+     * @return The stream of the decrypted content.
+     * @throws IOException If the header is invalid, asks for more than MAX_ITERATIONS KDF iterations or the key
+     *                     could not be derived. A wrong passphrase or a
+     *                     damaged archive is reported when the first chunk is read.
+     */
+    public static InputStream newInputStream(InputStream in, char[] passphrase) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != MAGIC) throw new IOException("Not an encrypted archive");
+        short version = header.readShort();
+        if (version != VERSION) throw new IOException("Unsupported archive version " + version);
+        String algorithm = header.readUTF();
+        int iterations = header.readInt();
+        int keyLength = header.readInt();
+        byte[] salt = new byte[header.readUnsignedShort()];
+        header.readFully(salt);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        header.readFully(noncePrefix);
+        if (iterations > MAX_ITERATIONS) {
+            throw new IOException("Archive KDF iteration count " + iterations + " exceeds " + MAX_ITERATIONS);
+        }
+        if (keyLength != 128 && keyLength != 192 && keyLength != 256) {
+            throw new IOException("Invalid archive key length " + keyLength);
+        }
+        KdfParameters parameters;
+        try {
+            parameters = new KdfParameters(algorithm, iterations, keyLength, salt);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid archive KDF parameters", e);
+        }
+        return new ChunkInputStream(header, deriveKey(passphrase, parameters), noncePrefix);
+    }
+
+    private static SecretKey deriveKey(char[] passphrase, KdfParameters parameters) throws IOException {
+        try {
+            return EncryptionUtilities.deriveVaultKey(passphrase, parameters);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Could not derive the archive key", e);
+        }
+    }
+
+    private static Cipher newCipher(int mode, SecretKey key, byte[] noncePrefix, long chunk, boolean last)
+            throws IOException {
+        if (chunk > 0xFFFFFFFFL) throw new IOException("Archive has too many chunks");
+        byte[] iv = ByteBuffer.allocate(NONCE_PREFIX_LENGTH + Integer.BYTES).put(noncePrefix).putInt((int) chunk).array();
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not initialise the archive cipher", e);
+        }
+    }
+
+    /**
+     * Buffers one chunk and only encrypts it once more content arrives, so the last chunk can be flagged on close.
+     */
+    private static final class ChunkOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final SecretKey key;
+        private final byte[] noncePrefix;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int length;
+        private long chunkNumber;
+        private boolean closed;
+
+        ChunkOutputStream(OutputStream out, SecretKey key, byte[] noncePrefix) {
+            this.out = new DataOutputStream(out);
+            this.key = key;
+            this.noncePrefix = noncePrefix;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            if (closed) throw new IOException("Archive is closed");
+            while (count > 0) {
+                if (length == CHUNK_SIZE) writeChunk(false);
+                int copied = Math.min(count, CHUNK_SIZE - length);
+                System.arraycopy(bytes, offset, chunk, length, copied);
+                length += copied;
+                offset += copied;
+                count -= copied;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                writeChunk(true);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeChunk(boolean last) throws IOException {
+            Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, key, noncePrefix, chunkNumber++, last);
+            byte[] ciphertext;
+            try {
+                ciphertext = cipher.doFinal(chunk, 0, length);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not encrypt the archive", e);
+            }
+            out.writeBoolean(last);
+            out.writeInt(ciphertext.length);
+            out.write(ciphertext);
+            length = 0;
+        }
+    }
+
+    private static final class ChunkInputStream extends InputStream {
+        private final DataInputStream in;
+        private final SecretKey key;
+        private final byte[] noncePrefix;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private long chunkNumber;
+        private boolean last;
+
+        ChunkInputStream(DataInputStream in, SecretKey key, byte[] noncePrefix) {
+            this.in = in;
+            this.key = key;
+            this.noncePrefix = noncePrefix;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException {
+            if (count == 0) return 0;
+            while (position == chunk.length) {
+                if (last) return -1;
+                readChunk();
+            }
+            int copied = Math.min(count, chunk.length - position);
+            System.arraycopy(chunk, position, bytes, offset, copied);
+            position += copied;
+            return copied;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void readChunk() throws IOException {
+            boolean lastChunk;
+            byte[] ciphertext;
+            try {
+                lastChunk = in.readBoolean();
+                int length = in.readInt();
+                if (length < 0 || length > CHUNK_SIZE + TAG_BITS / 8) throw new IOException("Invalid archive chunk length " + length);
+                ciphertext = new byte[length];
+                in.readFully(ciphertext);
+            } catch (EOFException e) {
+                throw new IOException("Archive is truncated", e);
+            }
+            Cipher cipher = newCipher(Cipher.DECRYPT_MODE, key, noncePrefix, chunkNumber++, lastChunk);
+            try {
+                chunk = cipher.doFinal(ciphertext);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Wrong passphrase or damaged archive", e);
+            }
+            position = 0;
+            last = lastChunk;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.additionalfuc;
+
+import com.example.storage.PasswordEntry;
+
+/**
+ * Audit result of one entry.
+ * @param entry The audited entry.
+ * @param strength The estimated strength of its password.
+ * @param breached True if its password is in the breached password list.
+ * @param reuseCount The number of other entries in the vault with the same password.
+ */
+public record EntryAudit(PasswordEntry entry, PasswordStrength strength, boolean breached, int reuseCount) {
+
+    /**
+     * Returns true if the entry needs the user's attention.
+     * @return True if the password is weak, breached or reused.
+     */
+    public boolean isAtRisk() {
+        return breached || reuseCount > 0 || strength.score().compareTo(PasswordStrength.Score.FAIR) < 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.additionalfuc;
+
+/**
+ * Outcome of an export.
+ * @param entriesExported The number of entries written.
+ * @param bytesWritten The size of the export file.
+ * @param checksum The hex encoded SHA-256 of the export file, also stored next to it.
+ * @param elapsedNanos The time the export took.
+ */
+public record ExportResult(long entriesExported, long bytesWritten, String checksum, long elapsedNanos) {
+}
@@ -0,0 +1,26 @@
+package com.example.additionalfuc;
+
+import java.util.List;
+
+/**
+ * Outcome of an import.
+ * @param rowsRead The number of rows read from the file.
+ * @param imported The number of entries added to the storage.
+ * @param duplicates The number of rows which were already in the storage (or earlier in the file).
+ * @param rejected The number of rows which could not be mapped to an entry.
+ * @param rejections A description of the first rejected rows, at most MAX_REPORTED_REJECTIONS.
+ * @param elapsedNanos The time the import took.
+ */
+public record ImportResult(long rowsRead, long imported, long duplicates, long rejected, List<String> rejections,
+                           long elapsedNanos) {
+
+    public static final int MAX_REPORTED_REJECTIONS = 100;
+
+    /**
+     * Returns the import speed.
+     * @return The number of rows read per second.
+     */
+    public double rowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsRead * 1_000_000_000.0 / elapsedNanos;
+    }
+}
@@ -1,4 +1,707 @@
 package com.example.additionalfuc;
 
+import com.example.config.AppConfiguration;
+import com.example.config.ConfigurationFile;
+import com.example.interfaces.ExportCallback;
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.security.EncryptionUtilities;
+import com.example.security.EntryEncryptionEngine;
+import com.example.storage.AtomicVaultFile;
+import com.example.storage.Folder;
+import com.example.storage.PasswordEntry;
+import com.example.storage.SerializationPasswordStorage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Imports the CSV and JSON exports of other password managers, and exports the vault in the same formats.
+ * <p>
+ * Files are streamed: a producer thread parses rows (CSV by hand, JSON with Jackson's streaming JsonParser, one
+ * item at a time) and hands batches of IMPORT_BATCH_SIZE entries to the calling thread through a bounded queue.
+ * The calling thread adds each batch to the storage, skipping the accounts it already holds, and the storage
+ * commits the batch with a single journal write. The vault snapshot is saved once at the end. Memory use is
+ * bounded by the queue, whatever the size of the file.
+ * <p>
+ * Columns and fields are matched by name, case-insensitively, using the names of common exports (e.g. 'url',
+ * 'login_uri' or 'website' for the website). Rows without a password, or without both a website and a username,
+ * are rejected.
+ * <p>
+ * Exports are written entry by entry, with Jackson's streaming JsonGenerator for JSON, through a buffer to the
+ * file channel, optionally wrapped in an {@link EncryptedArchive}. The SHA-256 of the file is computed while it is
+ * written and stored next to it, see {@link #verifyChecksum}.
+ */
 public class PasswordExportImport {
+
+    public enum Format {CSV, JSON}
+
+    public static final String CHECKSUM_SUFFIX = ".sha256";
+
+    static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    private static final int EXPORT_PROGRESS_INTERVAL = 1000;
+
+    private static final Set<String> ITEM_ARRAY_NAMES = Set.of("items", "entries", "passwords", "logins");
+    private static final List<String> WEBSITE_NAMES = List.of("website", "url", "login_uri", "uri", "uris", "name", "title");
+    private static final List<String> USERNAME_NAMES = List.of("username", "login_username", "user", "login", "email");
+    private static final List<String> PASSWORD_NAMES = List.of("password", "login_password", "pass");
+    private static final List<String> FOLDER_NAMES = List.of("folder", "grouping", "group", "category");
+
+    private static final Logger LOGGER = Logger.getLogger(PasswordExportImport.class.getName());
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ExecutorService EXPORT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "vault-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SerializationPasswordStorage passwordStorage;
+    private final EntryEncryptionEngine encryptionEngine;
+    private final int archiveIterations;
+
+    /**
+     * @param passwordStorage The storage to import into.
+     * @param encryptionEngine Encrypts the imported passwords under the vault key. Passwords are imported as they
+     *                         are in the file when null.
+     */
+    public PasswordExportImport(SerializationPasswordStorage passwordStorage, EntryEncryptionEngine encryptionEngine) {
+        this(passwordStorage, encryptionEngine, ConfigurationFile.DEFAULT_KDF_ITERATIONS);
+    }
+
+    /**
+     * @param appConfig The configuration giving the number of PBKDF2 iterations for the key of an encrypted export.
+     */
+    public PasswordExportImport(SerializationPasswordStorage passwordStorage, EntryEncryptionEngine encryptionEngine,
+                                AppConfiguration appConfig) {
+        this(passwordStorage, encryptionEngine, appConfig.getKdfIterations());
+    }
+
+    private PasswordExportImport(SerializationPasswordStorage passwordStorage, EntryEncryptionEngine encryptionEngine,
+                                 int archiveIterations) {
+        this.passwordStorage = passwordStorage;
+        this.encryptionEngine = encryptionEngine;
+        this.archiveIterations = archiveIterations;
+    }
+
+    /**
+     * Returns the format of a file from its extension.
+     * @param file The file to import.
+     * @return The format of the file.
+     * @throws IllegalArgumentException If the extension is not '.csv' or '.json'.
+     */
+    public static Format formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) return Format.CSV;
+        if (name.endsWith(".json")) return Format.JSON;
+        throw new IllegalArgumentException("Unsupported import file: " + file.getFileName());
+    }
+
+    /**
+     * Imports a file into the storage and saves the vault once every row has been added.
+     * @param file The file to import.
+     * @param format The format of the file.
+     * @param locationToSave The directory holding the vault file.
+     * @param callback The callback interface to handle the result of the final save.
+     * @return The number of imported, duplicate and rejected rows and the import speed.
+     * @throws IOException If the file could not be read or parsed. The batches added before the failure are kept.
+     */
+    public ImportResult importFile(Path file, Format format, String locationToSave, PasswordSaveCallback callback)
+            throws IOException {
+        ImportResult result = importEntries(file, format);
+        passwordStorage.savePasswords(callback, locationToSave);
+        return result;
+    }
+
+    /**
+     * Imports a file into the storage without saving the vault snapshot. Batches are still committed to the
+     * journal when the vault is open.
+     * @param file The file to import.
+     * @param format The format of the file.
+     * @return The number of imported, duplicate and rejected rows and the import speed.
+     * @throws IOException If the file could not be read or parsed. The batches added before the failure are kept.
+     */
+    public ImportResult importEntries(Path file, Format format) throws IOException {
+        return importEntries(file, format, null);
+    }
+
+    /**
+     * Imports an encrypted archive written by {@link #exportEncrypted} without saving the vault snapshot.
+     * @param file The archive to import.
+     * @param format The format of the document inside the archive.
+     * @param passphrase The passphrase of the archive.
+     * @return The number of imported, duplicate and rejected rows and the import speed.
+     * @throws IOException If the archive could not be read, decrypted or parsed. The batches added before the
+     *                     failure are kept.
+     */
+    public ImportResult importEncrypted(Path file, Format format, char[] passphrase) throws IOException {
+        return importEntries(file, format, passphrase);
+    }
+
+    private ImportResult importEntries(Path file, Format format, char[] passphrase) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<List<PasswordEntry>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        RowParser parser = new RowParser(file, format, passphrase, queue);
+        Thread producer = new Thread(parser, "password-import");
+        producer.setDaemon(true);
+        producer.start();
+
+        long imported = 0;
+        long added = 0;
+        boolean finished = false;
+        try {
+            while (true) {
+                List<PasswordEntry> batch = queue.take();
+                if (batch.isEmpty()) break;
+                added += batch.size();
+                imported += passwordStorage.addPasswordEntries(newAccounts(batch));
+            }
+            producer.join();
+            finished = true;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Import was interrupted");
+        } finally {
+            // Whatever stopped the import, the producer must not stay blocked on the queue with the file open.
+            if (!finished) stopProducer(producer);
+        }
+        if (parser.failure != null) throw parser.failure;
+        return new ImportResult(parser.rowsRead, imported, added - imported, parser.rejected,
+                List.copyOf(parser.rejections), System.nanoTime() - start);
+    }
+
+    /**
+     * Interrupts the producer and waits for it to close the file. The interrupt status of the calling thread is
+     * kept.
+     */
+    private static void stopProducer(Thread producer) {
+        boolean interrupted = Thread.interrupted();
+        producer.interrupt();
+        while (producer.isAlive()) {
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Exports entries to a plaintext CSV or JSON file, decrypting their passwords if an encryption engine is set.
+     * @param file The file to write.
+     * @param format The format of the file.
+     * @param folders The folders to export, including their subfolders, or null to export the whole vault.
+     * @return The number of exported entries and the checksum of the file.
+     * @throws IOException If the file could not be written, or an entry is encrypted and no encryption engine is
+     *                     set. No partial file is left behind.
+     */
+    public ExportResult exportFile(Path file, Format format, Collection<String> folders) throws IOException {
+        return export(file, format, folders, null, () -> false, null);
+    }
+
+    /**
+     * Exports entries to an encrypted archive holding a CSV or JSON document, see {@link EncryptedArchive}.
+     * @param file The file to write.
+     * @param format The format of the document inside the archive.
+     * @param folders The folders to export, including their subfolders, or null to export the whole vault.
+     * @param passphrase The passphrase of the archive.
+     * @return The number of exported entries and the checksum of the file.
+     * @throws IOException If the file could not be written. No partial file is left behind.
+     */
+    public ExportResult exportEncrypted(Path file, Format format, Collection<String> folders, char[] passphrase)
+            throws IOException {
+        return export(file, format, folders, passphrase, () -> false, null);
+    }
+
+    /**
+     * Exports entries on a background thread. The callback is invoked on that thread. Cancelling the returned
+     * future stops the export at the next progress report, deletes the partial file and calls onExportCancelled.
+     * @param file The file to write.
+     * @param format The format of the file, or of the document inside the archive.
+     * @param folders The folders to export, including their subfolders, or null to export the whole vault.
+     * @param passphrase The passphrase of an encrypted archive, or null for a plaintext export.
+     * @param callback The callback interface to handle the export result.
+     * @return A future completed with the result once the export has finished, or with null if it failed.
+     */
+    public CompletableFuture<ExportResult> exportAsync(Path file, Format format, Collection<String> folders,
+                                                       char[] passphrase, ExportCallback callback) {
+        CompletableFuture<ExportResult> future = new CompletableFuture<>();
+        EXPORT_EXECUTOR.execute(() -> {
+            ExportResult result = null;
+            try {
+                result = export(file, format, folders, passphrase, future::isCancelled, callback);
+                callback.onExportSuccess(result);
+            } catch (CancellationException e) {
+                callback.onExportCancelled();
+            } catch (IOException e) {
+                callback.onExportError("Error exporting passwords: " + e.getMessage());
+            } catch (SecurityException e) {
+                callback.onExportError("Insufficient permissions to write the export file.");
+            } catch (RuntimeException e) {
+                // Any other failure still has to reach the caller, which would otherwise wait forever.
+                LOGGER.log(Level.WARNING, "Could not export the passwords", e);
+                callback.onExportError("An unexpected error occurred while exporting passwords.");
+            } finally {
+                future.complete(result);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Checks an export file against the checksum written next to it.
+     * @param file The export file.
+     * @return True if the file matches its checksum.
+     * @throws IOException If the file or its checksum could not be read.
+     */
+    public static boolean verifyChecksum(Path file) throws IOException {
+        String expected = Files.readString(checksumFile(file), StandardCharsets.US_ASCII).split("\\s+", 2)[0];
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(EXPORT_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return expected.equalsIgnoreCase(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Returns the file the checksum of an export is written to, in the format of 'sha256sum'.
+     * @param file The export file.
+     * @return The checksum file.
+     */
+    public static Path checksumFile(Path file) {
+        return file.resolveSibling(file.getFileName() + CHECKSUM_SUFFIX);
+    }
+
+    /**
+     * Writes the export through {@link AtomicVaultFile}, so it only replaces the target once it is complete. The
+     * content goes through a buffer straight to the file, and is hashed on its way.
+     */
+    private ExportResult export(Path file, Format format, Collection<String> folders, char[] passphrase,
+                                BooleanSupplier cancelled, ExportCallback callback) throws IOException {
+        long start = System.nanoTime();
+        List<PasswordEntry> entries = entriesToExport(folders);
+        MessageDigest digest = newDigest();
+        long[] exported = new long[1];
+        AtomicVaultFile.write(file, 0, fileStream -> {
+            OutputStream out = new BufferedOutputStream(new DigestOutputStream(fileStream, digest), EXPORT_BUFFER_SIZE);
+            if (passphrase != null) out = EncryptedArchive.newOutputStream(out, passphrase, archiveIterations);
+            try (EntrySink sink = format == Format.CSV ? new CsvSink(out) : new JsonSink(out)) {
+                for (PasswordEntry passwordEntry : entries) {
+                    sink.write(exportable(passwordEntry));
+                    if (++exported[0] % EXPORT_PROGRESS_INTERVAL == 0) {
+                        if (cancelled.getAsBoolean()) throw new CancellationException();
+                        if (callback != null) callback.onExportProgress(exported[0], entries.size());
+                    }
+                }
+            }
+        });
+        if (callback != null) callback.onExportProgress(exported[0], entries.size());
+        String checksum = HexFormat.of().formatHex(digest.digest());
+        AtomicVaultFile.write(checksumFile(file),
+                (checksum + "  " + file.getFileName() + "\n").getBytes(StandardCharsets.US_ASCII), 0);
+        return new ExportResult(exported[0], Files.size(file), checksum, System.nanoTime() - start);
+    }
+
+    /**
+     * Collects the entries of the selected folders and their subfolders from the folder index.
+     */
+    private List<PasswordEntry> entriesToExport(Collection<String> folders) {
+        if (folders == null) return passwordStorage.getPasswordEntries();
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (String folder : passwordStorage.getFolderEntryCounts().keySet()) {
+            if (folder == null) continue;
+            for (String selected : folders) {
+                if (folder.equals(selected) || folder.startsWith(selected + Folder.PATH_SEPARATOR)) {
+                    entries.addAll(passwordStorage.getPasswordEntriesInFolder(folder));
+                    break;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private PasswordEntry exportable(PasswordEntry passwordEntry) throws IOException {
+        if (encryptionEngine == null) {
+            // Writing the vault ciphertext would produce an export no other password manager can read.
+            if (EncryptionUtilities.isEncrypted(passwordEntry.password())) {
+                throw new IOException("The password of " + passwordEntry.website()
+                        + " is encrypted, unlock the vault to export it");
+            }
+            return passwordEntry;
+        }
+        try {
+            return encryptionEngine.decryptEntry(passwordEntry);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not decrypt the password of " + passwordEntry.website(), e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Writes entries in one of the export formats. Both formats use the column and field names the importer
+     * recognises, so exports can be imported again.
+     */
+    private interface EntrySink extends Closeable {
+        void write(PasswordEntry passwordEntry) throws IOException;
+    }
+
+    private static final class CsvSink implements EntrySink {
+        private final Writer writer;
+
+        CsvSink(OutputStream out) throws IOException {
+            writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write("website,username,password,folder\r\n");
+        }
+
+        @Override
+        public void write(PasswordEntry passwordEntry) throws IOException {
+            writeField(passwordEntry.website());
+            writer.write(',');
+            writeField(passwordEntry.username());
+            writer.write(',');
+            writeField(passwordEntry.password());
+            writer.write(',');
+            writeField(passwordEntry.folder());
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) return;
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class JsonSink implements EntrySink {
+        private final JsonGenerator generator;
+
+        JsonSink(OutputStream out) throws IOException {
+            generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("entries");
+        }
+
+        @Override
+        public void write(PasswordEntry passwordEntry) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("website", passwordEntry.website());
+            generator.writeStringField("username", passwordEntry.username());
+            generator.writeStringField("password", passwordEntry.password());
+            generator.writeStringField("folder", passwordEntry.folder());
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.close();
+        }
+    }
+
+    /**
+     * Drops the entries of accounts which are already in the storage or earlier in the batch. Accounts are compared
+     * instead of whole entries because encrypted passwords never compare equal, and an import never overwrites the
+     * password of an existing account.
+     */
+    private List<PasswordEntry> newAccounts(List<PasswordEntry> batch) {
+        Set<List<String>> accounts = new HashSet<>();
+        List<PasswordEntry> newEntries = new ArrayList<>(batch.size());
+        for (PasswordEntry passwordEntry : batch) {
+            if (passwordStorage.accountAlreadyExists(passwordEntry.website(), passwordEntry.username())) continue;
+            if (accounts.add(Arrays.asList(passwordEntry.website(), passwordEntry.username()))) newEntries.add(passwordEntry);
+        }
+        return newEntries;
+    }
+
+    /**
+     * Producer side of the pipeline. Parses the file, maps rows to entries and queues them in batches; an empty
+     * batch marks the end of the file.
+     */
+    private final class RowParser implements Runnable {
+        private final Path file;
+        private final Format format;
+        private final char[] passphrase;
+        private final BlockingQueue<List<PasswordEntry>> queue;
+        private List<PasswordEntry> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        private final List<String> rejections = new ArrayList<>();
+        private long rowsRead;
+        private long rejected;
+        private volatile IOException failure;
+
+        RowParser(Path file, Format format, char[] passphrase, BlockingQueue<List<PasswordEntry>> queue) {
+            this.file = file;
+            this.format = format;
+            this.passphrase = passphrase;
+            this.queue = queue;
+        }
+
+        private InputStream open() throws IOException {
+            InputStream in = new BufferedInputStream(Files.newInputStream(file), EXPORT_BUFFER_SIZE);
+            return passphrase == null ? in : EncryptedArchive.newInputStream(in, passphrase);
+        }
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    if (format == Format.CSV) parseCsv(); else parseJson();
+                    if (!batch.isEmpty()) queue.put(batch);
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException("Failed to parse " + file.getFileName(), e);
+                }
+                queue.put(List.of());
+            } catch (InterruptedException e) {
+                // The import was abandoned, so nobody is waiting for the end of the file.
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void parseCsv() throws IOException, InterruptedException {
+            try (CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(open(), StandardCharsets.UTF_8)))) {
+                List<String> header = reader.readRow();
+                if (header == null) return;
+                Map<String, Integer> columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) columns.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+                int website = column(columns, WEBSITE_NAMES);
+                int username = column(columns, USERNAME_NAMES);
+                int password = column(columns, PASSWORD_NAMES);
+                int folder = column(columns, FOLDER_NAMES);
+                if (password < 0) throw new IOException("No password column in " + file.getFileName());
+                List<String> row;
+                while ((row = reader.readRow()) != null) {
+                    if (row.size() == 1 && row.get(0).isEmpty()) continue;
+                    rowsRead++;
+                    if (row.size() != header.size()) {
+                        reject("line " + reader.getLineNumber() + ": expected " + header.size() + " columns but found " + row.size());
+                        continue;
+                    }
+                    accept(get(row, website), get(row, username), get(row, password), get(row, folder), "line " + reader.getLineNumber());
+                }
+            }
+        }
+
+        private void parseJson() throws IOException, InterruptedException {
+            try (JsonParser parser = MAPPER.getFactory().createParser(open())) {
+                // Items are either the top level array or an array of a top level object, e.g. 'items'.
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT) {
+                    while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                        boolean items = ITEM_ARRAY_NAMES.contains(parser.getCurrentName().toLowerCase(Locale.ROOT));
+                        if (parser.nextToken() == JsonToken.START_ARRAY && items) {
+                            token = JsonToken.START_ARRAY;
+                            break;
+                        }
+                        parser.skipChildren();
+                    }
+                }
+                if (token != JsonToken.START_ARRAY) throw new IOException("No array of entries in " + file.getFileName());
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    rowsRead++;
+                    // Only the current item is held in memory as a tree.
+                    JsonNode item = parser.readValueAsTree();
+                    JsonNode login = item.path("login");
+                    accept(text(item, login, WEBSITE_NAMES), text(item, login, USERNAME_NAMES),
+                            text(item, login, PASSWORD_NAMES), text(item, login, FOLDER_NAMES), "item " + rowsRead);
+                }
+            }
+        }
+
+        private void accept(String website, String username, String password, String folder, String position)
+                throws InterruptedException {
+            if (password == null || password.isEmpty()) {
+                reject(position + ": no password");
+                return;
+            }
+            if (isBlank(website) && isBlank(username)) {
+                reject(position + ": no website or username");
+                return;
+            }
+            PasswordEntry passwordEntry = new PasswordEntry(emptyToNull(username), password, emptyToNull(website),
+                    emptyToNull(folder));
+            if (encryptionEngine != null) {
+                try {
+                    passwordEntry = encryptionEngine.encryptEntry(passwordEntry);
+                } catch (GeneralSecurityException e) {
+                    reject(position + ": " + e.getMessage());
+                    return;
+                }
+            }
+            batch.add(passwordEntry);
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                queue.put(batch);
+                batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            }
+        }
+
+        private void reject(String reason) {
+            rejected++;
+            if (rejections.size() < ImportResult.MAX_REPORTED_REJECTIONS) rejections.add(reason);
+        }
+    }
+
+    private static int column(Map<String, Integer> columns, List<String> names) {
+        for (String name : names) {
+            Integer index = columns.get(name);
+            if (index != null) return index;
+        }
+        return -1;
+    }
+
+    private static String get(List<String> row, int column) {
+        return column < 0 ? null : row.get(column);
+    }
+
+    /**
+     * Reads a field from a JSON item, looking in its 'login' object as well. The first element of an array is
+     * used, e.g. for lists of URIs.
+     */
+    private static String text(JsonNode item, JsonNode login, List<String> names) {
+        for (String name : names) {
+            for (JsonNode parent : new JsonNode[]{item, login}) {
+                JsonNode value = parent.get(name);
+                if (value == null || value.isNull()) continue;
+                if (value.isArray()) value = value.path(0);
+                if (value.isObject()) value = value.path("uri");
+                if (value.isValueNode()) return value.asText();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String emptyToNull(String value) {
+        return isBlank(value) ? null : value.trim();
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, fields optionally quoted with '"', quotes escaped by doubling them,
+     * and line breaks allowed inside quoted fields.
+     */
+    static final class CsvReader implements Closeable {
+        private final Reader reader;
+        private long lineNumber;
+        private int pushedBack = -2;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next row.
+         * @return The fields of the row, or null at the end of the input.
+         * @throws IOException If the input could not be read or ends inside a quoted field.
+         */
+        List<String> readRow() throws IOException {
+            int c = read();
+            if (c == -1) return null;
+            lineNumber++;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) throw new IOException("Unterminated quoted field on line " + lineNumber);
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') lineNumber++;
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    break;
+                } else if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') pushedBack = next;
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        /**
+         * Returns the line the last row ended on.
+         * @return The line number, starting at 1.
+         */
+        long getLineNumber() {
+            return lineNumber;
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
 }
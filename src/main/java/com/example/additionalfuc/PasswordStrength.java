@@ -0,0 +1,31 @@
+package com.example.additionalfuc;
+
+import java.util.List;
+
+/**
+ * Estimated strength of a password.
+ * @param entropyBits The estimated number of guesses needed to find the password, as a power of two.
+ * @param score The strength category of the estimate.
+ * @param weaknesses The patterns found in the password, e.g. "keyboard pattern", in the order they were found.
+ */
+public record PasswordStrength(double entropyBits, Score score, List<String> weaknesses) {
+
+    public enum Score {VERY_WEAK, WEAK, FAIR, STRONG, VERY_STRONG}
+
+    public PasswordStrength {
+        weaknesses = List.copyOf(weaknesses);
+    }
+
+    /**
+     * Returns the category of an entropy estimate.
+     * @param entropyBits The estimated entropy.
+     * @return The category.
+     */
+    public static Score scoreOf(double entropyBits) {
+        if (entropyBits < 28) return Score.VERY_WEAK;
+        if (entropyBits < 36) return Score.WEAK;
+        if (entropyBits < 60) return Score.FAIR;
+        if (entropyBits < 80) return Score.STRONG;
+        return Score.VERY_STRONG;
+    }
+}
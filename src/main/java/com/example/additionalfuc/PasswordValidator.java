@@ -1,4 +1,257 @@
 package com.example.additionalfuc;
 
+import com.example.security.EncryptionUtilities;
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.SecretFingerprinter;
+import com.example.storage.PasswordEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Audits the passwords of a vault: estimates their strength, flags passwords shared by several entries and checks
+ * them against a local breached password list.
+ * <p>
+ * Entries are analysed in parallel on the common ForkJoinPool. The analysis of every entry is cached, keyed by the
+ * entry itself, so a later audit only analyses the entries which were added or edited since (an edited entry is a
+ * new record); reuse is recomputed from the cached fingerprints, which is a single pass over the vault.
+ * Fingerprints are the keyed HMACs of {@link SecretFingerprinter}, so the cache never holds passwords or unsalted
+ * hashes of them. Plaintext is only held while an entry is analysed and is wiped afterwards.
+ * <p>
+ * Strength is estimated by walking the password and charging each character the entropy of the character classes
+ * it uses, except inside patterns an attacker tries first (common words, also with 'leet' substitutions, years,
+ * repeated characters, sequences and keyboard runs), which are charged for the pattern as a whole.
+ */
 public class PasswordValidator {
+
+    public static final int MIN_LENGTH = 8;
+
+    private static final List<String> COMMON_WORDS = List.of("password", "iloveyou", "princess", "sunshine",
+            "football", "baseball", "superman", "trustno1", "whatever", "welcome", "letmein", "freedom", "charlie",
+            "michael", "monkey", "dragon", "master", "shadow", "qwerty", "secret", "summer", "winter", "spring",
+            "autumn", "batman", "hunter", "killer", "jordan", "admin", "login", "hello", "love", "pass", "test");
+    private static final String[] KEYBOARD_ROWS = {"`1234567890-=", "qwertyuiop[]\\", "asdfghjkl;'", "zxcvbnm,./"};
+    private static final int KEYBOARD_KEYS = 47;
+    private static final int MIN_PATTERN_LENGTH = 3;
+
+    private final EntryEncryptionEngine encryptionEngine;
+    private final BreachedPasswordList breachList;
+    private final SecretFingerprinter fingerprinter;
+    private final Map<PasswordEntry, Analysis> analyses = new HashMap<>();
+
+    private record Analysis(String fingerprint, PasswordStrength strength, boolean breached) {
+    }
+
+    /**
+     * @param encryptionEngine Decrypts the passwords of an encrypted vault, or null if the passwords are plaintext.
+     * @param breachList The breached password list to check against, or null to skip the check.
+     */
+    public PasswordValidator(EntryEncryptionEngine encryptionEngine, BreachedPasswordList breachList) {
+        this.encryptionEngine = encryptionEngine;
+        this.breachList = breachList;
+        this.fingerprinter = new SecretFingerprinter(encryptionEngine);
+    }
+
+    /**
+     * Audits the given entries, only analysing those which changed since the previous audit.
+     * @param entries The entries of the vault.
+     * @return The audit result of every entry.
+     * @throws GeneralSecurityException If a password could not be decrypted.
+     */
+    public synchronized AuditReport audit(Collection<PasswordEntry> entries) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        Set<PasswordEntry> current = new HashSet<>(entries);
+        analyses.keySet().retainAll(current);
+        List<PasswordEntry> changed = current.stream().filter(entry -> !analyses.containsKey(entry)).toList();
+        try {
+            analyses.putAll(changed.parallelStream().collect(Collectors.toMap(Function.identity(), this::analyse)));
+        } catch (AnalysisFailure e) {
+            throw e.getCause();
+        }
+
+        Map<String, Integer> uses = new HashMap<>();
+        for (PasswordEntry passwordEntry : entries) {
+            String fingerprint = analyses.get(passwordEntry).fingerprint();
+            if (fingerprint != null) uses.merge(fingerprint, 1, Integer::sum);
+        }
+        List<EntryAudit> audits = new ArrayList<>(entries.size());
+        for (PasswordEntry passwordEntry : entries) {
+            Analysis analysis = analyses.get(passwordEntry);
+            int reuse = analysis.fingerprint() == null ? 0 : uses.get(analysis.fingerprint()) - 1;
+            audits.add(new EntryAudit(passwordEntry, analysis.strength(), analysis.breached(), reuse));
+        }
+        return new AuditReport(audits, changed.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * Drops the cached analyses, so the next audit analyses every entry again, e.g. after the breach list was
+     * updated.
+     */
+    public synchronized void clearCache() {
+        analyses.clear();
+    }
+
+    /**
+     * Estimates the strength of a password.
+     * @param password The password.
+     * @return The estimated entropy, its category and the patterns found.
+     */
+    public static PasswordStrength evaluate(char[] password) {
+        Set<String> weaknesses = new LinkedHashSet<>();
+        if (password.length < MIN_LENGTH) weaknesses.add("too short");
+        double bitsPerCharacter = log2(poolSize(password));
+        double bits = 0;
+        int position = 0;
+        while (position < password.length) {
+            int length;
+            if ((length = commonWordAt(password, position)) > 0) {
+                // The word, plus one bit for its capitalisation.
+                bits += log2(COMMON_WORDS.size()) + 1;
+                weaknesses.add("common word");
+            } else if ((length = yearAt(password, position)) > 0) {
+                bits += log2(200);
+                weaknesses.add("year");
+            } else if ((length = run(password, position, 0)) >= MIN_PATTERN_LENGTH) {
+                bits += bitsPerCharacter + log2(length);
+                weaknesses.add("repeated characters");
+            } else if ((length = Math.max(run(password, position, 1), run(password, position, -1))) >= MIN_PATTERN_LENGTH) {
+                // The first character, the length and the direction.
+                bits += bitsPerCharacter + log2(length) + 1;
+                weaknesses.add("sequence");
+            } else if ((length = keyboardRunAt(password, position)) >= MIN_PATTERN_LENGTH) {
+                bits += log2(KEYBOARD_KEYS) + log2(length) + 1;
+                weaknesses.add("keyboard pattern");
+            } else {
+                length = 1;
+                bits += bitsPerCharacter;
+            }
+            position += length;
+        }
+        return new PasswordStrength(bits, PasswordStrength.scoreOf(bits), new ArrayList<>(weaknesses));
+    }
+
+    private Analysis analyse(PasswordEntry passwordEntry) {
+        byte[] secret = null;
+        char[] password = null;
+        try {
+            secret = secretOf(passwordEntry.password());
+            CharBuffer decoded = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(secret));
+            password = Arrays.copyOf(decoded.array(), decoded.limit());
+            Arrays.fill(decoded.array(), '\0');
+            boolean breached = breachList != null && breachList.contains(BreachedPasswordList.sha1(secret));
+            // Entries without a password have no fingerprint, so they are left out of the reuse count.
+            return new Analysis(fingerprinter.fingerprint(secret), evaluate(password), breached);
+        } catch (GeneralSecurityException e) {
+            throw new AnalysisFailure(e);
+        } finally {
+            if (secret != null) Arrays.fill(secret, (byte) 0);
+            if (password != null) Arrays.fill(password, '\0');
+        }
+    }
+
+    private byte[] secretOf(String password) throws GeneralSecurityException {
+        if (password == null) return new byte[0];
+        if (!EncryptionUtilities.isEncrypted(password)) return password.getBytes(StandardCharsets.UTF_8);
+        if (encryptionEngine == null) throw new GeneralSecurityException("The vault is locked");
+        return encryptionEngine.decryptSecret(password);
+    }
+
+    /**
+     * Carries a decryption failure out of the parallel stream.
+     */
+    private static final class AnalysisFailure extends RuntimeException {
+        AnalysisFailure(GeneralSecurityException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized GeneralSecurityException getCause() {
+            return (GeneralSecurityException) super.getCause();
+        }
+    }
+
+    private static int poolSize(char[] password) {
+        boolean lower = false, upper = false, digit = false, symbol = false, other = false;
+        for (char c : password) {
+            if (c >= 'a' && c <= 'z') lower = true;
+            else if (c >= 'A' && c <= 'Z') upper = true;
+            else if (c >= '0' && c <= '9') digit = true;
+            else if (c >= ' ' && c <= '~') symbol = true;
+            else other = true;
+        }
+        int pool = (lower ? 26 : 0) + (upper ? 26 : 0) + (digit ? 10 : 0) + (symbol ? 33 : 0) + (other ? 100 : 0);
+        return Math.max(pool, 1);
+    }
+
+    /**
+     * Returns the length of the longest common word at the given position, or 0.
+     */
+    private static int commonWordAt(char[] password, int position) {
+        int longest = 0;
+        for (String word : COMMON_WORDS) {
+            if (word.length() <= longest || position + word.length() > password.length) continue;
+            int i = 0;
+            while (i < word.length() && matches(password[position + i], word.charAt(i))) i++;
+            if (i == word.length()) longest = word.length();
+        }
+        return longest;
+    }
+
+    private static boolean matches(char c, char letter) {
+        c = Character.toLowerCase(c);
+        if (c == letter) return true;
+        return switch (c) {
+            case '0' -> letter == 'o';
+            case '1', '!' -> letter == 'i' || letter == 'l';
+            case '3' -> letter == 'e';
+            case '4', '@' -> letter == 'a';
+            case '5', '$' -> letter == 's';
+            case '7' -> letter == 't';
+            default -> false;
+        };
+    }
+
+    private static int yearAt(char[] password, int position) {
+        if (position + 4 > password.length) return 0;
+        for (int i = 0; i < 4; i++) if (!Character.isDigit(password[position + i])) return 0;
+        String prefix = new String(password, position, 2);
+        return prefix.equals("19") || prefix.equals("20") ? 4 : 0;
+    }
+
+    /**
+     * Returns the length of the run of characters at the given position in which each character is the previous
+     * one plus step: repeated characters for 0, sequences such as 'abc' or '321' for 1 and -1.
+     */
+    private static int run(char[] password, int position, int step) {
+        if (step != 0 && !Character.isLetterOrDigit(password[position])) return 1;
+        int end = position + 1;
+        while (end < password.length && Character.toLowerCase(password[end])
+                == Character.toLowerCase(password[end - 1]) + step) end++;
+        return end - position;
+    }
+
+    private static int keyboardRunAt(char[] password, int position) {
+        int longest = 1;
+        for (String row : KEYBOARD_ROWS) {
+            for (int direction = -1; direction <= 1; direction += 2) {
+                int end = position + 1;
+                while (end < password.length) {
+                    int previous = row.indexOf(Character.toLowerCase(password[end - 1]));
+                    if (previous < 0 || row.indexOf(Character.toLowerCase(password[end])) != previous + direction) break;
+                    end++;
+                }
+                longest = Math.max(longest, end - position);
+            }
+        }
+        return longest;
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
 }
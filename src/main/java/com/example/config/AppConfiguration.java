@@ -1,14 +1,59 @@
 package com.example.config;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Typed access to the settings of the application. Settings are read from memory on every call, so a
+ * configuration backed by a {@link ConfigurationService} follows changes to the configuration file.
+ */
 public class AppConfiguration {
 
-    private final String fileLocation;
+    private final Supplier<ConfigurationFile> config;
 
     public AppConfiguration(ConfigurationFile config) {
-        this.fileLocation = config.fileLocation();
+        this.config = () -> config;
+    }
+
+    /**
+     * @param service The service holding the loaded configuration.
+     * @throws IllegalStateException If the service has not loaded the configuration yet.
+     */
+    public AppConfiguration(ConfigurationService service) {
+        if (!service.isLoaded()) throw new IllegalStateException("Configuration is not loaded");
+        this.config = service::get;
     }
 
     public String getFileLocation() {
-        return fileLocation;
+        return config.get().fileLocation();
+    }
+
+    public int getKdfIterations() {
+        return config.get().kdfIterations();
+    }
+
+    public long getSaveCoalesceWindowMillis() {
+        return config.get().saveCoalesceWindowMillis();
+    }
+
+    public int getRevealedCacheSize() {
+        return config.get().revealedCacheSize();
+    }
+
+    public Duration getRevealedCacheTimeToLive() {
+        return Duration.ofSeconds(config.get().revealedCacheTtlSeconds());
+    }
+
+    public long getCompactionThresholdBytes() {
+        return config.get().compactionThresholdBytes();
+    }
+
+    public Map<String, String> getVaultLocations() {
+        return config.get().vaultLocations();
+    }
+
+    public Duration getVaultIdleTimeout() {
+        return Duration.ofSeconds(config.get().vaultIdleTimeoutSeconds());
     }
 }
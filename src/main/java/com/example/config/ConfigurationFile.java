@@ -1,3 +1,69 @@
 package com.example.config;
 
-public record ConfigurationFile(String fileLocation) {}
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content of the configuration file. Settings missing from the file (e.g. written by an older version) get their
+ * default value, and unknown settings are ignored.
+ * @param fileLocation The directory holding the vault.
+ * @param kdfIterations The number of PBKDF2 iterations used when a vault or export archive key is created or changed.
+ * @param saveCoalesceWindowMillis How long save requests are collected before they are written together.
+ * @param revealedCacheSize The number of revealed passwords kept decrypted.
+ * @param revealedCacheTtlSeconds How long a revealed password is kept decrypted.
+ * @param compactionThresholdBytes The size the vault journal may reach before it is folded into a new snapshot.
+ * @param vaults The directories of the vaults by vault name, for users with several vaults (e.g. team vaults).
+ *               Empty when the only vault is the one in fileLocation.
+ * @param vaultIdleTimeoutSeconds How long an open vault may go unused before it is evicted from memory.
+ */
+public record ConfigurationFile(String fileLocation, Integer kdfIterations, Long saveCoalesceWindowMillis,
+                                Integer revealedCacheSize, Long revealedCacheTtlSeconds, Long compactionThresholdBytes,
+                                Map<String, String> vaults, Long vaultIdleTimeoutSeconds) {
+
+    public static final int DEFAULT_KDF_ITERATIONS = 210_000;
+    public static final long DEFAULT_SAVE_COALESCE_WINDOW_MILLIS = 200;
+    public static final int DEFAULT_REVEALED_CACHE_SIZE = 16;
+    public static final long DEFAULT_REVEALED_CACHE_TTL_SECONDS = 30;
+    public static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+    public static final String DEFAULT_VAULT_NAME = "default";
+    public static final long DEFAULT_VAULT_IDLE_TIMEOUT_SECONDS = 15 * 60;
+
+    public ConfigurationFile {
+        if (kdfIterations == null) kdfIterations = DEFAULT_KDF_ITERATIONS;
+        if (saveCoalesceWindowMillis == null) saveCoalesceWindowMillis = DEFAULT_SAVE_COALESCE_WINDOW_MILLIS;
+        if (revealedCacheSize == null) revealedCacheSize = DEFAULT_REVEALED_CACHE_SIZE;
+        if (revealedCacheTtlSeconds == null) revealedCacheTtlSeconds = DEFAULT_REVEALED_CACHE_TTL_SECONDS;
+        if (compactionThresholdBytes == null) compactionThresholdBytes = DEFAULT_COMPACTION_THRESHOLD_BYTES;
+        vaults = vaults == null ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(vaults));
+        if (vaultIdleTimeoutSeconds == null) vaultIdleTimeoutSeconds = DEFAULT_VAULT_IDLE_TIMEOUT_SECONDS;
+    }
+
+    /**
+     * Creates a configuration with default settings.
+     * @param fileLocation The directory holding the vault.
+     */
+    public ConfigurationFile(String fileLocation) {
+        this(fileLocation, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Returns a copy of this configuration with another vault directory.
+     * @param fileLocation The directory holding the vault.
+     * @return The new configuration.
+     */
+    public ConfigurationFile withFileLocation(String fileLocation) {
+        return new ConfigurationFile(fileLocation, kdfIterations, saveCoalesceWindowMillis, revealedCacheSize,
+                revealedCacheTtlSeconds, compactionThresholdBytes, vaults, vaultIdleTimeoutSeconds);
+    }
+
+    /**
+     * Returns the directories of all vaults by vault name. A configuration without a vault list has a single
+     * vault named DEFAULT_VAULT_NAME in fileLocation, so loading and saving always use the same directory.
+     * @return The vault directories, in the configured order.
+     */
+    public Map<String, String> vaultLocations() {
+        if (!vaults.isEmpty() || fileLocation == null) return vaults;
+        return Map.of(DEFAULT_VAULT_NAME, fileLocation);
+    }
+}
@@ -1,15 +1,16 @@
 package com.example.config;
 
 import com.example.interfaces.ConfigurationFileCallback;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Handles the management of the configuration file for the application.
+ * The configuration is cached by a shared {@link ConfigurationService}, so it is only read from disk once.
  */
 public class ConfigurationFileHandler {
 
@@ -17,6 +18,8 @@ public class ConfigurationFileHandler {
     private static final String CONFIG_FOLDER_NAME = "SafePassConfig";
     private static final String CONFIG_FOLDER_PATH = System.getProperty("user.home") + "/" + CONFIG_FOLDER_NAME;
     private static final String CONFIG_FILE_PATH = CONFIG_FOLDER_PATH + "/" + CONFIG_FILE_NAME;
+    private static final ConfigurationService CONFIG_SERVICE = new ConfigurationService(Paths.get(CONFIG_FILE_PATH));
+    private static final Logger LOGGER = Logger.getLogger(ConfigurationFileHandler.class.getName());
 
     /**
      * Creates the configuration file.
@@ -33,25 +36,25 @@ public class ConfigurationFileHandler {
             } catch (IOException e) {
                 callback.onConfigFileCreateError("IOException");
             } catch (SecurityException e) {
-                e.printStackTrace();
+                LOGGER.log(Level.WARNING, "Could not create the configuration file", e);
                 callback.onConfigFileCreateError("SecurityException");
             }
         }
     }
 
     /**
-     * Updates the configuration in the configuration file.
+     * Updates the configuration in the configuration file. The other settings are kept.
      * @param filePath The file path to be stored in the configuration file.
      * @param callback The callback to be called when the configuration file is updated / not updated.
      */
     public static void updateConfig(String filePath, ConfigurationFileCallback callback) {
-        ConfigurationFile configuration = new ConfigurationFile(filePath);
+        ConfigurationFile current = CONFIG_SERVICE.get();
+        ConfigurationFile configuration = current == null ? new ConfigurationFile(filePath) : current.withFileLocation(filePath);
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.writeValue(new File(CONFIG_FILE_PATH), configuration);
+            CONFIG_SERVICE.update(configuration);
             callback.onUpdateConfigSuccess();
         } catch (IOException e) {
-            e.printStackTrace();
+            // Logged and counted by the configuration service.
             callback.onUpdateConfigError("IOException");
         }
     }
@@ -64,6 +67,14 @@ public class ConfigurationFileHandler {
         return CONFIG_FILE_PATH;
     }
 
+    /**
+     * Returns the service caching the configuration.
+     * @return The configuration service of the application.
+     */
+    public static ConfigurationService getConfigurationService() {
+        return CONFIG_SERVICE;
+    }
+
     /**
      * Checks if the configuration file exists.
      * @return true if the configuration file exists, false otherwise.
@@ -73,18 +84,19 @@ public class ConfigurationFileHandler {
     }
 
     /**
-     * Loads the configuration file.
+     * Loads the configuration file, or returns the cached configuration if it was already loaded.
      * @param callback The callback to be called when the configuration file is loaded / not loaded.
      */
     public static void loadConfigFile(ConfigurationFileCallback callback) {
-        ConfigurationFile configuration;
-        if (isConfigFileExists()) {
+        ConfigurationFile configuration = CONFIG_SERVICE.get();
+        if (configuration != null) {
+            callback.onConfigFileLoadSuccess(configuration);
+        } else if (isConfigFileExists()) {
             try {
-                ObjectMapper objectMapper = new ObjectMapper();
-                configuration = objectMapper.readValue(new File(CONFIG_FILE_PATH), ConfigurationFile.class);
+                configuration = CONFIG_SERVICE.load();
                 callback.onConfigFileLoadSuccess(configuration);
             } catch (IOException e) {
-                e.printStackTrace();
+                // Logged and counted by the configuration service.
                 callback.onConfigFileLoadError("IOException");
             }
         } else {
@@ -100,9 +112,10 @@ public class ConfigurationFileHandler {
         if (isConfigFileExists()) {
             try {
                 Files.delete(Paths.get(CONFIG_FILE_PATH));
+                CONFIG_SERVICE.invalidate();
                 callback.onConfigFileDeleteSuccess();
             } catch (IOException e) {
-                e.printStackTrace();
+                LOGGER.log(Level.WARNING, "Could not delete the configuration file", e);
                 callback.onConfigFileDeleteError("IOException");
             }
         }
@@ -0,0 +1,191 @@
+package com.example.config;
+
+import com.example.metrics.OperationMetrics;
+import com.example.metrics.VaultMetrics;
+import com.example.storage.AtomicVaultFile;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the parsed configuration in memory, so reading a setting never touches the disk.
+ * <p>
+ * The file is parsed once by {@link #load} and after every change made through {@link #update}. Once
+ * {@link #startWatching} has been called, changes made to the file by other programs are picked up by a
+ * WatchService thread as well. A file which cannot be parsed leaves the current configuration in place.
+ * All services share one preconfigured ObjectReader and ObjectWriter, which are thread-safe.
+ */
+public class ConfigurationService implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final ObjectReader READER = MAPPER.readerFor(ConfigurationFile.class);
+    private static final ObjectWriter WRITER = MAPPER.writerFor(ConfigurationFile.class).withDefaultPrettyPrinter();
+    private static final Logger LOGGER = Logger.getLogger(ConfigurationService.class.getName());
+
+    private final Path configFile;
+    private final List<Consumer<ConfigurationFile>> listeners = new CopyOnWriteArrayList<>();
+    private volatile ConfigurationFile configuration;
+    private WatchService watchService;
+
+    /**
+     * @param configFile The configuration file. Nothing is read until {@link #load} is called.
+     */
+    public ConfigurationService(Path configFile) {
+        this.configFile = configFile;
+    }
+
+    /**
+     * Parses the configuration file and caches the result.
+     * @return The configuration.
+     * @throws IOException If the file could not be read or parsed.
+     */
+    public ConfigurationFile load() throws IOException {
+        long start = OperationMetrics.start();
+        try {
+            byte[] content = Files.readAllBytes(configFile);
+            ConfigurationFile loaded = parse(content);
+            configuration = loaded;
+            VaultMetrics.CONFIG_READ.success(start, content.length);
+            return loaded;
+        } catch (IOException e) {
+            VaultMetrics.CONFIG_READ.failure(start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the cached configuration, without reading the file.
+     * @return The configuration, or null if it has not been loaded or updated yet.
+     */
+    public ConfigurationFile get() {
+        return configuration;
+    }
+
+    /**
+     * Returns true if a configuration is cached.
+     * @return True once the configuration was loaded or updated.
+     */
+    public boolean isLoaded() {
+        return configuration != null;
+    }
+
+    /**
+     * Drops the cached configuration, e.g. once the file was deleted.
+     */
+    synchronized void invalidate() {
+        configuration = null;
+    }
+
+    /**
+     * Atomically replaces the configuration file and the cached configuration.
+     * @param updated The new configuration.
+     * @throws IOException If the file could not be written. The cached configuration is unchanged in that case.
+     */
+    public synchronized void update(ConfigurationFile updated) throws IOException {
+        long start = OperationMetrics.start();
+        try {
+            byte[] content = WRITER.writeValueAsBytes(updated);
+            AtomicVaultFile.write(configFile, content, 0);
+            VaultMetrics.CONFIG_WRITE.success(start, content.length);
+        } catch (IOException e) {
+            VaultMetrics.CONFIG_WRITE.failure(start, e);
+            throw e;
+        }
+        changed(updated);
+    }
+
+    /**
+     * Registers a listener called with the new configuration whenever it changes, through {@link #update} or on
+     * disk. Listeners are called on the thread which noticed the change.
+     * @param listener The listener.
+     */
+    public void addListener(Consumer<ConfigurationFile> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts watching the directory of the configuration file for changes made by other programs.
+     * @throws IOException If the directory could not be watched.
+     */
+    public synchronized void startWatching() throws IOException {
+        if (watchService != null) return;
+        Path directory = configFile.toAbsolutePath().getParent();
+        WatchService service = directory.getFileSystem().newWatchService();
+        directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchService = service;
+        Thread thread = new Thread(() -> watch(service), "config-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the configuration file.
+     * @throws IOException If the watch service could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService == null) return;
+        watchService.close();
+        watchService = null;
+    }
+
+    private void watch(WatchService service) {
+        Path fileName = configFile.getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean configChanged = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) configChanged = true;
+                }
+                key.reset();
+                if (configChanged) reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Stopped by close().
+        }
+    }
+
+    private synchronized void reload() {
+        try {
+            byte[] content = Files.readAllBytes(configFile);
+            // Truncated by an editor which is about to write the new content.
+            if (content.length == 0) return;
+            changed(parse(content));
+        } catch (NoSuchFileException e) {
+            // Replaced through a rename; the event for the new file follows.
+        } catch (IOException e) {
+            // Usually a half written file, the event for the complete file follows.
+            LOGGER.log(Level.FINE, "Could not reload the configuration", e);
+        }
+    }
+
+    /**
+     * Caches a new configuration and notifies the listeners if it differs from the cached one, which filters out
+     * the watch events caused by our own writes.
+     */
+    private void changed(ConfigurationFile updated) {
+        ConfigurationFile previous = configuration;
+        configuration = updated;
+        if (updated.equals(previous)) return;
+        for (Consumer<ConfigurationFile> listener : listeners) listener.accept(updated);
+    }
+
+    private static ConfigurationFile parse(byte[] content) throws IOException {
+        if (content.length == 0) throw new IOException("Configuration file is empty");
+        return READER.readValue(content);
+    }
+}
@@ -3,12 +3,34 @@ package com.example.controller;
 import com.example.interfaces.ConfigurationFileCallback;
 import com.example.config.ConfigurationFile;
 import com.example.config.ConfigurationFileHandler;
+import com.example.metrics.MetricsReporter;
+import com.example.metrics.VaultMetrics;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ConfigurationFileController implements ConfigurationFileCallback {
 
+    private static final String METRICS_FILE_NAME = "metrics.json";
+    private static final long METRICS_REPORT_MINUTES = 5;
+    private static final Logger LOGGER = Logger.getLogger(ConfigurationFileController.class.getName());
+
     public void start() {
+        // Timings and error counts are available over JMX and dumped next to the configuration file.
+        VaultMetrics.registerMBeans();
+        new MetricsReporter(Paths.get(ConfigurationFileHandler.getConfigFilePath()).resolveSibling(METRICS_FILE_NAME))
+                .start(METRICS_REPORT_MINUTES, TimeUnit.MINUTES);
         if (ConfigurationFileHandler.isConfigFileExists()) {
             ConfigurationFileHandler.loadConfigFile(this);
+            try {
+                // Picks up changes made to the file while the application runs.
+                ConfigurationFileHandler.getConfigurationService().startWatching();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not watch the configuration file for changes", e);
+            }
         } else {
             // TODO: Load the configuration setup UI.
             // TODO: Get the filepath the user selects in the UI
@@ -1,22 +1,119 @@
 package com.example.controller;
 
+import com.example.config.AppConfiguration;
+import com.example.storage.Folder;
 import com.example.storage.SerializationFolderStorage;
+import com.example.storage.SerializationPasswordStorage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class FolderController {
 
+    private static final Logger LOGGER = Logger.getLogger(FolderController.class.getName());
+
+    private final SerializationPasswordStorage passwordStorage;
+    private final SerializationFolderStorage folderStorage;
+    private final String locationToSave;
+
+    public FolderController(SerializationPasswordStorage passwordStorage, SerializationFolderStorage folderStorage,
+                            AppConfiguration appConfig) {
+        this.passwordStorage = passwordStorage;
+        this.folderStorage = folderStorage;
+        this.locationToSave = appConfig.getFileLocation();
+    }
+
     public void addFolder() {
         // TODO: Implement the UI for the folder
         // TODO: Get the folder name from the UI
         String folderName = "folderName"; // Temporary value to get rid of error
-        while (true) {
-            if (SerializationFolderStorage.folderExists(folderName)) {
-                // TODO: Display to the user that the folder already exists and let the user try again.
-            } else {
-                SerializationFolderStorage.addFolder(folderName);
-                break;
+        // Checking and creating is a single atomic step, so a folder created concurrently is reported as existing.
+        if (!folderStorage.addFolder(folderName)) {
+            // TODO: Display to the user that the folder already exists and let the user try again.
+            // TODO: Implement the scenario where the user cancels the operation
+            return;
+        }
+        saveFolders();
+    }
+
+    /**
+     * Renames a folder and moves its subfolders and entries along with it. Only the entries of the renamed
+     * folders are touched. If the entries cannot be moved, the entries moved so far and the folders are renamed
+     * back and the parent folders created for the new path are removed, so the folders always match the entries.
+     * @param oldFolderName The path of the folder to rename.
+     * @param newFolderName The new path of the folder.
+     */
+    public void renameFolder(String oldFolderName, String newFolderName) {
+        List<String> createdParents = new ArrayList<>();
+        Map<String, String> renamed = folderStorage.renameFolder(oldFolderName, newFolderName, createdParents);
+        if (renamed.isEmpty()) {
+            // TODO: Display to the user that the folder already exists and let the user try again.
+            return;
+        }
+        List<Map.Entry<String, String>> moved = new ArrayList<>();
+        try {
+            for (Map.Entry<String, String> folder : renamed.entrySet()) {
+                passwordStorage.renameFolder(folder.getKey(), folder.getValue());
+                moved.add(folder);
             }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not move the entries of folder " + oldFolderName, e);
+            try {
+                for (Map.Entry<String, String> folder : moved) {
+                    passwordStorage.renameFolder(folder.getValue(), folder.getKey());
+                }
+            } catch (RuntimeException undoFailure) {
+                LOGGER.log(Level.WARNING, "Could not move the entries back to folder " + oldFolderName, undoFailure);
+            }
+            folderStorage.renameFolder(newFolderName, oldFolderName);
+            for (int i = createdParents.size() - 1; i >= 0; i--) folderStorage.deleteEmptyFolder(createdParents.get(i));
+            // TODO: Display to the user that the folder could not be renamed.
+            return;
+        }
+        saveFolders();
+    }
 
-            // TODO: Implement the scenario where the user cancels the operation
+    /**
+     * Deletes a folder together with its subfolders and the entries in them. If the entries of a folder cannot
+     * be deleted, that folder and the ones not reached yet are restored, so no entry is left in a deleted folder.
+     * @param folderName The path of the folder to delete.
+     */
+    public void deleteFolder(String folderName) {
+        // TODO: Ask the user to confirm when the folder is not empty (see getFolderEntryCount).
+        List<Folder> deleted = folderStorage.deleteFolder(folderName);
+        for (int i = 0; i < deleted.size(); i++) {
+            try {
+                passwordStorage.removeFolderEntries(deleted.get(i).folderName());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not delete the entries of folder " + deleted.get(i).folderName(), e);
+                for (Folder folder : deleted.subList(i, deleted.size())) folderStorage.addFolder(folder.folderName());
+                saveFolders();
+                // TODO: Display to the user that the folder could not be deleted completely.
+                return;
+            }
+        }
+        saveFolders();
+    }
+
+    /**
+     * Returns the number of entries in a folder, for display next to the folder name.
+     * @param folderName The name of the folder.
+     * @return The number of entries in the folder.
+     */
+    public int getFolderEntryCount(String folderName) {
+        return passwordStorage.getFolderEntryCount(folderName);
+    }
+
+    private void saveFolders() {
+        try {
+            folderStorage.saveFolders(locationToSave);
+        } catch (IOException e) {
+            // TODO: Display to the user that the folders could not be saved.
+            LOGGER.log(Level.WARNING, "Could not save the folders", e);
         }
     }
 
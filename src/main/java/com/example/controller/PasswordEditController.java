@@ -1,14 +1,118 @@
 package com.example.controller;
 
+import com.example.config.AppConfiguration;
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.security.SecurityManager;
 import com.example.storage.PasswordEntry;
+import com.example.storage.PasswordHistory;
+import com.example.storage.SerializationPasswordStorage;
+
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Controller handling the UI when a password is being edited.
  */
-public class PasswordEditController {
+public class PasswordEditController implements PasswordSaveCallback {
+
+    private static final Logger LOGGER = Logger.getLogger(PasswordEditController.class.getName());
+
+    private final SerializationPasswordStorage passwordStorage;
+    private final String locationToSave;
+    private final SecurityManager securityManager;
+    private final Long entryId;
 
-    public PasswordEditController(PasswordEntry passwordEntry) {
+    /**
+     * @param passwordEntry The entry being edited.
+     * @param securityManager Encrypts the edited password while the vault is unlocked. Passwords are stored as
+     *                        entered when null.
+     */
+    public PasswordEditController(SerializationPasswordStorage passwordStorage, AppConfiguration appConfig,
+                                  SecurityManager securityManager, PasswordEntry passwordEntry) {
+        this.passwordStorage = passwordStorage;
+        this.locationToSave = appConfig.getFileLocation();
+        this.securityManager = securityManager;
+        // The id stays the same however often the entry is saved from this screen.
+        this.entryId = passwordStorage.getEntryId(passwordEntry);
     }
 
+    /**
+     * Called when the save button is pressed.
+     * @param username The new username.
+     * @param password The new password.
+     * @param website The new website.
+     * @param folder The new folder.
+     */
+    public void handleSaveButtonPressed(String username, String password, String website, String folder) {
+        if (entryId == null || passwordStorage.getPasswordEntry(entryId) == null) {
+            onEditError("password_not_found");
+            return;
+        }
+        PasswordEntry passwordObj = new PasswordEntry(username, password, website, folder);
+        if (securityManager != null) {
+            try {
+                passwordObj = securityManager.getEngine().encryptEntry(passwordObj);
+            } catch (GeneralSecurityException | IllegalStateException e) {
+                LOGGER.log(Level.WARNING, "Could not encrypt the edited entry", e);
+                onEditError("encryption_failed");
+                return;
+            }
+        }
+        try {
+            passwordStorage.updatePasswordEntry(entryId, passwordObj);
+        } catch (IllegalArgumentException e) {
+            onEditError("password_already_exists");
+            return;
+        } catch (UncheckedIOException e) {
+            LOGGER.log(Level.WARNING, "Could not update the entry", e);
+            onEditError("edit_failed");
+            return;
+        }
+        passwordStorage.commitChanges(this, locationToSave);
+    }
 
+    /**
+     * Returns the previous passwords of the entry being edited.
+     * @return Up to PasswordHistory.MAX_VERSIONS passwords, newest first, as they are stored.
+     */
+    public List<PasswordHistory.Version> getPasswordHistory() {
+        if (entryId == null || passwordStorage.getPasswordEntry(entryId) == null) return List.of();
+        return passwordStorage.getPasswordHistory(entryId);
+    }
+
+    /**
+     * Called when the cancel button is pressed.
+     */
+    public void handleCancelButtonPressed() {
+        // TODO: Implement the method to discard the UI and go back to the previous screen.
+    }
+
+    /**
+     * Called when the entry could not be updated.
+     * @param error "password_not_found", "encryption_failed", "password_already_exists" or "edit_failed".
+     */
+    public void onEditError(String error) {
+        // TODO: Implement the UI which displays the error to the user.
+    }
+
+    @Override
+    public void onPasswordSaveSuccess() {
+        // TODO: Implement the UI to show the user that the password was updated successfully.
+    }
+
+    @Override
+    public void onPasswordSaveError(String errorMessage) {
+        // TODO: Implement the UI which displays the error message along with the action to the user
+    }
+
+    @Override
+    public void onAddPasswordEntrySuccess() {
+    }
+
+    @Override
+    public void onAddPasswordEntryError(String error) {
+    }
 }
@@ -2,20 +2,48 @@ package com.example.controller;
 
 import com.example.config.AppConfiguration;
 import com.example.interfaces.PasswordSaveCallback;
+import com.example.security.SecurityManager;
 import com.example.storage.PasswordEntry;
 import com.example.storage.SerializationPasswordStorage;
+import com.example.storage.VaultSaveExecutor;
+
+import java.security.GeneralSecurityException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This controller is responsible for saving a new password which is added
  */
 public class PasswordEntryController implements PasswordSaveCallback {
 
+    private static final Logger LOGGER = Logger.getLogger(PasswordEntryController.class.getName());
+
     private final SerializationPasswordStorage passwordStorage;
     private final String locationToSave;
+    private final VaultSaveExecutor saveExecutor;
+    private final SecurityManager securityManager;
 
     public PasswordEntryController(SerializationPasswordStorage passwordStorage, AppConfiguration appConfig) {
+        this(passwordStorage, appConfig, null);
+    }
+
+    public PasswordEntryController(SerializationPasswordStorage passwordStorage, AppConfiguration appConfig,
+                                   VaultSaveExecutor saveExecutor) {
+        this(passwordStorage, appConfig, saveExecutor, null);
+    }
+
+    /**
+     * @param saveExecutor The executor saves are handed to, so they run off the UI thread. Saves run on the calling
+     *                     thread when null.
+     * @param securityManager Encrypts the password of new entries while the vault is unlocked, so it is never
+     *                        stored in plaintext. Passwords are stored as entered when null.
+     */
+    public PasswordEntryController(SerializationPasswordStorage passwordStorage, AppConfiguration appConfig,
+                                   VaultSaveExecutor saveExecutor, SecurityManager securityManager) {
         this.passwordStorage = passwordStorage;
         this.locationToSave = appConfig.getFileLocation();
+        this.saveExecutor = saveExecutor;
+        this.securityManager = securityManager;
     }
 
     /**
@@ -26,10 +54,29 @@ public class PasswordEntryController implements PasswordSaveCallback {
      * @param folder The folder to save.
      */
     public void handleSaveButtonPressed(String username, String password, String website, String folder) {
+        int reuseCount = passwordStorage.countEntriesUsingPassword(password);
+        if (reuseCount > 0) onPasswordReused(reuseCount);
         PasswordEntry passwordObj = new PasswordEntry(username, password, website, folder);
+        if (securityManager != null) {
+            try {
+                passwordObj = securityManager.getEngine().encryptEntry(passwordObj);
+            } catch (GeneralSecurityException | IllegalStateException e) {
+                LOGGER.log(Level.WARNING, "Could not encrypt the new entry", e);
+                onAddPasswordEntryError("encryption_failed");
+                return;
+            }
+        }
         passwordStorage.addPasswordEntry(passwordObj, this);
     }
 
+    /**
+     * Called before a password is saved which other entries already use. The entry is still saved.
+     * @param reuseCount The number of entries already using the password.
+     */
+    public void onPasswordReused(int reuseCount) {
+        // TODO: Implement the UI to warn the user that the password is already used by reuseCount accounts.
+    }
+
     /**
      * Called when the cancel button is pressed.
      */
@@ -46,7 +93,13 @@ public class PasswordEntryController implements PasswordSaveCallback {
 
     @Override
     public void onAddPasswordEntrySuccess() {
-        passwordStorage.savePasswords(this, locationToSave);
+        // The new entry is already in the journal when the vault is open, so this only writes a full snapshot
+        // for a vault which has never been saved at this location.
+        if (saveExecutor != null) {
+            saveExecutor.requestSave(this, locationToSave);
+        } else {
+            passwordStorage.commitChanges(this, locationToSave);
+        }
     }
 
     @Override
@@ -1,10 +1,12 @@
 package com.example.controller;
 
+import com.example.config.AppConfiguration;
 import com.example.interfaces.PasswordLoadCallback;
 import com.example.storage.PasswordEntry;
 import com.example.storage.SerializationPasswordStorage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The controller for loading passwords.
@@ -12,6 +14,20 @@ import java.util.List;
 public class PasswordLoadController implements PasswordLoadCallback {
 
     private final SerializationPasswordStorage passwordStorage = new SerializationPasswordStorage();
+    private final String locationToLoad;
+    private CompletableFuture<Void> pendingLoad;
+
+    public PasswordLoadController() {
+        this.locationToLoad = System.getProperty("user.home");
+    }
+
+    /**
+     * @param appConfig The configuration whose vault directory is loaded, the same one the vault is saved to.
+     */
+    public PasswordLoadController(AppConfiguration appConfig) {
+        this.locationToLoad = appConfig.getFileLocation();
+        passwordStorage.setCompactionThreshold(appConfig.getCompactionThresholdBytes());
+    }
 
     /**
      * Called when the password loading is successful.
@@ -30,13 +46,51 @@ public class PasswordLoadController implements PasswordLoadCallback {
 
     }
 
+    /**
+     * Called when a batch of entries has been read while the vault is still loading.
+     * @param passwordEntries The entries read in this batch.
+     */
+    @Override
+    public void onPasswordBatchLoaded(List<PasswordEntry> passwordEntries) {
+        // TODO: Append the entries to the list view (on the JavaFX thread).
+    }
+
+    /**
+     * Called after every batch while the vault is loading.
+     */
+    @Override
+    public void onPasswordLoadProgress(long entriesLoaded, long bytesRead, long totalBytes) {
+        // TODO: Update the progress indicator (on the JavaFX thread).
+    }
+
     /**
      * Loads the password entries from the password storage.
      * @return The password storage object.
      */
     public SerializationPasswordStorage loadPasswordEntries() {
-        passwordStorage.loadPasswords(this);
+        passwordStorage.loadPasswords(this, locationToLoad);
+        return passwordStorage;
+    }
+
+    /**
+     * Starts loading the password entries in the background, from the same directory as loadPasswordEntries.
+     * Entries are delivered through onPasswordBatchLoaded while the load is running.
+     * @return The password storage object being loaded.
+     */
+    public synchronized SerializationPasswordStorage loadPasswordEntriesAsync() {
+        cancelLoad();
+        pendingLoad = passwordStorage.loadPasswordsAsync(this, locationToLoad);
         return passwordStorage;
     }
 
+    /**
+     * Cancels a background load, e.g. when the user closes the vault before it finished loading.
+     */
+    public synchronized void cancelLoad() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel(false);
+            pendingLoad = null;
+        }
+    }
+
 }
@@ -0,0 +1,34 @@
+package com.example.interfaces;
+
+import com.example.additionalfuc.ExportResult;
+
+/**
+ * The interface for handling the result of a background export.
+ */
+public interface ExportCallback {
+    /**
+     * Called once the export file and its checksum have been written.
+     * @param result The number of exported entries and the checksum of the file.
+     */
+    void onExportSuccess(ExportResult result);
+
+    /**
+     * Called when the export failed. No export file is left behind.
+     * @param errorMessage The error message describing the cause of the error.
+     */
+    void onExportError(String errorMessage);
+
+    /**
+     * Called regularly while entries are being written.
+     * @param entriesExported The number of entries written so far.
+     * @param totalEntries The number of entries to export.
+     */
+    default void onExportProgress(long entriesExported, long totalEntries) {
+    }
+
+    /**
+     * Called instead of onExportSuccess when the export was cancelled. No export file is left behind.
+     */
+    default void onExportCancelled() {
+    }
+}
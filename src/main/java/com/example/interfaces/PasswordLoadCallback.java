@@ -19,4 +19,27 @@ public interface PasswordLoadCallback {
      * @param errorMessage The error message describing the cause of the error.
      */
     void onPasswordLoadError(String errorMessage);
+
+    /**
+     * Called every time a batch of entries has been read from the vault, before the load completes.
+     * Lets the caller display entries while the rest of the vault is still being read.
+     * @param passwordEntries The entries read in this batch.
+     */
+    default void onPasswordBatchLoaded(List<PasswordEntry> passwordEntries) {
+    }
+
+    /**
+     * Called after every batch while the vault is being read.
+     * @param entriesLoaded The number of entries read so far.
+     * @param bytesRead The number of bytes of the vault file read so far.
+     * @param totalBytes The size of the vault file.
+     */
+    default void onPasswordLoadProgress(long entriesLoaded, long bytesRead, long totalBytes) {
+    }
+
+    /**
+     * Called instead of onPasswordLoadSuccess when an asynchronous load was cancelled.
+     */
+    default void onPasswordLoadCancelled() {
+    }
 }
@@ -0,0 +1,26 @@
+package com.example.interfaces;
+
+/**
+ * The interface for handling the result of re-keying a vault under a new master password.
+ */
+public interface VaultRekeyCallback {
+    /**
+     * Called once the new vault has replaced the old one.
+     * @param entriesRekeyed The number of entries in the vault.
+     */
+    void onRekeySuccess(long entriesRekeyed);
+
+    /**
+     * Called when the vault could not be re-keyed. The old vault is left in place.
+     * @param errorMessage The error message describing the cause of the error.
+     */
+    void onRekeyError(String errorMessage);
+
+    /**
+     * Called every time a chunk of entries has been written to the new vault.
+     * @param entriesRekeyed The number of entries written so far.
+     * @param totalEntries The number of entries in the vault.
+     */
+    default void onRekeyProgress(long entriesRekeyed, long totalEntries) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.metrics;
+
+import com.example.storage.AtomicVaultFile;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically logs a one-line summary of the {@link VaultMetrics} and dumps all values to a local JSON file.
+ * <p>
+ * The dump replaces the file atomically, so a tool reading it never sees a partial document. Nothing leaves the
+ * machine; the file only holds counts and timings, never entry content.
+ */
+public class MetricsReporter implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger("com.example.metrics");
+    private static final ObjectWriter WRITER = JsonMapper.builder().build().writerWithDefaultPrettyPrinter();
+
+    private final Path dumpFile;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a reporter.
+     * @param dumpFile The file the JSON dump is written to, or null to only log the summary.
+     */
+    public MetricsReporter(Path dumpFile) {
+        this.dumpFile = dumpFile;
+    }
+
+    /**
+     * Starts reporting at a fixed rate.
+     * @param period The time between two reports.
+     * @param unit The unit of the period.
+     */
+    public void start(long period, TimeUnit unit) {
+        scheduler.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+
+    /**
+     * Logs the summary and writes the dump once.
+     */
+    public void report() {
+        LOGGER.info(summary());
+        if (dumpFile == null) return;
+        try {
+            dump(dumpFile);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the metrics to " + dumpFile, e);
+        }
+    }
+
+    /**
+     * Writes the current values of all operations as JSON.
+     * @param file The file to replace.
+     * @throws IOException If the file could not be written.
+     */
+    public static void dump(Path file) throws IOException {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("timestamp", Instant.now().toString());
+        document.put("operations", VaultMetrics.snapshot());
+        AtomicVaultFile.write(file, WRITER.writeValueAsBytes(document), 0);
+    }
+
+    /**
+     * Returns a one-line summary of the operations which were performed at least once.
+     * @return The summary, e.g. 'save n=12 err=0 p50=3.1ms p99=8.4ms max=9.0ms'.
+     */
+    public static String summary() {
+        StringBuilder summary = new StringBuilder("vault metrics:");
+        for (OperationMetrics metrics : VaultMetrics.all()) {
+            if (metrics.getCount() == 0) continue;
+            summary.append(String.format(" %s n=%d err=%d p50=%.3fms p99=%.3fms max=%.3fms;", metrics.getName(),
+                    metrics.getCount(), metrics.getErrorCount(), metrics.getP50Millis(), metrics.getP99Millis(),
+                    metrics.getMaxMillis()));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Stops reporting.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
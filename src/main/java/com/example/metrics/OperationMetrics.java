@@ -0,0 +1,158 @@
+package com.example.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency, count, bytes and errors of one kind of vault operation.
+ * <p>
+ * Callers take a start time with {@link #start()} and report the outcome with {@link #success} or
+ * {@link #failure}. Failures are logged with their stack trace to the 'com.example.metrics' logger, which replaces
+ * printing them to stderr.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger("com.example.metrics");
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String name;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile String lastError;
+
+    public OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the start time of an operation.
+     * @return The current System.nanoTime().
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a successful operation.
+     * @param start The start time returned by {@link #start()}.
+     */
+    public void success(long start) {
+        latencies.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records a successful operation which read or wrote data.
+     * @param start The start time returned by {@link #start()}.
+     * @param byteCount The number of bytes read or written.
+     */
+    public void success(long start, long byteCount) {
+        latencies.record(System.nanoTime() - start);
+        bytes.addAndGet(byteCount);
+    }
+
+    /**
+     * Records and logs a failed operation.
+     * @param start The start time returned by {@link #start()}.
+     * @param error The cause of the failure.
+     */
+    public void failure(long start, Throwable error) {
+        long nanos = System.nanoTime() - start;
+        latencies.record(nanos);
+        errors.incrementAndGet();
+        lastError = error.toString();
+        LOGGER.log(Level.WARNING, String.format("%s failed after %.1f ms", name, nanos / NANOS_PER_MILLI), error);
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    @Override
+    public double getErrorRate() {
+        long count = latencies.getCount();
+        return count == 0 ? 0 : (double) errors.get() / count;
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latencies.getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latencies.getValueAtQuantile(0.5) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return latencies.getValueAtQuantile(0.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latencies.getValueAtQuantile(0.99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return latencies.getValueAtQuantile(0.999) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latencies.getMaxNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public void reset() {
+        latencies.reset();
+        errors.set(0);
+        bytes.set(0);
+        lastError = null;
+    }
+
+    /**
+     * Returns the current values, e.g. to be written as JSON.
+     * @return The values by name, in a stable order.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", getCount());
+        values.put("errors", getErrorCount());
+        values.put("errorRate", getErrorRate());
+        values.put("bytes", getBytes());
+        values.put("meanMillis", getMeanMillis());
+        values.put("p50Millis", getP50Millis());
+        values.put("p90Millis", getP90Millis());
+        values.put("p99Millis", getP99Millis());
+        values.put("p999Millis", getP999Millis());
+        values.put("maxMillis", getMaxMillis());
+        values.put("lastError", getLastError());
+        return values;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.metrics;
+
+/**
+ * JMX view of the metrics of one vault operation.
+ */
+public interface OperationMetricsMXBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getErrorRate();
+
+    long getBytes();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    String getLastError();
+
+    void reset();
+}
@@ -0,0 +1,138 @@
+package com.example.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue depth, coalescing and write latency of the save requests handed to the background writer.
+ * <p>
+ * Several requests are usually served by one write, so these are kept apart from {@link VaultMetrics#SAVE}, which
+ * counts the snapshot writes themselves. The latency is the time a write took, whether it only confirmed the
+ * journal or wrote a new snapshot.
+ */
+public class SaveQueueMetrics implements SaveQueueMetricsMXBean {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String name;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong pendingRequests = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong maxRequestsPerWrite = new AtomicLong();
+
+    public SaveQueueMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a save request which is waiting for a write.
+     */
+    public void requested() {
+        requests.incrementAndGet();
+        pendingRequests.incrementAndGet();
+    }
+
+    /**
+     * Records a write which served a batch of requests.
+     * @param requestCount The number of requests answered by the write.
+     * @param start The start time of the write, from {@link OperationMetrics#start()}.
+     * @param success False if the requests were answered with an error.
+     */
+    public void written(int requestCount, long start, boolean success) {
+        latencies.record(System.nanoTime() - start);
+        pendingRequests.addAndGet(-requestCount);
+        coalescedRequests.addAndGet(requestCount - 1);
+        maxRequestsPerWrite.accumulateAndGet(requestCount, Math::max);
+        if (!success) failedWrites.incrementAndGet();
+    }
+
+    @Override
+    public long getPendingRequests() {
+        return pendingRequests.get();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public long getWrites() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    @Override
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    @Override
+    public double getMeanRequestsPerWrite() {
+        long writes = latencies.getCount();
+        return writes == 0 ? 0 : (double) (writes + coalescedRequests.get()) / writes;
+    }
+
+    @Override
+    public long getMaxRequestsPerWrite() {
+        return maxRequestsPerWrite.get();
+    }
+
+    @Override
+    public double getMeanLatencyMillis() {
+        return latencies.getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99LatencyMillis() {
+        return latencies.getValueAtQuantile(0.99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxLatencyMillis() {
+        return latencies.getMaxNanos() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Clears the counters. The pending requests gauge is kept, since those requests still wait for their write.
+     */
+    @Override
+    public void reset() {
+        latencies.reset();
+        requests.set(0);
+        failedWrites.set(0);
+        coalescedRequests.set(0);
+        maxRequestsPerWrite.set(0);
+    }
+
+    /**
+     * Returns the current values, e.g. to be written as JSON.
+     * @return The values by name, in a stable order.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("pendingRequests", getPendingRequests());
+        values.put("requests", getRequests());
+        values.put("writes", getWrites());
+        values.put("failedWrites", getFailedWrites());
+        values.put("coalescedRequests", getCoalescedRequests());
+        values.put("meanRequestsPerWrite", getMeanRequestsPerWrite());
+        values.put("maxRequestsPerWrite", getMaxRequestsPerWrite());
+        values.put("meanLatencyMillis", getMeanLatencyMillis());
+        values.put("p99LatencyMillis", getP99LatencyMillis());
+        values.put("maxLatencyMillis", getMaxLatencyMillis());
+        return values;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.metrics;
+
+/**
+ * JMX view of the save requests handed to the background writer.
+ */
+public interface SaveQueueMetricsMXBean {
+
+    long getPendingRequests();
+
+    long getRequests();
+
+    long getWrites();
+
+    long getFailedWrites();
+
+    long getCoalescedRequests();
+
+    double getMeanRequestsPerWrite();
+
+    long getMaxRequestsPerWrite();
+
+    double getMeanLatencyMillis();
+
+    double getP99LatencyMillis();
+
+    double getMaxLatencyMillis();
+
+    void reset();
+}
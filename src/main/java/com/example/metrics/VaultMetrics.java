@@ -0,0 +1,102 @@
+package com.example.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The metrics of the vault operations, shared by all storages in the process.
+ * <p>
+ * Each operation is exposed as an MXBean named 'com.example.passwordmanager:type=Operation,name=&lt;name&gt;' once
+ * {@link #registerMBeans()} has been called, so it can be watched with jconsole or any JMX client. The save queue
+ * is exposed as 'com.example.passwordmanager:type=SaveQueue,name=saveQueue'.
+ */
+public final class VaultMetrics {
+
+    public static final String JMX_DOMAIN = "com.example.passwordmanager";
+
+    public static final OperationMetrics LOAD = new OperationMetrics("load");
+    public static final OperationMetrics SAVE = new OperationMetrics("save");
+    public static final OperationMetrics ADD = new OperationMetrics("add");
+    public static final OperationMetrics REMOVE = new OperationMetrics("remove");
+    public static final OperationMetrics EDIT = new OperationMetrics("edit");
+    public static final OperationMetrics KEY_DERIVATION = new OperationMetrics("keyDerivation");
+    public static final OperationMetrics CONFIG_READ = new OperationMetrics("configRead");
+    public static final OperationMetrics CONFIG_WRITE = new OperationMetrics("configWrite");
+    public static final SaveQueueMetrics SAVE_QUEUE = new SaveQueueMetrics("saveQueue");
+
+    private static final List<OperationMetrics> ALL = List.of(LOAD, SAVE, ADD, REMOVE, EDIT, KEY_DERIVATION,
+            CONFIG_READ, CONFIG_WRITE);
+    private static final Logger LOGGER = Logger.getLogger("com.example.metrics");
+
+    private VaultMetrics() {
+    }
+
+    /**
+     * Returns the metrics of all operations.
+     * @return The metrics, in a stable order.
+     */
+    public static List<OperationMetrics> all() {
+        return ALL;
+    }
+
+    /**
+     * Returns the current values of all operations.
+     * @return The values of each operation by operation name.
+     */
+    public static Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        for (OperationMetrics metrics : ALL) snapshot.put(metrics.getName(), metrics.snapshot());
+        snapshot.put(SAVE_QUEUE.getName(), SAVE_QUEUE.snapshot());
+        return snapshot;
+    }
+
+    /**
+     * Registers the MXBeans of all operations with the platform MBean server. Registering twice has no effect.
+     */
+    public static synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics metrics : ALL) {
+            try {
+                server.registerMBean(metrics, objectName(metrics));
+            } catch (InstanceAlreadyExistsException e) {
+                // Already registered.
+            } catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Could not register the MBean of " + metrics.getName(), e);
+            }
+        }
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=SaveQueue,name=" + SAVE_QUEUE.getName());
+            server.registerMBean(SAVE_QUEUE, name);
+        } catch (InstanceAlreadyExistsException e) {
+            // Already registered.
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register the MBean of " + SAVE_QUEUE.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the JMX name of an operation's MXBean.
+     * @param metrics The metrics of the operation.
+     * @return The object name.
+     * @throws JMException If the name is malformed.
+     */
+    public static ObjectName objectName(OperationMetrics metrics) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=Operation,name=" + metrics.getName());
+    }
+
+    /**
+     * Clears the metrics of all operations.
+     */
+    public static void reset() {
+        for (OperationMetrics metrics : ALL) metrics.reset();
+        SAVE_QUEUE.reset();
+    }
+}
@@ -1,4 +1,177 @@
 package com.example.security;
 
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encrypts the secret fields of entries with AES-GCM under the vault key.
+ * <p>
+ * An encrypted field is stored as a token: ENCRYPTED_PREFIX followed by the Base64 encoded IV and ciphertext
+ * (which ends with the GCM tag). Every encryption uses a fresh random IV, so the same secret never produces the
+ * same token twice.
+ * <p>
+ * Looking up a Cipher goes through the provider list, so every thread keeps its own Cipher (they are not
+ * thread-safe), IV generator and working buffers, and re-initializes them for each field. Bulk encryption and
+ * decryption then only allocate the input and output of each field.
+ */
 public class EncryptionUtilities {
+
+    public static final String ENCRYPTED_PREFIX = "$gcm$";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    private static final ThreadLocal<CipherState> CIPHER_STATE = ThreadLocal.withInitial(CipherState::new);
+
+    /**
+     * The Cipher and buffers of one thread.
+     */
+    private static final class CipherState {
+        private final Cipher cipher;
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] iv = new byte[IV_LENGTH];
+        private byte[] input = new byte[256];
+        private byte[] output = new byte[256];
+
+        CipherState() {
+            try {
+                cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                throw new IllegalStateException(TRANSFORMATION + " is not available", e);
+            }
+        }
+
+        byte[] input(int length) {
+            if (input.length < length) input = new byte[Math.max(length, input.length * 2)];
+            return input;
+        }
+
+        byte[] output(int length) {
+            if (output.length < length) output = new byte[Math.max(length, output.length * 2)];
+            return output;
+        }
+    }
+
+    private EncryptionUtilities() {
+    }
+
+    /**
+     * Derives the AES key of a vault from its master password.
+     * @param masterPassword The master password of the vault.
+     * @param parameters The KDF parameters stored in the vault header.
+     * @return The vault key.
+     * @throws GeneralSecurityException If the key could not be derived.
+     */
+    public static SecretKey deriveVaultKey(char[] masterPassword, KdfParameters parameters) throws GeneralSecurityException {
+        byte[] key = KeyDerivationService.deriveKey(masterPassword, parameters);
+        try {
+            return new SecretKeySpec(key, "AES");
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns true if the field holds an encrypted token rather than plaintext.
+     * @param value The stored field.
+     * @return True if the field is encrypted.
+     */
+    public static boolean isEncrypted(String value) {
+        return value != null && value.startsWith(ENCRYPTED_PREFIX);
+    }
+
+    /**
+     * Encrypts a secret field.
+     * @param plaintext The secret to encrypt.
+     * @param key The vault key.
+     * @return The encrypted token.
+     * @throws GeneralSecurityException If the secret could not be encrypted.
+     */
+    public static String encrypt(String plaintext, SecretKey key) throws GeneralSecurityException {
+        return encrypt(plaintext.getBytes(StandardCharsets.UTF_8), key);
+    }
+
+    /**
+     * Encrypts a secret field given as UTF-8 bytes. The bytes are not cleared, that is left to the caller.
+     * @param plaintext The UTF-8 encoded secret to encrypt.
+     * @param key The vault key.
+     * @return The encrypted token.
+     * @throws GeneralSecurityException If the secret could not be encrypted.
+     */
+    public static String encrypt(byte[] plaintext, SecretKey key) throws GeneralSecurityException {
+        CipherState state = CIPHER_STATE.get();
+        state.random.nextBytes(state.iv);
+        state.cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, state.iv));
+        byte[] token = state.output(IV_LENGTH + state.cipher.getOutputSize(plaintext.length));
+        System.arraycopy(state.iv, 0, token, 0, IV_LENGTH);
+        int length = IV_LENGTH + state.cipher.doFinal(plaintext, 0, plaintext.length, token, IV_LENGTH);
+        ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(token, 0, length));
+        return ENCRYPTED_PREFIX + new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decrypts a token produced by {@link #encrypt}.
+     * @param token The encrypted token.
+     * @param key The vault key.
+     * @return The secret.
+     * @throws GeneralSecurityException If the token is malformed, was encrypted under another key or was tampered with.
+     */
+    public static String decrypt(String token, SecretKey key) throws GeneralSecurityException {
+        CipherState state = CIPHER_STATE.get();
+        int length = decryptToOutput(token, key, state);
+        String plaintext = new String(state.output, 0, length, StandardCharsets.UTF_8);
+        Arrays.fill(state.output, 0, length, (byte) 0);
+        return plaintext;
+    }
+
+    /**
+     * Decrypts a token produced by {@link #encrypt} into a new array, which the caller can clear after use.
+     * @param token The encrypted token.
+     * @param key The vault key.
+     * @return The UTF-8 encoded secret.
+     * @throws GeneralSecurityException If the token is malformed, was encrypted under another key or was tampered with.
+     */
+    public static byte[] decryptToBytes(String token, SecretKey key) throws GeneralSecurityException {
+        CipherState state = CIPHER_STATE.get();
+        int length = decryptToOutput(token, key, state);
+        byte[] plaintext = Arrays.copyOf(state.output, length);
+        Arrays.fill(state.output, 0, length, (byte) 0);
+        return plaintext;
+    }
+
+    /**
+     * Decrypts the token into the output buffer of the thread.
+     * @return The length of the secret.
+     */
+    private static int decryptToOutput(String token, SecretKey key, CipherState state) throws GeneralSecurityException {
+        if (!isEncrypted(token)) throw new GeneralSecurityException("Value is not encrypted");
+        int encodedLength = token.length() - ENCRYPTED_PREFIX.length();
+        byte[] encoded = state.input(encodedLength);
+        for (int i = 0; i < encodedLength; i++) {
+            char c = token.charAt(ENCRYPTED_PREFIX.length() + i);
+            if (c > 0x7f) throw new GeneralSecurityException("Malformed encrypted value");
+            encoded[i] = (byte) c;
+        }
+        ByteBuffer bytes;
+        try {
+            bytes = Base64.getDecoder().decode(ByteBuffer.wrap(encoded, 0, encodedLength));
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Malformed encrypted value", e);
+        }
+        int length = bytes.remaining();
+        if (length < IV_LENGTH + TAG_LENGTH / 8) throw new GeneralSecurityException("Malformed encrypted value");
+        state.cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, bytes.array(), 0, IV_LENGTH));
+        byte[] output = state.output(state.cipher.getOutputSize(length - IV_LENGTH));
+        return state.cipher.doFinal(bytes.array(), IV_LENGTH, length - IV_LENGTH, output, 0);
+    }
 }
@@ -0,0 +1,109 @@
+package com.example.security;
+
+import com.example.storage.PasswordEntry;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Encrypts and decrypts the secret fields of entries under the key of an unlocked vault.
+ * <p>
+ * The password is the only secret field; website, username and folder stay in plaintext so the vault can be
+ * listed and searched without the key. The engine is thread-safe: the ciphers and buffers it uses are kept per
+ * thread by {@link EncryptionUtilities}.
+ */
+public class EntryEncryptionEngine {
+
+    private final SecretKey vaultKey;
+
+    /**
+     * @param vaultKey The key of the vault, see {@link EncryptionUtilities#deriveVaultKey}.
+     */
+    public EntryEncryptionEngine(SecretKey vaultKey) {
+        if (vaultKey == null) throw new NullPointerException("Vault key cannot be null");
+        this.vaultKey = vaultKey;
+    }
+
+    /**
+     * Creates the engine of a vault from its master password.
+     * @param masterPassword The master password of the vault.
+     * @param parameters The KDF parameters stored in the vault header.
+     * @return The engine.
+     * @throws GeneralSecurityException If the key could not be derived.
+     */
+    public static EntryEncryptionEngine unlock(char[] masterPassword, KdfParameters parameters)
+            throws GeneralSecurityException {
+        return new EntryEncryptionEngine(EncryptionUtilities.deriveVaultKey(masterPassword, parameters));
+    }
+
+    /**
+     * Returns the key of the vault.
+     * @return The vault key.
+     */
+    public SecretKey getVaultKey() {
+        return vaultKey;
+    }
+
+    /**
+     * Encrypts the secret fields of an entry. An entry which is already encrypted is returned as is.
+     * @param passwordEntry The entry with plaintext secrets.
+     * @return The entry with encrypted secrets.
+     * @throws GeneralSecurityException If a field could not be encrypted.
+     */
+    public PasswordEntry encryptEntry(PasswordEntry passwordEntry) throws GeneralSecurityException {
+        String password = passwordEntry.password();
+        if (password == null || EncryptionUtilities.isEncrypted(password)) return passwordEntry;
+        return new PasswordEntry(passwordEntry.username(), EncryptionUtilities.encrypt(password, vaultKey),
+                passwordEntry.website(), passwordEntry.folder());
+    }
+
+    /**
+     * Decrypts the secret fields of an entry. An entry which is not encrypted is returned as is.
+     * @param passwordEntry The entry with encrypted secrets.
+     * @return The entry with plaintext secrets.
+     * @throws GeneralSecurityException If a field was encrypted under another key or was tampered with.
+     */
+    public PasswordEntry decryptEntry(PasswordEntry passwordEntry) throws GeneralSecurityException {
+        String password = passwordEntry.password();
+        if (!EncryptionUtilities.isEncrypted(password)) return passwordEntry;
+        return new PasswordEntry(passwordEntry.username(), EncryptionUtilities.decrypt(password, vaultKey),
+                passwordEntry.website(), passwordEntry.folder());
+    }
+
+    /**
+     * Decrypts a single secret, e.g. when the user reveals or copies a password.
+     * @param token The encrypted field.
+     * @return The UTF-8 encoded secret, which the caller should clear after use.
+     * @throws GeneralSecurityException If the field was encrypted under another key or was tampered with.
+     */
+    public byte[] decryptSecret(String token) throws GeneralSecurityException {
+        return EncryptionUtilities.decryptToBytes(token, vaultKey);
+    }
+
+    /**
+     * Encrypts the secret fields of a batch of entries on the calling thread.
+     * @param entries The entries with plaintext secrets.
+     * @return The entries with encrypted secrets, in the same order.
+     * @throws GeneralSecurityException If a field could not be encrypted.
+     */
+    public List<PasswordEntry> encryptAll(Collection<PasswordEntry> entries) throws GeneralSecurityException {
+        List<PasswordEntry> encrypted = new ArrayList<>(entries.size());
+        for (PasswordEntry passwordEntry : entries) encrypted.add(encryptEntry(passwordEntry));
+        return encrypted;
+    }
+
+    /**
+     * Decrypts the secret fields of a batch of entries on the calling thread.
+     * @param entries The entries with encrypted secrets.
+     * @return The entries with plaintext secrets, in the same order.
+     * @throws GeneralSecurityException If a field was encrypted under another key or was tampered with.
+     */
+    public List<PasswordEntry> decryptAll(Collection<PasswordEntry> entries) throws GeneralSecurityException {
+        List<PasswordEntry> decrypted = new ArrayList<>(entries.size());
+        for (PasswordEntry passwordEntry : entries) decrypted.add(decryptEntry(passwordEntry));
+        return decrypted;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.security;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Parameters the key of a vault is derived with. They are stored in the vault header, so every vault keeps the
+ * iteration count it was created (or last re-keyed) with, even when the default changes.
+ * @param algorithm The SecretKeyFactory algorithm, e.g. 'PBKDF2WithHmacSHA256'.
+ * @param iterations The PBKDF2 iteration count.
+ * @param keyLength The length of the derived key in bits.
+ * @param salt The salt of the vault.
+ */
+public record KdfParameters(String algorithm, int iterations, int keyLength, byte[] salt) {
+
+    public KdfParameters {
+        Objects.requireNonNull(algorithm, "algorithm");
+        Objects.requireNonNull(salt, "salt");
+        if (iterations <= 0) throw new IllegalArgumentException("iterations must be positive");
+        if (keyLength <= 0 || keyLength % 8 != 0) throw new IllegalArgumentException("keyLength must be a positive multiple of 8");
+        salt = salt.clone();
+    }
+
+    @Override
+    public byte[] salt() {
+        return salt.clone();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof KdfParameters parameters
+                && algorithm.equals(parameters.algorithm)
+                && iterations == parameters.iterations
+                && keyLength == parameters.keyLength
+                && Arrays.equals(salt, parameters.salt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(algorithm, iterations, keyLength) * 31 + Arrays.hashCode(salt);
+    }
+
+    @Override
+    public String toString() {
+        return "KdfParameters[algorithm=" + algorithm + ", iterations=" + iterations + ", keyLength=" + keyLength
+                + ", salt=" + Base64.getEncoder().encodeToString(salt) + "]";
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.security;
+
+import com.example.metrics.OperationMetrics;
+import com.example.metrics.VaultMetrics;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
+
+/**
+ * Derives keys from master passwords with PBKDF2.
+ * <p>
+ * Looking up a SecretKeyFactory goes through the provider list on every call, so each thread keeps its own
+ * factory for the default algorithm (factories are not thread-safe). Salts come from a single shared SecureRandom,
+ * which is thread-safe and only has to be seeded once.
+ */
+public class KeyDerivationService {
+
+    public static final String DEFAULT_ALGORITHM = "PBKDF2WithHmacSHA256";
+    public static final int DEFAULT_KEY_LENGTH = 256;
+    public static final int SALT_LENGTH = 16;
+    // Floor for calibrated iteration counts, so a slow or busy machine never produces a weak vault.
+    public static final int MIN_ITERATIONS = 10000;
+    // Iteration counts are rounded to this step, so they read well in the vault header.
+    private static final int ITERATION_STEP = 1000;
+    private static final int CALIBRATION_ITERATIONS = 20000;
+    private static final int CALIBRATION_ROUNDS = 5;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(DEFAULT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DEFAULT_ALGORITHM + " is not available", e);
+        }
+    });
+
+    private KeyDerivationService() {
+    }
+
+    /**
+     * Generates a random salt of SALT_LENGTH bytes.
+     * @return The generated salt.
+     */
+    public static byte[] generateSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        return salt;
+    }
+
+    /**
+     * Creates parameters for a new vault with a fresh salt and the default algorithm and key length.
+     * @param iterations The iteration count, usually from {@link #calibrate(Duration)}.
+     * @return The new parameters.
+     */
+    public static KdfParameters newParameters(int iterations) {
+        return new KdfParameters(DEFAULT_ALGORITHM, iterations, DEFAULT_KEY_LENGTH, generateSalt());
+    }
+
+    /**
+     * Derives a key from a password.
+     * @param password The password. The array is not cleared, that is left to the caller.
+     * @param parameters The parameters of the vault.
+     * @return The derived key, keyLength / 8 bytes long.
+     * @throws NoSuchAlgorithmException If the algorithm of the parameters is not available.
+     * @throws InvalidKeySpecException If the parameters are rejected by the algorithm.
+     */
+    public static byte[] deriveKey(char[] password, KdfParameters parameters)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        long start = OperationMetrics.start();
+        try {
+            byte[] key = derive(password, parameters);
+            VaultMetrics.KEY_DERIVATION.success(start);
+            return key;
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            VaultMetrics.KEY_DERIVATION.failure(start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Measures the derivation speed of this machine and returns the iteration count which makes a derivation take
+     * about the target latency, e.g. 300 ms for unlocking a vault. The result is rounded to a multiple of 1000
+     * and never below MIN_ITERATIONS.
+     * @param targetLatency The time a single derivation should take.
+     * @return The calibrated iteration count.
+     */
+    public static int calibrate(Duration targetLatency) {
+        KdfParameters probe = newParameters(CALIBRATION_ITERATIONS);
+        char[] password = "calibration".toCharArray();
+        long fastest = Long.MAX_VALUE;
+        try {
+            // The first round also warms up the JIT; the fastest round is the least disturbed by other load.
+            for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+                long start = System.nanoTime();
+                // Not through deriveKey, so calibrating does not show up in the KEY_DERIVATION metrics.
+                derive(password, probe);
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException("Key derivation is not available", e);
+        }
+        double iterationsPerNano = (double) CALIBRATION_ITERATIONS / Math.max(1, fastest);
+        long iterations = Math.round(targetLatency.toNanos() * iterationsPerNano / ITERATION_STEP) * ITERATION_STEP;
+        return (int) Math.min(Integer.MAX_VALUE - ITERATION_STEP, Math.max(MIN_ITERATIONS, iterations));
+    }
+
+    private static byte[] derive(char[] password, KdfParameters parameters)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        PBEKeySpec spec = new PBEKeySpec(password, parameters.salt(), parameters.iterations(), parameters.keyLength());
+        try {
+            return factoryFor(parameters.algorithm()).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static SecretKeyFactory factoryFor(String algorithm) throws NoSuchAlgorithmException {
+        if (DEFAULT_ALGORITHM.equals(algorithm)) return FACTORY.get();
+        return SecretKeyFactory.getInstance(algorithm);
+    }
+}
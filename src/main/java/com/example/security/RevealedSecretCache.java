@@ -0,0 +1,110 @@
+package com.example.security;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Small cache of recently revealed secrets, so revealing or copying the same password twice in a row does not
+ * decrypt it twice, while keeping as little plaintext in memory as possible.
+ * <p>
+ * The cache holds at most maxEntries secrets, evicting the least recently used one, and forgets a secret once
+ * timeToLive has passed since it was revealed. The char array of every evicted, expired or cleared secret is
+ * zeroed. Callers receive copies, which they should clear themselves once done with them.
+ */
+public class RevealedSecretCache {
+
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoClock;
+    // Keyed by the encrypted field, in access order.
+    private final LinkedHashMap<String, CachedSecret> secrets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private record CachedSecret(char[] plaintext, long expiresAt) {
+    }
+
+    /**
+     * @param maxEntries The maximum number of secrets kept.
+     * @param timeToLive The time a secret is kept after it was revealed.
+     */
+    public RevealedSecretCache(int maxEntries, Duration timeToLive) {
+        this(maxEntries, timeToLive, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock The time source, which lets tests control expiry.
+     */
+    public RevealedSecretCache(int maxEntries, Duration timeToLive, LongSupplier nanoClock) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns a cached secret.
+     * @param token The encrypted field the secret was revealed from.
+     * @return A copy of the secret, or null if it is not cached or has expired.
+     */
+    public synchronized char[] get(String token) {
+        purgeExpired();
+        CachedSecret secret = secrets.get(token);
+        return secret == null ? null : secret.plaintext().clone();
+    }
+
+    /**
+     * Caches a revealed secret, evicting the least recently used secret if the cache is full.
+     * @param token The encrypted field the secret was revealed from.
+     * @param plaintext The secret. The cache keeps its own copy.
+     */
+    public synchronized void put(String token, char[] plaintext) {
+        purgeExpired();
+        CachedSecret previous = secrets.put(token, new CachedSecret(plaintext.clone(), nanoClock.getAsLong() + timeToLiveNanos));
+        if (previous != null) zero(previous);
+        Iterator<CachedSecret> eldest = secrets.values().iterator();
+        while (secrets.size() > maxEntries) {
+            zero(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the number of secrets currently held.
+     * @return The number of cached secrets.
+     */
+    public synchronized int size() {
+        purgeExpired();
+        return secrets.size();
+    }
+
+    /**
+     * Zeroes and forgets every cached secret, e.g. when the vault is locked.
+     */
+    public synchronized void clear() {
+        for (CachedSecret secret : secrets.values()) zero(secret);
+        secrets.clear();
+    }
+
+    /**
+     * Zeroes and forgets the secrets which have expired. Secrets are revealed in order, so expired secrets are
+     * mostly found at the head; the whole cache is small enough to simply be scanned.
+     */
+    public synchronized void purgeExpired() {
+        long now = nanoClock.getAsLong();
+        Iterator<Map.Entry<String, CachedSecret>> iterator = secrets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CachedSecret secret = iterator.next().getValue();
+            if (now - secret.expiresAt() >= 0) {
+                zero(secret);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void zero(CachedSecret secret) {
+        Arrays.fill(secret.plaintext(), '\0');
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.security;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Computes keyed fingerprints of passwords, so entries sharing a password can be found by comparing fingerprints
+ * instead of passwords.
+ * <p>
+ * A fingerprint is the HMAC-SHA256 of the plaintext password. Encrypted passwords are decrypted first, so the
+ * fingerprints of two entries with the same password match even though their tokens differ. The HMAC key is
+ * derived from the vault key, or random for a vault without one, so fingerprints cannot be checked against
+ * password lists without the key. Fingerprinters are thread-safe.
+ */
+public class SecretFingerprinter {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte[] KEY_LABEL = "entry-fingerprint".getBytes(StandardCharsets.US_ASCII);
+
+    private final EntryEncryptionEngine engine;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * @param engine The engine of the unlocked vault, or null for a vault whose passwords are plaintext. Encrypted
+     *               passwords cannot be fingerprinted without it.
+     */
+    public SecretFingerprinter(EntryEncryptionEngine engine) {
+        this.engine = engine;
+        this.key = new SecretKeySpec(engine == null ? randomKey() : deriveKey(engine.getVaultKey()), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Returns the fingerprint of a stored password.
+     * @param password The password as stored in an entry, plaintext or encrypted.
+     * @return The fingerprint, or null if the password is null or empty, or is encrypted and cannot be decrypted.
+     */
+    public String fingerprint(String password) {
+        if (password == null || password.isEmpty()) return null;
+        if (!EncryptionUtilities.isEncrypted(password)) return fingerprint(password.getBytes(StandardCharsets.UTF_8));
+        if (engine == null) return null;
+        byte[] plaintext;
+        try {
+            plaintext = engine.decryptSecret(password);
+        } catch (GeneralSecurityException e) {
+            // Encrypted under another key; such an entry cannot be revealed either.
+            return null;
+        }
+        try {
+            return fingerprint(plaintext);
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of a plaintext password.
+     * @param password The UTF-8 encoded password.
+     * @return The fingerprint, or null if the password is empty. Entries without a password do not share one.
+     */
+    public String fingerprint(byte[] password) {
+        if (password.length == 0) return null;
+        return Base64.getEncoder().withoutPadding().encodeToString(mac.get().doFinal(password));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac newMac = Mac.getInstance(ALGORITHM);
+            newMac.init(key);
+            return newMac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] deriveKey(SecretKey vaultKey) {
+        try {
+            Mac derivation = Mac.getInstance(ALGORITHM);
+            derivation.init(new SecretKeySpec(vaultKey.getEncoded(), ALGORITHM));
+            return derivation.doFinal(KEY_LABEL);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
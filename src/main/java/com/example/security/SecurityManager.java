@@ -1,4 +1,127 @@
 package com.example.security;
 
+import com.example.config.AppConfiguration;
+import com.example.config.ConfigurationFile;
+import com.example.storage.PasswordEntry;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Holds the encryption engine of the vault while it is unlocked.
+ * <p>
+ * Entries keep their password encrypted in memory, exactly as stored in the vault, so unlocking a vault does not
+ * decrypt anything. A password is only decrypted when the user reveals or copies it, and recently revealed
+ * passwords are kept in a small {@link RevealedSecretCache}.
+ */
 public class SecurityManager {
+
+    private volatile EntryEncryptionEngine engine;
+    private final RevealedSecretCache revealedSecrets;
+
+    public SecurityManager() {
+        this(new RevealedSecretCache(ConfigurationFile.DEFAULT_REVEALED_CACHE_SIZE,
+                Duration.ofSeconds(ConfigurationFile.DEFAULT_REVEALED_CACHE_TTL_SECONDS)));
+    }
+
+    /**
+     * @param appConfig The configuration giving the size and time to live of the revealed password cache.
+     */
+    public SecurityManager(AppConfiguration appConfig) {
+        this(new RevealedSecretCache(appConfig.getRevealedCacheSize(), appConfig.getRevealedCacheTimeToLive()));
+    }
+
+    /**
+     * @param revealedSecrets The cache of recently revealed passwords.
+     */
+    public SecurityManager(RevealedSecretCache revealedSecrets) {
+        this.revealedSecrets = revealedSecrets;
+    }
+
+    /**
+     * Unlocks the vault by deriving its key from the master password. Passwords revealed in a previous session
+     * are forgotten, since the new key may belong to another vault.
+     * @param masterPassword The master password of the vault.
+     * @param parameters The KDF parameters stored in the vault header.
+     * @throws GeneralSecurityException If the key could not be derived.
+     */
+    public void unlock(char[] masterPassword, KdfParameters parameters) throws GeneralSecurityException {
+        revealedSecrets.clear();
+        engine = EntryEncryptionEngine.unlock(masterPassword, parameters);
+    }
+
+    /**
+     * Switches to the new key of a vault which has been re-keyed, see
+     * {@link com.example.storage.SerializationPasswordStorage#rekeyVault}. Passwords revealed under the old key
+     * are forgotten.
+     * @param newKey The new vault key.
+     */
+    public void rekey(SecretKey newKey) {
+        revealedSecrets.clear();
+        engine = new EntryEncryptionEngine(newKey);
+    }
+
+    /**
+     * Locks the vault. Secrets can no longer be encrypted or decrypted until it is unlocked again.
+     */
+    public void lock() {
+        engine = null;
+        revealedSecrets.clear();
+    }
+
+    /**
+     * Returns true if the vault is unlocked.
+     * @return True if the vault is unlocked.
+     */
+    public boolean isUnlocked() {
+        return engine != null;
+    }
+
+    /**
+     * Returns the encryption engine of the unlocked vault.
+     * @return The engine.
+     * @throws IllegalStateException If the vault is locked.
+     */
+    public EntryEncryptionEngine getEngine() {
+        EntryEncryptionEngine current = engine;
+        if (current == null) throw new IllegalStateException("Vault is locked");
+        return current;
+    }
+
+    /**
+     * Decrypts the password of an entry for the user to see or copy.
+     * @param passwordEntry The entry, with its password encrypted as stored in the vault.
+     * @return The password, which the caller should clear (e.g. with Arrays.fill) once it has been shown or copied.
+     *         Null if the entry has no password.
+     * @throws GeneralSecurityException If the password could not be decrypted.
+     * @throws IllegalStateException If the vault is locked.
+     */
+    public char[] revealPassword(PasswordEntry passwordEntry) throws GeneralSecurityException {
+        String token = passwordEntry.password();
+        if (token == null) return null;
+        // Entries written before the vault was encrypted still hold their password in plaintext.
+        if (!EncryptionUtilities.isEncrypted(token)) return token.toCharArray();
+        EntryEncryptionEngine current = getEngine();
+        char[] cached = revealedSecrets.get(token);
+        if (cached != null) return cached;
+        byte[] plaintext = current.decryptSecret(token);
+        char[] password;
+        try {
+            CharBuffer chars = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(plaintext));
+            password = Arrays.copyOfRange(chars.array(), chars.position(), chars.limit());
+            Arrays.fill(chars.array(), '\0');
+        } catch (CharacterCodingException e) {
+            throw new GeneralSecurityException("Decrypted password is not valid UTF-8", e);
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+        revealedSecrets.put(token, password);
+        return password;
+    }
 }
@@ -0,0 +1,195 @@
+package com.example.storage;
+
+import com.example.security.KdfParameters;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.function.UnaryOperator;
+
+/**
+ * Writes vault files (and the other files kept next to the vault) so that a crash or a full disk in the middle of a save never damages the existing vault.
+ * <p>
+ * The new content is written to a temporary file in the same directory and forced to disk with
+ * {@link FileChannel#force}. The previous vault is then kept as the first backup and the temporary file is
+ * atomically renamed over the vault. Until the rename, the vault file still holds the previous complete snapshot.
+ */
+public class AtomicVaultFile {
+
+    public static final String TEMP_SUFFIX = ".tmp";
+    public static final String BACKUP_SUFFIX = ".bak.";
+
+    private AtomicVaultFile() {
+    }
+
+    /**
+     * Atomically replaces the vault file with the given entries.
+     * @param vaultFile The vault file to replace.
+     * @param entries The entries to write.
+     * @param backups The number of previous versions of the vault to keep as 'passwords.vault.bak.1' (newest)
+     *                up to 'passwords.vault.bak.N' (oldest). Zero keeps no backups.
+     * @throws IOException If the vault could not be written. The previous vault is left in place in that case.
+     */
+    public static void write(Path vaultFile, Collection<PasswordEntry> entries, int backups) throws IOException {
+        write(vaultFile, entries, null, backups, UnaryOperator.identity());
+    }
+
+    /**
+     * Atomically replaces the vault file with the given entries and stores the KDF parameters in its header.
+     * @param vaultFile The vault file to replace.
+     * @param entries The entries to write.
+     * @param kdfParameters The parameters the vault key is derived with, or null if the vault has none.
+     * @param backups The number of previous versions of the vault to keep, see {@link #write(Path, Collection, int)}.
+     * @throws IOException If the vault could not be written. The previous vault is left in place in that case.
+     */
+    public static void write(Path vaultFile, Collection<PasswordEntry> entries, KdfParameters kdfParameters,
+                             int backups) throws IOException {
+        write(vaultFile, entries, kdfParameters, backups, UnaryOperator.identity());
+    }
+
+    /**
+     * Atomically replaces the vault file with entries produced while the file is written, so they never have to be
+     * held in memory all at once.
+     * @param vaultFile The vault file to replace.
+     * @param kdfParameters The parameters the vault key is derived with, or null if the vault has none.
+     * @param backups The number of previous versions of the vault to keep, see {@link #write(Path, Collection, int)}.
+     * @param entries Writes the entries of the new vault. The vault is left untouched if it throws.
+     * @throws IOException If the vault could not be written. The previous vault is left in place in that case.
+     */
+    public static void write(Path vaultFile, KdfParameters kdfParameters, int backups, EntryWriter entries)
+            throws IOException {
+        replace(vaultFile, backups, UnaryOperator.identity(), out -> {
+            try (VaultWriter writer = new VaultWriter(out, kdfParameters)) {
+                entries.writeEntries(writer);
+            }
+        });
+    }
+
+    /**
+     * Writes the entries of a vault which is being replaced.
+     */
+    public interface EntryWriter {
+        void writeEntries(VaultWriter writer) throws IOException;
+    }
+
+    /**
+     * Atomically replaces a file next to the vault with the given content, with the same guarantees as the vault.
+     * @param file The file to replace.
+     * @param content The new content of the file.
+     * @param backups The number of previous versions of the file to keep, see {@link #write(Path, Collection, int)}.
+     * @throws IOException If the file could not be written. The previous file is left in place in that case.
+     */
+    public static void write(Path file, byte[] content, int backups) throws IOException {
+        replace(file, backups, UnaryOperator.identity(), out -> out.write(content));
+    }
+
+    /**
+     * Atomically replaces a file next to the vault with content written to a stream, with the same guarantees as
+     * the vault. The stream is not buffered.
+     * @param file The file to replace.
+     * @param backups The number of previous versions of the file to keep, see {@link #write(Path, Collection, int)}.
+     * @param content Writes the new content of the file. The file is left untouched if it throws.
+     * @throws IOException If the file could not be written. The previous file is left in place in that case.
+     */
+    public static void write(Path file, int backups, ContentWriter content) throws IOException {
+        replace(file, backups, UnaryOperator.identity(), content);
+    }
+
+    /**
+     * Writes the content of a file which is being replaced.
+     */
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Returns the path of a backup of the vault file.
+     * @param vaultFile The vault file.
+     * @param index The index of the backup, 1 being the newest.
+     * @return The path of the backup.
+     */
+    public static Path backupFile(Path vaultFile, int index) {
+        return vaultFile.resolveSibling(vaultFile.getFileName() + BACKUP_SUFFIX + index);
+    }
+
+    /**
+     * Writes the vault through the given decorator, which lets tests inject write failures.
+     */
+    static void write(Path vaultFile, Collection<PasswordEntry> entries, int backups,
+                      UnaryOperator<OutputStream> streamDecorator) throws IOException {
+        write(vaultFile, entries, null, backups, streamDecorator);
+    }
+
+    private static void write(Path vaultFile, Collection<PasswordEntry> entries, KdfParameters kdfParameters,
+                              int backups, UnaryOperator<OutputStream> streamDecorator) throws IOException {
+        replace(vaultFile, backups, streamDecorator, out -> {
+            try (VaultWriter writer = new VaultWriter(out, kdfParameters)) {
+                for (PasswordEntry passwordEntry : entries) writer.write(passwordEntry);
+            }
+        });
+    }
+
+    private static void replace(Path file, int backups, UnaryOperator<OutputStream> streamDecorator,
+                                ContentWriter content) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream channelStream = new FilterOutputStream(Channels.newOutputStream(channel)) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // Keep the channel open so it can be forced before the rename.
+                    flush();
+                }
+            };
+            try (OutputStream out = streamDecorator.apply(channelStream)) {
+                content.writeTo(out);
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        rotateBackups(file, backups);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Shifts the existing backups by one and keeps the current vault as the newest backup. The current vault is
+     * hard linked (or copied where links are not supported), so it stays in place until the rename replaces it.
+     */
+    private static void rotateBackups(Path file, int backups) throws IOException {
+        if (backups <= 0 || !Files.exists(file)) return;
+        Files.deleteIfExists(backupFile(file, backups));
+        for (int index = backups - 1; index >= 1; index--) {
+            Path backup = backupFile(file, index);
+            if (Files.exists(backup)) Files.move(backup, backupFile(file, index + 1), StandardCopyOption.ATOMIC_MOVE);
+        }
+        Path newest = backupFile(file, 1);
+        try {
+            Files.createLink(newest, file);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(file, newest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the directory entry of the renamed file to disk. Not every platform allows opening a directory,
+     * in which case the rename is left to the file system's own ordering guarantees.
+     */
+    private static void forceDirectory(Path directory) {
+        if (directory == null) return;
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Directories cannot be opened on Windows.
+        }
+    }
+}
@@ -1,3 +1,27 @@
 package com.example.storage;
 
-public record Folder(String folderName) {}
+/**
+ * A folder entries can be filed under. Nested folders use '/' separated paths, e.g. 'Work/Servers'.
+ */
+public record Folder(String folderName) {
+
+    public static final String PATH_SEPARATOR = "/";
+
+    /**
+     * Returns the path of the parent folder.
+     * @return The parent folder path, or null for a top level folder.
+     */
+    public String parentName() {
+        int separator = folderName.lastIndexOf(PATH_SEPARATOR);
+        return separator < 0 ? null : folderName.substring(0, separator);
+    }
+
+    /**
+     * Returns true if this folder is nested, at any depth, inside the given folder.
+     * @param ancestorName The path of the possible ancestor.
+     * @return True if this folder is inside the given folder.
+     */
+    public boolean isInside(String ancestorName) {
+        return folderName.startsWith(ancestorName + PATH_SEPARATOR);
+    }
+}
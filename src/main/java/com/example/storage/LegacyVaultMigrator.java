@@ -0,0 +1,51 @@
+package com.example.storage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a legacy passwords.ser file, which holds the whole List of PasswordEntry as a single serialized
+ * object, into the record based vault format written by {@link VaultWriter}.
+ */
+public class LegacyVaultMigrator {
+
+    public static final String LEGACY_FILE_NAME = "passwords.ser";
+    public static final String MIGRATED_SUFFIX = ".migrated";
+
+    private LegacyVaultMigrator() {
+    }
+
+    /**
+     * Reads the legacy file and rewrites its entries into the vault file. The vault is written atomically
+     * with {@link AtomicVaultFile}. The legacy file is then renamed with the
+     * {@link #MIGRATED_SUFFIX} so the migration only ever runs once.
+     * @param legacyFile The legacy passwords.ser file.
+     * @param vaultFile The vault file to create.
+     * @return The number of entries migrated.
+     * @throws IOException If the legacy file could not be read or the vault could not be written.
+     */
+    public static long migrate(Path legacyFile, Path vaultFile) throws IOException {
+        List<?> legacyEntries;
+        try (ObjectInputStream inputStream = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacyFile)))) {
+            Object object = inputStream.readObject();
+            if (!(object instanceof List)) throw new IOException("Invalid data format in the legacy password file.");
+            legacyEntries = (List<?>) object;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid data format in the legacy password file.", e);
+        }
+
+        List<PasswordEntry> entries = new ArrayList<>(legacyEntries.size());
+        for (Object object : legacyEntries) {
+            if (!(object instanceof PasswordEntry)) throw new IOException("Invalid data format in the legacy password file.");
+            entries.add((PasswordEntry) object);
+        }
+        AtomicVaultFile.write(vaultFile, entries, 0);
+        Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + MIGRATED_SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING);
+        return entries.size();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.storage;
+
+import com.example.security.KdfParameters;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of a vault file which memory maps the file instead of loading it.
+ * <p>
+ * Opening the vault only walks the record length prefixes to build an index of record offsets (one int per
+ * entry). An entry is decoded from the mapped file each time it is accessed, so the heap only holds the offset
+ * index and the entries the caller currently keeps references to. The view reflects the snapshot in the vault
+ * file; changes which are still in the journal are not included.
+ * <p>
+ * A single mapping is used, so vault files are limited to 2 GB.
+ */
+public class MappedVaultReader extends AbstractList<PasswordEntry> implements RandomAccess, Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final KdfParameters kdfParameters;
+    private final int[] offsets;
+
+    private MappedVaultReader(FileChannel channel, MappedByteBuffer buffer, KdfParameters kdfParameters, int[] offsets) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.kdfParameters = kdfParameters;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Maps the vault file and builds the record offset index.
+     * @param vaultFile The vault file to open.
+     * @return The read-only view of the vault.
+     * @throws IOException If the file could not be mapped or is not a complete vault file.
+     */
+    public static MappedVaultReader open(Path vaultFile) throws IOException {
+        FileChannel channel = FileChannel.open(vaultFile, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Vault file is too large to be memory mapped");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int headerLength = headerLength(buffer);
+            return new MappedVaultReader(channel, buffer, readKdfParameters(buffer, headerLength),
+                    buildIndex(buffer, headerLength));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the entry at the given position.
+     * @param index The position of the entry in the vault.
+     * @return The decoded entry.
+     * @throws UncheckedIOException If the record is corrupted.
+     */
+    @Override
+    public PasswordEntry get(int index) {
+        int offset = offsets[index];
+        int length = buffer.getInt(offset - Integer.BYTES);
+        try {
+            return VaultRecordCodec.decode(buffer.slice(offset, length));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted vault record " + index, e);
+        }
+    }
+
+    /**
+     * Returns the KDF parameters stored in the vault header.
+     * @return The parameters, or null if the vault has none.
+     */
+    public KdfParameters getKdfParameters() {
+        return kdfParameters;
+    }
+
+    /**
+     * Returns the number of entries in the vault.
+     * @return The number of entries.
+     */
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released once the reader is garbage collected.
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Validates the header and returns its length, including the KDF block.
+     */
+    private static int headerLength(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < VaultRecordCodec.HEADER_LENGTH) throw new IOException("Vault file is too short to contain a header");
+        short flags = VaultRecordCodec.checkHeader(buffer.getInt(0), buffer.getShort(Integer.BYTES),
+                buffer.getShort(Integer.BYTES + Short.BYTES));
+        if ((flags & VaultRecordCodec.FLAG_KDF_PARAMETERS) == 0) return VaultRecordCodec.HEADER_LENGTH;
+        if (buffer.limit() < VaultRecordCodec.HEADER_LENGTH + Short.BYTES) throw new IOException("Vault header is truncated");
+        int length = VaultRecordCodec.HEADER_LENGTH + Short.BYTES + Short.toUnsignedInt(buffer.getShort(VaultRecordCodec.HEADER_LENGTH));
+        if (buffer.limit() < length) throw new IOException("Vault header is truncated");
+        return length;
+    }
+
+    private static KdfParameters readKdfParameters(ByteBuffer buffer, int headerLength) throws IOException {
+        int blockOffset = VaultRecordCodec.HEADER_LENGTH + Short.BYTES;
+        if (headerLength < blockOffset) return null;
+        return VaultRecordCodec.decodeKdfParameters(buffer.slice(blockOffset, headerLength - blockOffset));
+    }
+
+    private static int[] buildIndex(ByteBuffer buffer, int headerLength) throws IOException {
+        int limit = buffer.limit();
+        int[] offsets = new int[1024];
+        int count = 0;
+        int position = headerLength;
+        while (true) {
+            if (limit - position < Integer.BYTES) throw new IOException("Vault file is truncated after " + count + " entries");
+            int length = buffer.getInt(position);
+            position += Integer.BYTES;
+            if (length == VaultRecordCodec.END_OF_RECORDS) break;
+            VaultRecordCodec.checkRecordLength(length);
+            if (limit - position < length) throw new IOException("Vault file is truncated after " + count + " entries");
+            if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+            offsets[count++] = position;
+            position += length;
+        }
+        if (limit - position < Long.BYTES || buffer.getLong(position) != count) {
+            throw new IOException("Vault trailer does not match the " + count + " entries found");
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+}
@@ -1,3 +1,6 @@
 package com.example.storage;
 
-public record PasswordEntry(String username, String password, String website, String folder) {}
+import java.io.Serializable;
+
+// Serializable so legacy passwords.ser files can still be read by the LegacyVaultMigrator.
+public record PasswordEntry(String username, String password, String website, String folder) implements Serializable {}
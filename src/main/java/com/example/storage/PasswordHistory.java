@@ -0,0 +1,259 @@
+package com.example.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * The previous passwords of each account, at most MAX_VERSIONS per account.
+ * <p>
+ * Passwords are kept exactly as stored in the vault, so the history of an encrypted vault only holds ciphertext.
+ * The history of a saved vault lives in 'passwords.history' next to the vault file and is not held in memory:
+ * replacing a password appends one record, and reading the history of an account scans the file. The file is
+ * compacted to the newest MAX_VERSIONS records of every account still in the vault when it is opened and whenever
+ * it has doubled in size since, so it stays proportional to the vault however often passwords are rotated.
+ * A vault which has never been saved keeps its history in memory, bounded the same way.
+ */
+public class PasswordHistory implements Closeable {
+
+    public static final String HISTORY_FILE_NAME = "passwords.history";
+    public static final int MAX_VERSIONS = 10;
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    /**
+     * A replaced password.
+     * @param password The password as it was stored.
+     * @param replacedAt When it was replaced, in milliseconds since the epoch.
+     */
+    public record Version(String password, long replacedAt) {
+    }
+
+    private final Path file;
+    private final Predicate<String> liveAccounts;
+    private final Map<String, Deque<Version>> memory = new HashMap<>();
+    private FileChannel channel;
+    private long compactedSize;
+
+    private PasswordHistory(Path file, Predicate<String> liveAccounts) {
+        this.file = file;
+        this.liveAccounts = liveAccounts;
+    }
+
+    /**
+     * Creates a history which is only kept in memory.
+     * @param liveAccounts Tells which accounts still exist, passed on by {@link #moveTo}.
+     * @return The history.
+     */
+    static PasswordHistory inMemory(Predicate<String> liveAccounts) {
+        return new PasswordHistory(null, liveAccounts);
+    }
+
+    /**
+     * Opens the history file in a vault directory, compacting it first.
+     * @param directory The directory holding the vault file.
+     * @param liveAccounts Tells which accounts still exist, so the history of removed accounts is dropped.
+     * @return The history.
+     * @throws IOException If the file could not be read or written.
+     */
+    static PasswordHistory open(Path directory, Predicate<String> liveAccounts) throws IOException {
+        PasswordHistory history = new PasswordHistory(directory.resolve(HISTORY_FILE_NAME), liveAccounts);
+        history.compact();
+        return history;
+    }
+
+    /**
+     * Opens the history file in a vault directory and appends the versions recorded in this history to it.
+     * @param directory The directory holding the vault file.
+     * @return The file-backed history. This history is closed.
+     * @throws IOException If the file could not be read or written.
+     */
+    synchronized PasswordHistory moveTo(Path directory) throws IOException {
+        PasswordHistory opened = open(directory, liveAccounts);
+        for (Map.Entry<String, Deque<Version>> account : memory.entrySet()) {
+            List<Version> versions = new ArrayList<>(account.getValue());
+            Collections.reverse(versions);
+            for (Version version : versions) opened.append(account.getKey(), version);
+        }
+        opened.force();
+        close();
+        return opened;
+    }
+
+    /**
+     * Records a replaced password. The record is forced to disk before this returns, since the edit which replaced
+     * the password is already durable in the journal.
+     * @param account The account key of the entry.
+     * @param password The replaced password, as it was stored.
+     * @param replacedAt When it was replaced, in milliseconds since the epoch.
+     * @throws IOException If the record could not be written.
+     */
+    synchronized void record(String account, String password, long replacedAt) throws IOException {
+        append(account, new Version(password, replacedAt));
+        force();
+        if (file != null && channel.size() > Math.max(MIN_COMPACTION_SIZE, 2 * compactedSize)) compact();
+    }
+
+    /**
+     * Carries the history of an account over to another account, e.g. when an update changes the website.
+     * @param fromAccount The previous account key.
+     * @param toAccount The new account key.
+     * @throws IOException If the history could not be read or written.
+     */
+    synchronized void copy(String fromAccount, String toAccount) throws IOException {
+        List<Version> versions = new ArrayList<>(get(fromAccount));
+        Collections.reverse(versions);
+        for (Version version : versions) append(toAccount, version);
+        force();
+    }
+
+    /**
+     * Returns the previous passwords of an account.
+     * @param account The account key.
+     * @return Up to MAX_VERSIONS versions, newest first.
+     * @throws IOException If the history file could not be read.
+     */
+    synchronized List<Version> get(String account) throws IOException {
+        Deque<Version> versions = file == null ? memory.get(account) : readAll(account::equals).get(account);
+        return versions == null ? List.of() : new ArrayList<>(versions);
+    }
+
+    /**
+     * Re-encrypts every stored password, e.g. after the vault key changed.
+     * @param rewriter Returns the new form of a stored password.
+     * @throws IOException If the history could not be rewritten, or a password could not be re-encrypted.
+     */
+    synchronized void rewrite(PasswordRewriter rewriter) throws IOException {
+        Map<String, Deque<Version>> rewritten = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Deque<Version>> account : (file == null ? memory : readAll(liveAccounts)).entrySet()) {
+                Deque<Version> versions = new ArrayDeque<>();
+                for (Version version : account.getValue()) {
+                    versions.addLast(new Version(rewriter.rewrite(version.password()), version.replacedAt()));
+                }
+                rewritten.put(account.getKey(), versions);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not re-encrypt the password history", e);
+        }
+        if (file == null) {
+            memory.clear();
+            memory.putAll(rewritten);
+        } else {
+            writeAll(rewritten);
+        }
+    }
+
+    /**
+     * Rewrites a stored password.
+     */
+    interface PasswordRewriter {
+        String rewrite(String password) throws GeneralSecurityException;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+        memory.clear();
+    }
+
+    private void append(String account, Version version) throws IOException {
+        if (file == null) {
+            Deque<Version> versions = memory.computeIfAbsent(account, key -> new ArrayDeque<>());
+            versions.addFirst(version);
+            if (versions.size() > MAX_VERSIONS) versions.removeLast();
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeRecord(new DataOutputStream(bytes), account, version);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * Forces the appended records to disk. The history of an edit must survive a crash just like the edit itself.
+     */
+    private void force() throws IOException {
+        if (channel != null) channel.force(false);
+    }
+
+    /**
+     * Rewrites the file with the newest MAX_VERSIONS records of every live account. A record cut off by a crash
+     * at the end of the file is dropped.
+     */
+    private void compact() throws IOException {
+        writeAll(readAll(liveAccounts));
+    }
+
+    private void writeAll(Map<String, Deque<Version>> live) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Map.Entry<String, Deque<Version>> account : live.entrySet()) {
+            Iterator<Version> oldestFirst = account.getValue().descendingIterator();
+            while (oldestFirst.hasNext()) writeRecord(out, account.getKey(), oldestFirst.next());
+        }
+        if (channel != null) channel.close();
+        AtomicVaultFile.write(file, bytes.toByteArray(), 0);
+        compactedSize = bytes.size();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Reads the newest MAX_VERSIONS versions of the selected accounts, newest first.
+     */
+    private Map<String, Deque<Version>> readAll(Predicate<String> accounts) throws IOException {
+        Map<String, Deque<Version>> versions = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                String account;
+                Version version;
+                try {
+                    account = readString(in);
+                    version = new Version(readString(in), in.readLong());
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!accounts.test(account)) continue;
+                Deque<Version> accountVersions = versions.computeIfAbsent(account, key -> new ArrayDeque<>());
+                accountVersions.addFirst(version);
+                if (accountVersions.size() > MAX_VERSIONS) accountVersions.removeLast();
+            }
+        } catch (NoSuchFileException e) {
+            // No password was replaced yet.
+        }
+        return versions;
+    }
+
+    private static void writeRecord(DataOutputStream out, String account, Version version) throws IOException {
+        writeString(out, account);
+        writeString(out, version.password());
+        out.writeLong(version.replacedAt());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) return null;
+        if (length < 0) throw new IOException("Corrupted password history");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
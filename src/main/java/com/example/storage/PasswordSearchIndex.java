@@ -0,0 +1,484 @@
+package com.example.storage;
+
+import java.util.*;
+
+/**
+ * In-memory search index over the website, username and folder of password entries.
+ * <p>
+ * Every field value is lower-cased and indexed as a whole ('mail.example.com') and by its tokens
+ * ('mail', 'example', 'com'), which are called terms. Three lookups are supported:
+ * <ul>
+ *     <li>Prefix: terms are kept in a sorted map, so a prefix is a range scan.</li>
+ *     <li>Substring: every whole value is indexed by its trigrams. A query is answered by looking up its rarest
+ *     trigram and checking the values holding it. Queries shorter than a trigram go through the (few thousand)
+ *     distinct trigrams containing them instead.</li>
+ *     <li>Fuzzy: candidate terms sharing enough trigrams with the query are checked with a bounded
+ *     Levenshtein distance. A query too short to share a trigram with a term one edit away ('bnk' for 'bank') is
+ *     checked against the terms of a close enough length instead.</li>
+ * </ul>
+ * The index is not thread-safe; {@link SerializationPasswordStorage} updates and queries it under its own lock.
+ * While the storage builds a fresh index in the background, searches fall back to {@link #scan} and
+ * {@link #scanFuzzy}, which rank a plain pass over the entries the same way.
+ */
+public class PasswordSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    // Term -> entries with a field equal to, or containing the token, term.
+    private final NavigableMap<String, Set<PasswordEntry>> termIndex = new TreeMap<>();
+    // Term length -> the terms of that length, for fuzzy queries too short for the trigram filter.
+    private final Map<Integer, NavigableSet<String>> termsByLength = new HashMap<>();
+    // Trigram -> ids of the whole field values containing it. Values shorter than a trigram are their own gram.
+    private final Map<String, Postings> gramIndex = new HashMap<>();
+    // Whole field values are numbered so gram postings are compact int arrays. Grams are indexed once per
+    // distinct value; ids of removed values are left dead in the postings until the next rebuild.
+    private final Map<String, Integer> valueIds = new HashMap<>();
+    private String[] valuesById = new String[1024];
+    private int[] referenceCounts = new int[1024];
+    private int nextValueId;
+    private int deadValueIds;
+
+    /**
+     * Growable list of value ids.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Adds an entry to the index.
+     * @param passwordEntry The entry to add.
+     */
+    public void add(PasswordEntry passwordEntry) {
+        for (String value : fieldValues(passwordEntry)) {
+            addValue(value);
+            for (String term : terms(value)) {
+                Set<PasswordEntry> entries = termIndex.get(term);
+                if (entries == null) {
+                    entries = new HashSet<>();
+                    termIndex.put(term, entries);
+                    termsByLength.computeIfAbsent(term.length(), length -> new TreeSet<>()).add(term);
+                }
+                entries.add(passwordEntry);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from the index.
+     * @param passwordEntry The entry to remove.
+     */
+    public void remove(PasswordEntry passwordEntry) {
+        for (String value : fieldValues(passwordEntry)) {
+            removeValue(value);
+            for (String term : terms(value)) {
+                Set<PasswordEntry> entries = termIndex.get(term);
+                if (entries == null) continue;
+                entries.remove(passwordEntry);
+                if (entries.isEmpty()) {
+                    termIndex.remove(term);
+                    NavigableSet<String> sameLength = termsByLength.get(term.length());
+                    sameLength.remove(term);
+                    if (sameLength.isEmpty()) termsByLength.remove(term.length());
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every entry from the index.
+     */
+    public void clear() {
+        termIndex.clear();
+        termsByLength.clear();
+        gramIndex.clear();
+        valueIds.clear();
+        Arrays.fill(valuesById, 0, nextValueId, null);
+        Arrays.fill(referenceCounts, 0, nextValueId, 0);
+        nextValueId = 0;
+        deadValueIds = 0;
+    }
+
+    /**
+     * Finds entries with a field or a token of a field starting with the query.
+     * @param query The prefix to look for, case-insensitive.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries.
+     */
+    public List<PasswordEntry> searchPrefix(String query, int limit) {
+        Set<PasswordEntry> results = new LinkedHashSet<>();
+        collectPrefix(normalize(query), limit, results);
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Finds entries with a field containing the query.
+     * @param query The text to look for, case-insensitive.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries.
+     */
+    public List<PasswordEntry> searchSubstring(String query, int limit) {
+        Set<PasswordEntry> results = new LinkedHashSet<>();
+        collectSubstring(normalize(query), limit, results);
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Finds entries with a field or a token of a field within maxEdits insertions, deletions or substitutions of
+     * the query.
+     * @param query The text to look for, case-insensitive.
+     * @param maxEdits The maximum edit distance.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries.
+     */
+    public List<PasswordEntry> searchFuzzy(String query, int maxEdits, int limit) {
+        Set<PasswordEntry> results = new LinkedHashSet<>();
+        collectFuzzy(normalize(query), maxEdits, limit, results);
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Search-as-you-type lookup: prefix matches first, then substring matches, then entries one edit away.
+     * @param query The text to look for, case-insensitive.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries, best matches first.
+     */
+    public List<PasswordEntry> search(String query, int limit) {
+        String normalized = normalize(query);
+        Set<PasswordEntry> results = new LinkedHashSet<>();
+        if (normalized.isEmpty()) return new ArrayList<>(results);
+        collectPrefix(normalized, limit, results);
+        if (results.size() < limit) collectSubstring(normalized, limit, results);
+        if (results.size() < limit) collectFuzzy(normalized, 1, limit, results);
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Answers {@link #search} without an index, by checking every entry once: prefix matches first, then substring
+     * matches, then entries one edit away. Used while the index of a freshly loaded vault is being built, so it
+     * avoids allocating per term: tokens are matched in place and only terms of a close length are copied.
+     * @param entries The entries to check.
+     * @param query The text to look for, case-insensitive.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries, best matches first.
+     */
+    static List<PasswordEntry> scan(Collection<PasswordEntry> entries, String query, int limit) {
+        String normalized = normalize(query);
+        List<List<PasswordEntry>> matches = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        if (normalized.isEmpty()) return new ArrayList<>();
+        for (PasswordEntry passwordEntry : entries) {
+            int match = scanMatch(passwordEntry, normalized, 1, true);
+            if (match < SCAN_NO_MATCH && matches.get(match).size() < limit) matches.get(match).add(passwordEntry);
+            if (matches.get(SCAN_PREFIX).size() >= limit) break;
+        }
+        List<PasswordEntry> results = new ArrayList<>(limit);
+        for (List<PasswordEntry> kind : matches) {
+            for (PasswordEntry passwordEntry : kind) {
+                if (results.size() >= limit) return results;
+                results.add(passwordEntry);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Answers {@link #searchFuzzy} without an index, by checking every entry.
+     * @param entries The entries to check.
+     * @param query The text to look for, case-insensitive.
+     * @param maxEdits The maximum edit distance.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries.
+     */
+    static List<PasswordEntry> scanFuzzy(Collection<PasswordEntry> entries, String query, int maxEdits, int limit) {
+        String normalized = normalize(query);
+        List<PasswordEntry> results = new ArrayList<>();
+        if (normalized.isEmpty()) return results;
+        for (PasswordEntry passwordEntry : entries) {
+            if (results.size() >= limit) break;
+            if (scanMatch(passwordEntry, normalized, maxEdits, false) == SCAN_FUZZY) results.add(passwordEntry);
+        }
+        return results;
+    }
+
+    private static final int SCAN_PREFIX = 0;
+    private static final int SCAN_SUBSTRING = 1;
+    private static final int SCAN_FUZZY = 2;
+    private static final int SCAN_NO_MATCH = 3;
+
+    /**
+     * Returns the best way an entry matches the query, the same way the index would match it.
+     * @param exact False to only look for terms within maxEdits of the query.
+     */
+    private static int scanMatch(PasswordEntry passwordEntry, String query, int maxEdits, boolean exact) {
+        int best = SCAN_NO_MATCH;
+        for (String field : new String[]{passwordEntry.website(), passwordEntry.username(), passwordEntry.folder()}) {
+            if (field == null) continue;
+            String value = normalize(field);
+            if (value.isEmpty()) continue;
+            if (exact && value.startsWith(query)) return SCAN_PREFIX;
+            if (best > SCAN_FUZZY && fuzzyTerm(value, 0, value.length(), query, maxEdits)) best = SCAN_FUZZY;
+            int start = -1;
+            for (int i = 0; i <= value.length(); i++) {
+                boolean tokenChar = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+                if (tokenChar && start < 0) {
+                    start = i;
+                } else if (!tokenChar && start >= 0) {
+                    if (exact && i - start >= query.length() && value.startsWith(query, start)) return SCAN_PREFIX;
+                    if (best > SCAN_FUZZY && fuzzyTerm(value, start, i, query, maxEdits)) best = SCAN_FUZZY;
+                    start = -1;
+                }
+            }
+            if (exact && best > SCAN_SUBSTRING && value.contains(query)) best = SCAN_SUBSTRING;
+        }
+        return best;
+    }
+
+    private static boolean fuzzyTerm(String value, int start, int end, String query, int maxEdits) {
+        return Math.abs(end - start - query.length()) <= maxEdits
+                && editDistance(value.substring(start, end), query, maxEdits) <= maxEdits;
+    }
+
+    private void collectPrefix(String prefix, int limit, Set<PasswordEntry> results) {
+        if (prefix.isEmpty()) return;
+        for (Set<PasswordEntry> entries : termIndex.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (addAll(entries, limit, results)) return;
+        }
+    }
+
+    private void collectSubstring(String query, int limit, Set<PasswordEntry> results) {
+        if (query.isEmpty()) return;
+        if (query.length() < GRAM_LENGTH) {
+            for (Map.Entry<String, Postings> gram : gramIndex.entrySet()) {
+                if (gram.getKey().contains(query) && collectCandidates(gram.getValue(), query, limit, results)) return;
+            }
+            return;
+        }
+        Postings candidates = null;
+        for (String gram : grams(query, GRAM_LENGTH)) {
+            Postings postings = gramIndex.get(gram);
+            if (postings == null) return;
+            if (candidates == null || postings.size < candidates.size) candidates = postings;
+        }
+        collectCandidates(candidates, query, limit, results);
+    }
+
+    /**
+     * Adds the entries of the candidate values which contain the query.
+     * @return True once the limit is reached.
+     */
+    private boolean collectCandidates(Postings candidates, String query, int limit, Set<PasswordEntry> results) {
+        for (int i = 0; i < candidates.size; i++) {
+            String value = valuesById[candidates.ids[i]];
+            if (value != null && value.contains(query) && addAll(termIndex.get(value), limit, results)) return true;
+        }
+        return false;
+    }
+
+    private void collectFuzzy(String query, int maxEdits, int limit, Set<PasswordEntry> results) {
+        if (query.isEmpty()) return;
+        if (maxEdits == 0) {
+            Set<PasswordEntry> entries = termIndex.get(query);
+            if (entries != null) addAll(entries, limit, results);
+            return;
+        }
+        // q-gram lemma: an edit destroys at most 3 of the query's distinct trigrams, so a term within k edits holds
+        // at least (distinct trigrams - 3k) of them and therefore at least one of the 3k + 1 rarest ones. Candidates
+        // are collected from the rare postings only; the common trigrams are counted by checking the candidate
+        // value itself instead of walking their (long) postings. Queries too short for the lemma to hold fall back
+        // to the terms of a length within maxEdits of the query, since those need not share any trigram with it.
+        List<String> queryGrams = new ArrayList<>(new LinkedHashSet<>(grams(query, GRAM_LENGTH)));
+        if (queryGrams.size() - GRAM_LENGTH * maxEdits < 1) {
+            collectFuzzyByLength(query, maxEdits, limit, results);
+            return;
+        }
+        queryGrams.sort(Comparator.comparingInt(gram -> {
+            Postings postings = gramIndex.get(gram);
+            return postings == null ? 0 : postings.size;
+        }));
+        int requiredShared = queryGrams.size() - GRAM_LENGTH * maxEdits;
+        int rareGrams = queryGrams.size() - requiredShared + 1;
+
+        Postings rareIds = new Postings();
+        for (String gram : queryGrams.subList(0, rareGrams)) {
+            Postings postings = gramIndex.get(gram);
+            if (postings == null) continue;
+            for (int i = 0; i < postings.size; i++) rareIds.add(postings.ids[i]);
+        }
+        // Sorting the ids groups the rare trigrams of each candidate value together.
+        Arrays.sort(rareIds.ids, 0, rareIds.size);
+        List<String> commonGrams = queryGrams.subList(rareGrams, queryGrams.size());
+        for (int i = 0; i < rareIds.size; ) {
+            int id = rareIds.ids[i];
+            int shared = 0;
+            for (; i < rareIds.size && rareIds.ids[i] == id; i++) shared++;
+            String value = valuesById[id];
+            if (value == null) continue;
+            for (int j = 0; j < commonGrams.size() && shared < requiredShared; j++) {
+                if (value.contains(commonGrams.get(j))) shared++;
+            }
+            if (shared < requiredShared) continue;
+            for (String term : terms(value)) {
+                if (Math.abs(term.length() - query.length()) <= maxEdits
+                        && editDistance(term, query, maxEdits) <= maxEdits
+                        && addAll(termIndex.get(term), limit, results)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks every term of a length within maxEdits of the query. Short queries only reach short terms, of which
+     * there are few.
+     */
+    private void collectFuzzyByLength(String query, int maxEdits, int limit, Set<PasswordEntry> results) {
+        for (int length = query.length() - maxEdits; length <= query.length() + maxEdits; length++) {
+            NavigableSet<String> terms = termsByLength.get(length);
+            if (terms == null) continue;
+            for (String term : terms) {
+                if (editDistance(term, query, maxEdits) <= maxEdits && addAll(termIndex.get(term), limit, results)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds entries to the results until the limit is reached.
+     * @return True once the limit is reached.
+     */
+    private static boolean addAll(Set<PasswordEntry> entries, int limit, Set<PasswordEntry> results) {
+        if (entries == null) return results.size() >= limit;
+        for (PasswordEntry entry : entries) {
+            if (results.size() >= limit) return true;
+            results.add(entry);
+        }
+        return results.size() >= limit;
+    }
+
+    private void addValue(String value) {
+        Integer id = valueIds.get(value);
+        if (id != null) {
+            referenceCounts[id]++;
+            return;
+        }
+        if (nextValueId == valuesById.length) {
+            valuesById = Arrays.copyOf(valuesById, nextValueId * 2);
+            referenceCounts = Arrays.copyOf(referenceCounts, nextValueId * 2);
+        }
+        id = nextValueId++;
+        valueIds.put(value, id);
+        valuesById[id] = value;
+        referenceCounts[id] = 1;
+        indexGrams(value, id);
+    }
+
+    private void removeValue(String value) {
+        Integer id = valueIds.get(value);
+        if (id == null || --referenceCounts[id] > 0) return;
+        valueIds.remove(value);
+        valuesById[id] = null;
+        deadValueIds++;
+        // Rebuild once dead ids make up half of the postings, which keeps removals amortized O(1).
+        if (deadValueIds > 1024 && deadValueIds > valueIds.size()) rebuildGrams();
+    }
+
+    private void rebuildGrams() {
+        String[] liveValues = new String[valueIds.size()];
+        int[] liveCounts = new int[liveValues.length];
+        int live = 0;
+        for (int id = 0; id < nextValueId; id++) {
+            if (valuesById[id] == null) continue;
+            liveValues[live] = valuesById[id];
+            liveCounts[live++] = referenceCounts[id];
+        }
+        gramIndex.clear();
+        valueIds.clear();
+        valuesById = Arrays.copyOf(liveValues, Math.max(1024, live * 2));
+        referenceCounts = Arrays.copyOf(liveCounts, valuesById.length);
+        nextValueId = live;
+        deadValueIds = 0;
+        for (int id = 0; id < live; id++) {
+            valueIds.put(valuesById[id], id);
+            indexGrams(valuesById[id], id);
+        }
+    }
+
+    private void indexGrams(String value, int id) {
+        for (String gram : grams(value, GRAM_LENGTH)) gramIndex.computeIfAbsent(gram, key -> new Postings()).add(id);
+    }
+
+    private static List<String> fieldValues(PasswordEntry passwordEntry) {
+        List<String> values = new ArrayList<>(3);
+        for (String field : new String[]{passwordEntry.website(), passwordEntry.username(), passwordEntry.folder()}) {
+            if (field == null) continue;
+            String value = normalize(field);
+            if (!value.isEmpty() && !values.contains(value)) values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the whole value followed by its distinct tokens.
+     */
+    private static List<String> terms(String value) {
+        List<String> terms = new ArrayList<>(4);
+        terms.add(value);
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            boolean tokenChar = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                // A value made of a single token is already in the list.
+                if (start > 0 || i < value.length()) {
+                    String token = value.substring(start, i);
+                    if (!terms.contains(token)) terms.add(token);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static List<String> grams(String value, int length) {
+        if (value.length() <= length) return List.of(value);
+        List<String> grams = new ArrayList<>(value.length() - length + 1);
+        for (int i = 0; i + length <= value.length(); i++) grams.add(value.substring(i, i + length));
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Levenshtein distance which gives up as soon as it exceeds maxEdits.
+     * @return The distance, or maxEdits + 1 if it is larger than maxEdits.
+     */
+    static int editDistance(String a, String b, int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > maxEdits) return maxEdits + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+}
@@ -1,50 +1,187 @@
 package com.example.storage;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Thread-safe registry of the folders of a vault.
+ * <p>
+ * Lookups go straight to a {@link ConcurrentHashMap} and never block. Changes which touch a folder hierarchy
+ * (creating the missing parents of a nested folder, deleting or renaming a folder with its subfolders) hold the
+ * lock of the top level folder's stripe, so they are atomic with respect to each other while changes to unrelated
+ * hierarchies run in parallel.
+ * <p>
+ * The folders are saved as a UTF-8 file with one folder path per line next to the vault file. The default folders
+ * are only created for a vault which has no folder file yet.
+ */
 public class SerializationFolderStorage {
 
-    private static final Map<String, Folder> folderMap = new HashMap<>();
+    public static final String FOLDER_FILE_NAME = "passwords.folders";
+    private static final List<String> DEFAULT_FOLDERS = List.of("Websites", "Applications", "Email Accounts");
+    private static final int LOCK_STRIPES = 16;
 
-    // Static block to initialize default folders
-    static {
-        addFolder("Websites");
-        addFolder("Applications");
-        addFolder("Email Accounts");
+    private final ConcurrentMap<String, Folder> folderMap = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public SerializationFolderStorage() {
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
+        for (String folderName : DEFAULT_FOLDERS) addFolder(folderName);
+    }
+
+    /**
+     * Adds a folder, creating its missing parent folders. Checking and creating happen as one atomic step,
+     * so exactly one of several threads adding the same folder succeeds.
+     * @param folderName The path of the folder to add.
+     * @return True if the folder was added, false if it already existed.
+     */
+    public boolean addFolder(String folderName) {
+        return addFolder(folderName, new ArrayList<>());
     }
 
     /**
-     * Adds a folder to the folder map.
-     * @param folderName The name of the folder to add.
+     * Adds a folder and its missing parents, collecting the path of every folder it created, parents first.
      */
-    public static void addFolder(String folderName) {
-        Folder newFolder = new Folder(folderName);
-        folderMap.put(folderName, newFolder);
+    private boolean addFolder(String folderName, Collection<String> created) {
+        validateFolderName(folderName);
+        synchronized (lockFor(folderName)) {
+            String parentName = new Folder(folderName).parentName();
+            if (parentName != null) addFolder(parentName, created);
+            if (folderMap.putIfAbsent(folderName, new Folder(folderName)) != null) return false;
+            created.add(folderName);
+            return true;
+        }
     }
 
     /**
      * Returns the folder with the specified name.
-     * @param folderName The name of the folder to retrieve.
-     * @return The folder with the specified name.
+     * @param folderName The path of the folder to retrieve.
+     * @return The folder with the specified name, or null if it does not exist.
      */
-    public static Folder getFolderByName(String folderName) {
+    public Folder getFolderByName(String folderName) {
         return folderMap.get(folderName);
     }
 
     /**
-     * Deletes the folder with the specified name.
-     * @param folderName The name of the folder to delete.
+     * Returns every folder, parents before their subfolders.
+     * @return A sorted snapshot of the folders.
+     */
+    public List<Folder> getFolders() {
+        List<Folder> folders = new ArrayList<>(folderMap.values());
+        folders.sort(Comparator.comparing(Folder::folderName));
+        return folders;
+    }
+
+    /**
+     * Returns the folders directly inside the given folder.
+     * @param folderName The path of the parent folder, or null for the top level folders.
+     * @return A sorted snapshot of the subfolders.
+     */
+    public List<Folder> getSubfolders(String folderName) {
+        List<Folder> subfolders = new ArrayList<>();
+        for (Folder folder : folderMap.values()) {
+            if (Objects.equals(folder.parentName(), folderName)) subfolders.add(folder);
+        }
+        subfolders.sort(Comparator.comparing(Folder::folderName));
+        return subfolders;
+    }
+
+    /**
+     * Deletes a folder together with its subfolders.
+     * @param folderName The path of the folder to delete.
+     * @return The folders which were deleted, empty if the folder did not exist.
+     */
+    public List<Folder> deleteFolder(String folderName) {
+        synchronized (lockFor(folderName)) {
+            Folder folder = folderMap.remove(folderName);
+            if (folder == null) return Collections.emptyList();
+            List<Folder> deleted = new ArrayList<>();
+            deleted.add(folder);
+            for (Folder subfolder : folderMap.values()) {
+                if (subfolder.isInside(folderName) && folderMap.remove(subfolder.folderName(), subfolder)) {
+                    deleted.add(subfolder);
+                }
+            }
+            return deleted;
+        }
+    }
+
+    /**
+     * Deletes a folder which was created empty, unless a subfolder has been added to it since.
+     * @param folderName The path of the folder to delete.
+     * @return True if the folder was deleted, false if it did not exist or has subfolders.
+     */
+    public boolean deleteEmptyFolder(String folderName) {
+        synchronized (lockFor(folderName)) {
+            for (Folder folder : folderMap.values()) {
+                if (folder.isInside(folderName)) return false;
+            }
+            return folderMap.remove(folderName) != null;
+        }
+    }
+
+    /**
+     * Renames a folder and moves its subfolders along with it.
+     * @param oldFolderName The path of the folder to rename.
+     * @param newFolderName The new path of the folder.
+     * @return The old path of every renamed folder mapped to its new path, empty if the folder does not exist or
+     *         the new path is already taken.
      */
-    public static void deleteFolder(String folderName) {
-        folderMap.remove(folderName);
+    public Map<String, String> renameFolder(String oldFolderName, String newFolderName) {
+        return renameFolder(oldFolderName, newFolderName, new ArrayList<>());
+    }
+
+    /**
+     * Renames a folder like {@link #renameFolder(String, String)} and reports the missing parents of the new path
+     * it created, so a failed rename can be undone completely with {@link #deleteEmptyFolder}.
+     * @param oldFolderName The path of the folder to rename.
+     * @param newFolderName The new path of the folder.
+     * @param createdParents Receives the path of every parent folder the rename created, parents first.
+     * @return The old path of every renamed folder mapped to its new path, empty if the folder does not exist or
+     *         the new path is already taken.
+     */
+    public Map<String, String> renameFolder(String oldFolderName, String newFolderName,
+                                            Collection<String> createdParents) {
+        validateFolderName(newFolderName);
+        if (newFolderName.equals(oldFolderName) || new Folder(newFolderName).isInside(oldFolderName)) {
+            return Collections.emptyMap();
+        }
+        // Both stripes are locked in index order, so two opposite renames cannot deadlock.
+        int oldStripe = stripeOf(oldFolderName);
+        int newStripe = stripeOf(newFolderName);
+        synchronized (locks[Math.min(oldStripe, newStripe)]) {
+            synchronized (locks[Math.max(oldStripe, newStripe)]) {
+                if (!folderMap.containsKey(oldFolderName) || folderMap.containsKey(newFolderName)) {
+                    return Collections.emptyMap();
+                }
+                String parentName = new Folder(newFolderName).parentName();
+                if (parentName != null) addFolder(parentName, createdParents);
+                Map<String, String> renamed = new LinkedHashMap<>();
+                for (Folder folder : deleteFolder(oldFolderName)) {
+                    String renamedName = newFolderName + folder.folderName().substring(oldFolderName.length());
+                    folderMap.put(renamedName, new Folder(renamedName));
+                    renamed.put(folder.folderName(), renamedName);
+                }
+                return renamed;
+            }
+        }
     }
 
     /**
      * Clears all folders except the default folders.
      */
-    public static void clearFolders() {
-        folderMap.entrySet().removeIf(entry -> !isDefaultFolder(entry.getKey()));
+    public void clearFolders() {
+        for (int stripe = 0; stripe < locks.length; stripe++) {
+            int clearedStripe = stripe;
+            synchronized (locks[stripe]) {
+                folderMap.keySet().removeIf(folderName -> stripeOf(folderName) == clearedStripe && !isDefaultFolder(folderName));
+            }
+        }
     }
 
     /**
@@ -53,9 +190,7 @@ public class SerializationFolderStorage {
      * @return True if the folder with the specified name is a default folder.
      */
     private static boolean isDefaultFolder(String folderName) {
-        return folderName.equals("Websites")
-                || folderName.equals("Applications")
-                || folderName.equals("Email Accounts");
+        return DEFAULT_FOLDERS.contains(folderName);
     }
 
     /**
@@ -63,8 +198,60 @@ public class SerializationFolderStorage {
      * @param folderName The name of the folder to check.
      * @return True if the folder with the specified name exists.
      */
-    public static Boolean folderExists(String folderName) {
+    public Boolean folderExists(String folderName) {
         return folderMap.containsKey(folderName);
     }
 
+    /**
+     * Atomically writes the folders to the folder file in the given directory.
+     * @param locationToSave The directory holding the vault file.
+     * @throws IOException If the folder file could not be written. The previous file is left in place in that case.
+     */
+    public void saveFolders(String locationToSave) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Folder folder : getFolders()) content.append(folder.folderName()).append('\n');
+        AtomicVaultFile.write(Path.of(locationToSave, FOLDER_FILE_NAME), content.toString().getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    /**
+     * Replaces the folders with the ones saved in the given directory. The folders are left unchanged when the
+     * directory has no folder file yet. Meant to be called once when the vault is opened, before other threads
+     * use the registry.
+     * @param locationToLoad The directory holding the vault file.
+     * @throws IOException If the folder file could not be read.
+     */
+    public void loadFolders(String locationToLoad) throws IOException {
+        List<String> folderNames;
+        try {
+            folderNames = Files.readAllLines(Path.of(locationToLoad, FOLDER_FILE_NAME), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        folderMap.clear();
+        for (String folderName : folderNames) {
+            if (!folderName.isBlank()) addFolder(folderName);
+        }
+    }
+
+    private Object lockFor(String folderName) {
+        return locks[stripeOf(folderName)];
+    }
+
+    /**
+     * Folders are striped by their top level folder, so a whole hierarchy always shares one lock.
+     */
+    private static int stripeOf(String folderName) {
+        int separator = folderName.indexOf(Folder.PATH_SEPARATOR);
+        String topLevelName = separator < 0 ? folderName : folderName.substring(0, separator);
+        return Math.floorMod(topLevelName.hashCode(), LOCK_STRIPES);
+    }
+
+    private static void validateFolderName(String folderName) {
+        if (folderName == null) throw new NullPointerException("Folder name cannot be null");
+        if (folderName.isBlank() || folderName.startsWith(Folder.PATH_SEPARATOR) || folderName.endsWith(Folder.PATH_SEPARATOR)
+                || folderName.contains(Folder.PATH_SEPARATOR + Folder.PATH_SEPARATOR) || folderName.contains("\n")) {
+            throw new IllegalArgumentException("Invalid folder name: " + folderName);
+        }
+    }
+
 }
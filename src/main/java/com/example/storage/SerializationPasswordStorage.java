@@ -1,20 +1,116 @@
 package com.example.storage;
 
+import com.example.config.ConfigurationFile;
 import com.example.interfaces.PasswordLoadCallback;
 import com.example.interfaces.PasswordSaveCallback;
+import com.example.interfaces.VaultRekeyCallback;
+import com.example.metrics.OperationMetrics;
+import com.example.metrics.VaultMetrics;
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.KdfParameters;
+import com.example.security.SecretFingerprinter;
 
+import javax.crypto.SecretKey;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class SerializationPasswordStorage {
 
-    private List<PasswordEntry> passwordEntries;
+    public static final String VAULT_FILE_NAME = "passwords.vault";
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final int FIRST_BATCH_SIZE = 100;
+    // Number of previous snapshots kept next to the vault file.
+    static final int BACKUP_COUNT = 3;
+    private static final Logger LOGGER = Logger.getLogger(SerializationPasswordStorage.class.getName());
+
+    // Entries by their id, in insertion order. An update replaces the entry under the same id, so it keeps its place.
+    private final Map<Long, PasswordEntry> passwordEntries;
+    // Identity index from entry to id, so add / remove / exists are O(1).
+    private final Map<PasswordEntry, Long> entryIds;
+    private long nextEntryId = 1;
+    // Secondary index from website + username to the entries stored for that account.
+    private final Map<String, Set<PasswordEntry>> accountIndex;
+    // Secondary index from folder name to the entries in that folder, in insertion order. Entries without a folder
+    // are kept under the null key.
+    private final Map<String, Set<PasswordEntry>> folderIndex;
+    private PasswordSearchIndex searchIndex;
+    // Set when the entries are cleared, e.g. by a load. Loading a vault does not pay for indexing it entry by entry;
+    // the index is built in one pass on a background thread once the load has finished, and searches scan the
+    // entries until it is ready. Changes made while it is built are queued and applied when it is installed.
+    private boolean searchIndexStale;
+    private List<IndexChange> pendingSearchChanges;
+    // Incremented by clear(), so an index built from entries which have been cleared since is never installed.
+    private long searchIndexGeneration;
+    private CompletableFuture<Void> searchIndexBuild = CompletableFuture.completedFuture(null);
+    // Secondary index from the keyed fingerprint of a password to the entries using it, and the fingerprint of
+    // every indexed entry so it can be removed without fingerprinting the password again.
+    private final Map<String, Set<PasswordEntry>> secretIndex;
+    private final Map<PasswordEntry, String> secretFingerprints;
+    private SecretFingerprinter fingerprinter;
+    // Set when the entries are cleared or the fingerprinter changes. Fingerprinting an encrypted password means
+    // decrypting it, so the index is rebuilt on a background thread after a load, an unlock or a re-key, the same
+    // way as the search index. Reuse queries never build it themselves and find nothing until it is ready.
+    private boolean secretIndexStale;
+    private List<IndexChange> pendingSecretChanges;
+    // Incremented whenever the index is dropped, so an index built from stale entries or fingerprints is discarded.
+    private long secretIndexGeneration;
+    private CompletableFuture<Void> secretIndexBuild = CompletableFuture.completedFuture(null);
+    // Previous passwords of each account. Kept in memory until the vault is saved or loaded, then in a file.
+    private PasswordHistory history;
+    // Key derivation parameters stored in the vault header. Null for vaults written before they existed.
+    private KdfParameters kdfParameters;
+
+    // Journal of changes since the last snapshot. Null until the vault has been loaded or saved once.
+    private VaultJournal journal;
+    // Size the current journal generation may reach before it is folded into a fresh snapshot.
+    private long compactionThreshold = ConfigurationFile.DEFAULT_COMPACTION_THRESHOLD_BYTES;
+    private boolean compacting;
+    private ExecutorService compactionExecutor;
+    // Serializes snapshot writes, so a compaction can never move an older snapshot over a newer one.
+    private final Object snapshotLock = new Object();
+    private final Map<Path, Long> snapshotGenerations = new HashMap<>();
+    // Incremented by every load. A load only changes the entries while it is the latest one, so a cancelled load
+    // which is still winding down cannot clear the entries of the load which replaced it.
+    private long loadGeneration;
+
+    private static final ExecutorService LOAD_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "vault-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService INDEX_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "vault-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * An entry added to or removed from the storage while the search or secret index was being built.
+     */
+    private record IndexChange(PasswordEntry passwordEntry, boolean added) {
+    }
 
     public SerializationPasswordStorage() {
-        passwordEntries = new ArrayList<>();
+        passwordEntries = new LinkedHashMap<>();
+        entryIds = new HashMap<>();
+        accountIndex = new HashMap<>();
+        folderIndex = new HashMap<>();
+        searchIndex = new PasswordSearchIndex();
+        secretIndex = new HashMap<>();
+        secretFingerprints = new HashMap<>();
+        fingerprinter = new SecretFingerprinter(null);
+        history = PasswordHistory.inMemory(accountIndex::containsKey);
     }
 
     /**
@@ -23,46 +119,469 @@ public class SerializationPasswordStorage {
      */
     public synchronized void addPasswordEntry(PasswordEntry passwordEntry, PasswordSaveCallback callback) {
         if (passwordEntry != null) {
-            if (!passwordAlreadyExists(passwordEntry)) {
-                passwordEntries.add(passwordEntry);
-                callback.onAddPasswordEntrySuccess();
-            } else {
+            if (entryIds.containsKey(passwordEntry)) {
                 callback.onAddPasswordEntryError("password_already_exists");
+                return;
+            }
+            long start = OperationMetrics.start();
+            try {
+                journalChanges(List.of(VaultJournal.Change.add(passwordEntry)));
+            } catch (IOException e) {
+                VaultMetrics.ADD.failure(start, e);
+                callback.onAddPasswordEntryError("journal_write_failed");
+                return;
             }
+            indexEntry(passwordEntry);
+            VaultMetrics.ADD.success(start);
+            callback.onAddPasswordEntrySuccess();
         } else {
             throw new NullPointerException("PasswordEntry cannot be null");
         }
     }
 
+    /**
+     * Adds a batch of PasswordEntries to the password storage in a single locked pass.
+     * Entries which already exist in the storage (or appear twice in the batch) are skipped.
+     * When the journal is open, the whole batch is committed with a single journal write.
+     * @param entries The PasswordEntries to be added.
+     * @return The number of entries which were actually added.
+     * @throws UncheckedIOException If the batch could not be written to the journal. Nothing is added in that case.
+     */
+    public synchronized int addPasswordEntries(Collection<PasswordEntry> entries) {
+        if (entries == null) throw new NullPointerException("PasswordEntry collection cannot be null");
+        long start = OperationMetrics.start();
+        Set<PasswordEntry> newEntries = new LinkedHashSet<>();
+        for (PasswordEntry passwordEntry : entries) {
+            if (passwordEntry == null) throw new NullPointerException("PasswordEntry cannot be null");
+            if (!entryIds.containsKey(passwordEntry)) newEntries.add(passwordEntry);
+        }
+        if (journal != null) {
+            List<VaultJournal.Change> changes = new ArrayList<>(newEntries.size());
+            for (PasswordEntry passwordEntry : newEntries) changes.add(VaultJournal.Change.add(passwordEntry));
+            try {
+                journalChanges(changes);
+            } catch (IOException e) {
+                VaultMetrics.ADD.failure(start, e);
+                throw new UncheckedIOException("Failed to write the entries to the journal", e);
+            }
+        }
+        for (PasswordEntry passwordEntry : newEntries) indexEntry(passwordEntry);
+        VaultMetrics.ADD.success(start);
+        return newEntries.size();
+    }
+
     /**
      * Removes a PasswordEntry from the password storage.
      * @param passwordEntry The PasswordEntry to be removed.
+     * @throws UncheckedIOException If the removal could not be written to the journal.
      */
     public synchronized void removePasswordEntry(PasswordEntry passwordEntry) {
         if (passwordEntry != null) {
-            if (passwordAlreadyExists(passwordEntry)) {
-                passwordEntries.remove(passwordEntry);
-            } else {
+            if (!entryIds.containsKey(passwordEntry)) {
                 throw new IllegalArgumentException("PasswordEntry does not exist in the storage");
             }
+            long start = OperationMetrics.start();
+            try {
+                journalChanges(List.of(VaultJournal.Change.remove(passwordEntry)));
+            } catch (IOException e) {
+                VaultMetrics.REMOVE.failure(start, e);
+                throw new UncheckedIOException("Failed to write the removal to the journal", e);
+            }
+            unindexEntry(passwordEntry);
+            VaultMetrics.REMOVE.success(start);
         } else {
             throw new NullPointerException("PasswordEntry cannot be null");
         }
     }
 
     /**
-     * Retrieves the list of password entries.
-     * @return The list of password entries.
+     * Replaces a PasswordEntry in the password storage with an edited version of it, see
+     * {@link #updatePasswordEntry}.
+     * @param oldEntry The PasswordEntry to be replaced.
+     * @param newEntry The edited PasswordEntry.
+     * @throws UncheckedIOException If the edit could not be written to the journal.
+     */
+    public synchronized void editPasswordEntry(PasswordEntry oldEntry, PasswordEntry newEntry) {
+        if (oldEntry == null || newEntry == null) throw new NullPointerException("PasswordEntry cannot be null");
+        Long entryId = entryIds.get(oldEntry);
+        if (entryId == null) throw new IllegalArgumentException("PasswordEntry does not exist in the storage");
+        updatePasswordEntry(entryId, newEntry);
+    }
+
+    /**
+     * Replaces the entry with the given id in place: it keeps its id and its position, and only the change is
+     * written to the journal. If the password changed, the previous one is added to the history of the account,
+     * which keeps the last PasswordHistory.MAX_VERSIONS passwords.
+     * @param entryId The id of the entry, see {@link #getEntryId}.
+     * @param updatedEntry The new version of the entry.
+     * @return The entry which was replaced.
+     * @throws IllegalArgumentException If no entry has the id, or another entry equals the updated one.
+     * @throws UncheckedIOException If the update could not be written to the journal. Nothing is changed in that case.
+     */
+    public synchronized PasswordEntry updatePasswordEntry(long entryId, PasswordEntry updatedEntry) {
+        if (updatedEntry == null) throw new NullPointerException("PasswordEntry cannot be null");
+        PasswordEntry currentEntry = passwordEntries.get(entryId);
+        if (currentEntry == null) throw new IllegalArgumentException("No PasswordEntry with id " + entryId);
+        if (currentEntry.equals(updatedEntry)) return currentEntry;
+        if (entryIds.containsKey(updatedEntry)) {
+            throw new IllegalArgumentException("Edited PasswordEntry already exists in the storage");
+        }
+        long start = OperationMetrics.start();
+        try {
+            journalChanges(List.of(VaultJournal.Change.edit(currentEntry, updatedEntry)));
+        } catch (IOException e) {
+            VaultMetrics.EDIT.failure(start, e);
+            throw new UncheckedIOException("Failed to write the edit to the journal", e);
+        }
+        // Applied before any history I/O: memory matches the journal, and a history failure only loses history.
+        replaceEntry(currentEntry, updatedEntry);
+        String oldAccount = accountKey(currentEntry.website(), currentEntry.username());
+        String newAccount = accountKey(updatedEntry.website(), updatedEntry.username());
+        try {
+            if (!oldAccount.equals(newAccount)) history.copy(oldAccount, newAccount);
+            if (!Objects.equals(currentEntry.password(), updatedEntry.password())) {
+                history.record(newAccount, currentEntry.password(), System.currentTimeMillis());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the password history", e);
+        }
+        VaultMetrics.EDIT.success(start);
+        return currentEntry;
+    }
+
+    /**
+     * Returns the id of an entry. Ids are assigned when entries are added or loaded and survive updates, so they
+     * identify an entry while it is edited. They are not stored in the vault.
+     * @param passwordEntry The entry.
+     * @return The id, or null if the entry is not in the storage.
+     */
+    public synchronized Long getEntryId(PasswordEntry passwordEntry) {
+        return entryIds.get(passwordEntry);
+    }
+
+    /**
+     * Returns the entry with the given id.
+     * @param entryId The id of the entry.
+     * @return The entry, or null if no entry has the id.
+     */
+    public synchronized PasswordEntry getPasswordEntry(long entryId) {
+        return passwordEntries.get(entryId);
+    }
+
+    /**
+     * Returns the previous passwords of an entry's account, as they were stored (encrypted in an encrypted vault).
+     * @param entryId The id of the entry.
+     * @return Up to PasswordHistory.MAX_VERSIONS passwords, newest first.
+     * @throws IllegalArgumentException If no entry has the id.
+     * @throws UncheckedIOException If the history could not be read.
+     */
+    public synchronized List<PasswordHistory.Version> getPasswordHistory(long entryId) {
+        PasswordEntry passwordEntry = passwordEntries.get(entryId);
+        if (passwordEntry == null) throw new IllegalArgumentException("No PasswordEntry with id " + entryId);
+        try {
+            return history.get(accountKey(passwordEntry.website(), passwordEntry.username()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the password history", e);
+        }
+    }
+
+    /**
+     * Retrieves the list of password entries in the order they were added.
+     * @return A snapshot of the password entries.
+     */
+    public synchronized List<PasswordEntry> getPasswordEntries() {
+        return new ArrayList<>(passwordEntries.values());
+    }
+
+    /**
+     * Retrieves the password entries stored for an account.
+     * @param website The website of the account.
+     * @param username The username of the account.
+     * @return The entries stored for the account, empty if there are none.
+     */
+    public synchronized List<PasswordEntry> getPasswordEntries(String website, String username) {
+        Set<PasswordEntry> entries = accountIndex.get(accountKey(website, username));
+        return entries == null ? Collections.emptyList() : new ArrayList<>(entries);
+    }
+
+    /**
+     * Retrieves the password entries in a folder without scanning the other entries.
+     * @param folder The name of the folder, or null for the entries without a folder.
+     * @return The entries in the folder in the order they were added, empty if there are none.
+     */
+    public synchronized List<PasswordEntry> getPasswordEntriesInFolder(String folder) {
+        Set<PasswordEntry> entries = folderIndex.get(folder);
+        return entries == null ? Collections.emptyList() : new ArrayList<>(entries);
+    }
+
+    /**
+     * Returns the number of password entries in a folder.
+     * @param folder The name of the folder, or null for the entries without a folder.
+     * @return The number of entries in the folder.
+     */
+    public synchronized int getFolderEntryCount(String folder) {
+        Set<PasswordEntry> entries = folderIndex.get(folder);
+        return entries == null ? 0 : entries.size();
+    }
+
+    /**
+     * Returns the number of password entries in every folder holding at least one entry.
+     * @return A snapshot of the entry count per folder name.
+     */
+    public synchronized Map<String, Integer> getFolderEntryCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, Set<PasswordEntry>> folder : folderIndex.entrySet()) {
+            counts.put(folder.getKey(), folder.getValue().size());
+        }
+        return counts;
+    }
+
+    /**
+     * Moves every entry of a folder to another folder in a single locked pass. Only the entries of the folder are
+     * visited and the whole rename is committed with a single journal write. An entry which already exists in the
+     * target folder is merged with it.
+     * @param oldFolder The name of the folder to rename.
+     * @param newFolder The new name of the folder.
+     * @return The number of entries which were moved.
+     * @throws UncheckedIOException If the rename could not be written to the journal. Nothing is changed in that case.
+     */
+    public synchronized int renameFolder(String oldFolder, String newFolder) {
+        Set<PasswordEntry> entries = folderIndex.get(oldFolder);
+        if (entries == null || Objects.equals(oldFolder, newFolder)) return 0;
+        List<VaultJournal.Change> changes = new ArrayList<>(entries.size());
+        for (PasswordEntry passwordEntry : entries) {
+            changes.add(VaultJournal.Change.edit(passwordEntry, new PasswordEntry(passwordEntry.username(),
+                    passwordEntry.password(), passwordEntry.website(), newFolder)));
+        }
+        try {
+            journalChanges(changes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the folder rename to the journal", e);
+        }
+        for (VaultJournal.Change change : changes) applyChange(change);
+        return changes.size();
+    }
+
+    /**
+     * Removes every entry of a folder in a single locked pass. Only the entries of the folder are visited and the
+     * whole deletion is committed with a single journal write.
+     * @param folder The name of the folder to empty.
+     * @return The number of entries which were removed.
+     * @throws UncheckedIOException If the deletion could not be written to the journal. Nothing is removed in that case.
+     */
+    public synchronized int removeFolderEntries(String folder) {
+        Set<PasswordEntry> entries = folderIndex.get(folder);
+        if (entries == null) return 0;
+        List<VaultJournal.Change> changes = new ArrayList<>(entries.size());
+        for (PasswordEntry passwordEntry : entries) changes.add(VaultJournal.Change.remove(passwordEntry));
+        try {
+            journalChanges(changes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the folder deletion to the journal", e);
+        }
+        for (VaultJournal.Change change : changes) applyChange(change);
+        return changes.size();
+    }
+
+    /**
+     * Searches the website, username and folder of every entry, as the user types.
+     * Prefix matches come first, then substring matches, then entries one typo away.
+     * @param query The text to search for, case-insensitive.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries, best matches first.
+     */
+    public List<PasswordEntry> searchPasswordEntries(String query, int limit) {
+        List<PasswordEntry> snapshot;
+        synchronized (this) {
+            if (!searchIndexStale) return searchIndex.search(query, limit);
+            buildSearchIndex();
+            snapshot = new ArrayList<>(passwordEntries.values());
+        }
+        // Scanned outside the lock, so adds, edits and saves do not wait for it.
+        return PasswordSearchIndex.scan(snapshot, query, limit);
+    }
+
+    /**
+     * Searches the website, username and folder of every entry for values within maxEdits typos of the query.
+     * @param query The text to search for, case-insensitive.
+     * @param maxEdits The maximum number of typos.
+     * @param limit The maximum number of entries to return.
+     * @return The matching entries.
      */
-    public List<PasswordEntry> getPasswordEntries() {
-        return passwordEntries;
+    public List<PasswordEntry> searchPasswordEntriesFuzzy(String query, int maxEdits, int limit) {
+        List<PasswordEntry> snapshot;
+        synchronized (this) {
+            if (!searchIndexStale) return searchIndex.searchFuzzy(query, maxEdits, limit);
+            buildSearchIndex();
+            snapshot = new ArrayList<>(passwordEntries.values());
+        }
+        return PasswordSearchIndex.scanFuzzy(snapshot, query, maxEdits, limit);
+    }
+
+    /**
+     * Starts building the search index on a background thread, unless it is up to date or already being built.
+     * Loads call this when they finish; only copying the entries holds the lock.
+     * @return A future completed once the index is installed, or dropped because the entries were cleared.
+     */
+    public synchronized CompletableFuture<Void> buildSearchIndex() {
+        if (!searchIndexStale || pendingSearchChanges != null) return searchIndexBuild;
+        List<PasswordEntry> snapshot = new ArrayList<>(passwordEntries.values());
+        long generation = searchIndexGeneration;
+        pendingSearchChanges = new ArrayList<>();
+        searchIndexBuild = CompletableFuture.runAsync(() -> {
+            PasswordSearchIndex built = new PasswordSearchIndex();
+            for (PasswordEntry passwordEntry : snapshot) built.add(passwordEntry);
+            installSearchIndex(generation, built);
+        }, INDEX_EXECUTOR);
+        return searchIndexBuild;
+    }
+
+    private synchronized void installSearchIndex(long generation, PasswordSearchIndex built) {
+        if (generation != searchIndexGeneration) return;
+        for (IndexChange change : pendingSearchChanges) {
+            if (change.added()) {
+                built.add(change.passwordEntry());
+            } else {
+                built.remove(change.passwordEntry());
+            }
+        }
+        searchIndex = built;
+        searchIndexStale = false;
+        pendingSearchChanges = null;
+    }
+
+    /**
+     * Returns the number of password entries in the storage.
+     * @return The number of password entries.
+     */
+    public synchronized int size() {
+        return entryIds.size();
     }
 
     /**
      * Clears the password entries from the password storage.
      */
-    public void clear() {
+    public synchronized void clear() {
         passwordEntries.clear();
+        entryIds.clear();
+        accountIndex.clear();
+        folderIndex.clear();
+        searchIndex = new PasswordSearchIndex();
+        searchIndexStale = true;
+        pendingSearchChanges = null;
+        searchIndexGeneration++;
+        dropSecretIndex();
+    }
+
+    /**
+     * Replaces the fingerprinter of the password reuse index. Has to be called with the fingerprinter of the vault
+     * engine once the vault is unlocked, as encrypted passwords are not indexed without the key. The index is
+     * rebuilt on a background thread, which decrypts every password once; the caller does not wait for it.
+     * {@link #rekeyVault} switches to the new key by itself.
+     * @param fingerprinter The fingerprinter to use.
+     */
+    public synchronized void setSecretFingerprinter(SecretFingerprinter fingerprinter) {
+        this.fingerprinter = fingerprinter;
+        dropSecretIndex();
+        buildSecretIndex();
+    }
+
+    private void dropSecretIndex() {
+        secretIndex.clear();
+        secretFingerprints.clear();
+        secretIndexStale = true;
+        pendingSecretChanges = null;
+        secretIndexGeneration++;
+    }
+
+    /**
+     * Starts building the password reuse index on a background thread, unless it is up to date or already being
+     * built. Loads, unlocks and re-keys call this; only copying the entries holds the lock.
+     * @return A future completed once the index is installed, or dropped because the entries or the fingerprinter
+     *         changed.
+     */
+    public synchronized CompletableFuture<Void> buildSecretIndex() {
+        if (!secretIndexStale || pendingSecretChanges != null) return secretIndexBuild;
+        List<PasswordEntry> snapshot = new ArrayList<>(passwordEntries.values());
+        SecretFingerprinter snapshotFingerprinter = fingerprinter;
+        long generation = secretIndexGeneration;
+        pendingSecretChanges = new ArrayList<>();
+        secretIndexBuild = CompletableFuture.runAsync(() -> {
+            String[] fingerprints = new String[snapshot.size()];
+            for (int i = 0; i < fingerprints.length; i++) {
+                fingerprints[i] = snapshotFingerprinter.fingerprint(snapshot.get(i).password());
+            }
+            installSecretIndex(generation, snapshot, fingerprints);
+        }, INDEX_EXECUTOR);
+        return secretIndexBuild;
+    }
+
+    private synchronized void installSecretIndex(long generation, List<PasswordEntry> snapshot, String[] fingerprints) {
+        if (generation != secretIndexGeneration) return;
+        for (int i = 0; i < fingerprints.length; i++) {
+            if (fingerprints[i] != null) indexSecret(snapshot.get(i), fingerprints[i]);
+        }
+        for (IndexChange change : pendingSecretChanges) {
+            if (change.added()) {
+                indexSecret(change.passwordEntry());
+            } else {
+                unindexSecret(change.passwordEntry());
+            }
+        }
+        secretIndexStale = false;
+        pendingSecretChanges = null;
+    }
+
+    /**
+     * Retrieves the other entries which use the same password as the given entry.
+     * @param passwordEntry The entry.
+     * @return The other entries with the same password, in insertion order.
+     */
+    public synchronized List<PasswordEntry> getEntriesSharingPassword(PasswordEntry passwordEntry) {
+        if (secretIndexStale) {
+            buildSecretIndex();
+            return Collections.emptyList();
+        }
+        String fingerprint = secretFingerprints.get(passwordEntry);
+        if (fingerprint == null) fingerprint = fingerprinter.fingerprint(passwordEntry.password());
+        Set<PasswordEntry> entries = fingerprint == null ? null : secretIndex.get(fingerprint);
+        if (entries == null) return Collections.emptyList();
+        List<PasswordEntry> others = new ArrayList<>(entries);
+        others.remove(passwordEntry);
+        return others;
+    }
+
+    /**
+     * Returns the number of entries which use the given password, e.g. to warn before it is used once more.
+     * Never decrypts the vault: while the reuse index is still being built, no entry is reported.
+     * @param password The plaintext password.
+     * @return The number of entries using the password.
+     */
+    public synchronized int countEntriesUsingPassword(String password) {
+        if (secretIndexStale) {
+            buildSecretIndex();
+            return 0;
+        }
+        String fingerprint = password == null ? null : fingerprinter.fingerprint(password.getBytes(StandardCharsets.UTF_8));
+        if (fingerprint == null) return 0;
+        Set<PasswordEntry> entries = secretIndex.get(fingerprint);
+        return entries == null ? 0 : entries.size();
+    }
+
+    /**
+     * Retrieves the groups of entries which share a password.
+     * @return One list per reused password, holding the entries using it in insertion order.
+     */
+    public synchronized List<List<PasswordEntry>> getReusedPasswordGroups() {
+        if (secretIndexStale) {
+            buildSecretIndex();
+            return Collections.emptyList();
+        }
+        List<List<PasswordEntry>> groups = new ArrayList<>();
+        for (Set<PasswordEntry> entries : secretIndex.values()) {
+            if (entries.size() > 1) groups.add(new ArrayList<>(entries));
+        }
+        return groups;
     }
 
     /**
@@ -70,61 +589,558 @@ public class SerializationPasswordStorage {
      * @param password The password to check
      * @return True if the password already exists, false otherwise
      */
-    public Boolean passwordAlreadyExists(PasswordEntry password) {
-        return passwordEntries.contains(password);
+    public synchronized Boolean passwordAlreadyExists(PasswordEntry password) {
+        return entryIds.containsKey(password);
+    }
+
+    /**
+     * Checks if any entry is stored for the given account.
+     * @param website The website of the account.
+     * @param username The username of the account.
+     * @return True if an entry exists for the account, false otherwise.
+     */
+    public synchronized Boolean accountAlreadyExists(String website, String username) {
+        return accountIndex.containsKey(accountKey(website, username));
     }
 
     /**
-     * Saves the password entries to a file in the user's home directory using object serialization.
-     * The file will be saved with a predetermined name 'passwords.ser'
+     * Makes every change applied to the storage durable in the given directory, in the cheapest way available.
+     * If the journal is open in that directory, changes were already committed to it when they were made, so this
+     * only triggers a background compaction once the journal has grown past the threshold. Otherwise a full
+     * snapshot is written with {@link #savePasswords}.
+     * @param callback The callback interface to handle the password save result.
+     * @param locationToSave The directory holding the vault file.
+     */
+    public void commitChanges(PasswordSaveCallback callback, String locationToSave) {
+        synchronized (this) {
+            if (journal != null && journal.getDirectory().equals(Paths.get(locationToSave))) {
+                try {
+                    if (journal.size() > compactionThreshold) scheduleCompaction();
+                } catch (IOException e) {
+                    // The change itself is committed, only the compaction check failed. It is retried on the next commit.
+                    LOGGER.log(Level.WARNING, "Could not check the journal size", e);
+                }
+                callback.onPasswordSaveSuccess();
+                return;
+            }
+        }
+        savePasswords(callback, locationToSave);
+    }
+
+    /**
+     * Saves the password entries to the vault file in the given directory, writing one record at a time.
+     * The file will be saved with a predetermined name 'passwords.vault'. The snapshot is written atomically and the
+     * previous BACKUP_COUNT snapshots are kept as backups, see {@link AtomicVaultFile}.
+     * The snapshot supersedes the journal, so older journal generations are removed once it is written and
+     * further changes are journaled in that directory.
      * @param callback The callback interface to handle the password save result.  The callback methods will be invoked
      *                 to notify the caller about the success or failure of the operation.
      */
-    public synchronized void savePasswords(PasswordSaveCallback callback, String locationToSave) {
-        String filePath = locationToSave + File.separator + "passwords.ser";
+    public void savePasswords(PasswordSaveCallback callback, String locationToSave) {
+        Path directory = Paths.get(locationToSave);
+        long start = OperationMetrics.start();
 
-        try (ObjectOutputStream outputStream = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            if (Files.exists(Paths.get(filePath))) outputStream.reset(); // File already exists, overwrite its contents
-            outputStream.writeObject(passwordEntries);
-            callback.onPasswordSaveSuccess();
+        try {
+            VaultJournal snapshotJournal;
+            long generation;
+            List<PasswordEntry> snapshot;
+            KdfParameters snapshotKdfParameters;
+            // Only the journal rotation and the copy need the lock. The file is written without holding it, so
+            // adds and removes on other threads are not blocked by the disk.
+            synchronized (this) {
+                openJournal(directory);
+                snapshotJournal = journal;
+                generation = snapshotJournal.rotate();
+                snapshot = new ArrayList<>(passwordEntries.values());
+                snapshotKdfParameters = kdfParameters;
+            }
+            writeSnapshot(snapshotJournal, generation, snapshot, snapshotKdfParameters);
+            VaultMetrics.SAVE.success(start, Files.size(directory.resolve(VAULT_FILE_NAME)));
         } catch (IOException e) {
+            VaultMetrics.SAVE.failure(start, e);
             callback.onPasswordSaveError("Failed to save passwords to the file");
-            e.printStackTrace();
+            return;
         } catch (SecurityException e) {
+            VaultMetrics.SAVE.failure(start, e);
             callback.onPasswordSaveError("Insufficient_permissions to write to the file");
-            e.printStackTrace();
+            return;
         } catch (Exception e) {
+            VaultMetrics.SAVE.failure(start, e);
             callback.onPasswordSaveError("An unexpected error occured while saving passwords.");
-            e.printStackTrace();
+            return;
+        }
+        callback.onPasswordSaveSuccess();
+    }
+
+    /**
+     * Returns the key derivation parameters of the vault, as read from the vault header.
+     * @return The parameters, or null if the vault has none yet.
+     */
+    public synchronized KdfParameters getKdfParameters() {
+        return kdfParameters;
+    }
+
+    /**
+     * Sets the key derivation parameters of the vault, e.g. after calibrating a new iteration count. They are
+     * written to the vault header with the next snapshot, so callers should save the vault afterwards.
+     * @param kdfParameters The new parameters.
+     */
+    public synchronized void setKdfParameters(KdfParameters kdfParameters) {
+        this.kdfParameters = kdfParameters;
+    }
+
+    /**
+     * Re-encrypts the secrets of every entry under a new vault key, e.g. after the master password changed, and
+     * writes them to the vault in the given directory together with the new KDF parameters. The entries are
+     * re-encrypted in parallel on the pool and streamed into the new vault, which replaces the old one atomically,
+     * see {@link VaultRekeyer}. The journal is folded into the new vault.
+     * The storage lock is held for the whole re-key, since changes made meanwhile would be journaled under the old key.
+     * @param oldKey The current vault key, or null if the secrets are not encrypted yet.
+     * @param newKey The new vault key.
+     * @param newParameters The KDF parameters the new key was derived with.
+     * @param locationToSave The directory holding the vault file.
+     * @param pool The pool the entries are re-encrypted on.
+     * @param callback The callback interface to handle the progress and result of the re-key.
+     */
+    public synchronized void rekeyVault(SecretKey oldKey, SecretKey newKey, KdfParameters newParameters,
+                                        String locationToSave, ForkJoinPool pool, VaultRekeyCallback callback) {
+        Path directory = Paths.get(locationToSave);
+        List<PasswordEntry> snapshot = new ArrayList<>(passwordEntries.values());
+        try {
+            openJournal(directory);
+            VaultJournal rekeyJournal = journal;
+            writeSnapshot(rekeyJournal, rekeyJournal.rotate(), newParameters,
+                    writer -> VaultRekeyer.rekey(snapshot, oldKey, newKey, pool, callback, writer));
+            List<PasswordEntry> rekeyed;
+            try (MappedVaultReader reader = MappedVaultReader.open(directory.resolve(VAULT_FILE_NAME))) {
+                rekeyed = new ArrayList<>(reader);
+            }
+            // The passwords are now encrypted under the new key, which the reuse index has to follow.
+            fingerprinter = new SecretFingerprinter(new EntryEncryptionEngine(newKey));
+            dropSecretIndex();
+            // The new vault holds the entries in snapshot order, so each is replaced in place and keeps its id.
+            for (int i = 0; i < rekeyed.size(); i++) replaceEntry(snapshot.get(i), rekeyed.get(i));
+            buildSecretIndex();
+            kdfParameters = newParameters;
+            try {
+                history.rewrite(password -> VaultRekeyer.rekeyPassword(password, oldKey, newKey));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not re-key the password history", e);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not re-key the vault", e);
+            callback.onRekeyError(e.getCause() instanceof GeneralSecurityException ? "rekey_wrong_key" : "rekey_write_failed");
+            return;
         }
+        callback.onRekeySuccess(snapshot.size());
     }
 
     /**
-     * Loads the password entries from a file in the user's home directory using object deserialization.
-     * The file should be saved with the predetermined name.
+     * Sets the size the journal may reach before it is compacted into a new snapshot.
+     * @param compactionThreshold The threshold in bytes.
+     */
+    public synchronized void setCompactionThreshold(long compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Loads the password entries from the vault file in the user's home directory.
      * @param callback The callback interface to handle the password load result.
      *                 The callback methods will be invoked to notify the caller about the success or failure of the operation.
      */
     public void loadPasswords(PasswordLoadCallback callback) {
-        String userHomeDirectory = System.getProperty("user.home");
-        String filePath = userHomeDirectory + File.separator + "passwords.ser";
-
-        try (ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(filePath))) {
-            Object object = inputStream.readObject();
-            if (object instanceof List) {
-                passwordEntries = (List<PasswordEntry>) object;
-                callback.onPasswordLoadSuccess(passwordEntries);
-            } else {
-                callback.onPasswordLoadError("Invalid data format in the password file.");
+        loadPasswords(callback, System.getProperty("user.home"));
+    }
+
+    /**
+     * Loads the password entries from the vault file in the given directory. Entries are read one record at a time
+     * and handed to the callback in batches as they are read. The first batch is kept small (FIRST_BATCH_SIZE) so
+     * the first page can be shown right away. The journal is then replayed on top of the snapshot, so the list
+     * passed to onPasswordLoadSuccess is the authoritative content of the vault.
+     * If only a legacy 'passwords.ser' file exists, it is migrated to the vault format first.
+     * Encrypted passwords are kept encrypted, exactly as stored; they are only decrypted when revealed, see
+     * {@link com.example.security.SecurityManager#revealPassword}.
+     * @param callback The callback interface to handle the password load result.
+     *                 The callback methods will be invoked to notify the caller about the success or failure of the operation.
+     * @param locationToLoad The directory holding the vault file.
+     */
+    public void loadPasswords(PasswordLoadCallback callback, String locationToLoad) {
+        loadPasswords(callback, locationToLoad, () -> false);
+    }
+
+    /**
+     * Loads the password entries on a background thread. The callback is invoked on that thread, so UI callers
+     * have to hand the results over to the UI thread themselves (e.g. with Platform.runLater).
+     * Cancelling the returned future stops the load at the next batch boundary, clears the partially loaded
+     * entries and calls onPasswordLoadCancelled instead of onPasswordLoadSuccess. A load started on the same
+     * storage while this one is still running replaces it the same way, so the new load never loses entries to
+     * the old one.
+     * @param callback The callback interface to handle the password load result.
+     * @param locationToLoad The directory holding the vault file.
+     * @return A future completed once the load has finished, failed or been cancelled.
+     */
+    public CompletableFuture<Void> loadPasswordsAsync(PasswordLoadCallback callback, String locationToLoad) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        LOAD_EXECUTOR.execute(() -> {
+            try {
+                loadPasswords(callback, locationToLoad, future::isCancelled);
+            } finally {
+                future.complete(null);
+            }
+        });
+        return future;
+    }
+
+    private void loadPasswords(PasswordLoadCallback callback, String locationToLoad, BooleanSupplier cancelled) {
+        Path directory = Paths.get(locationToLoad);
+        Path vaultFile = directory.resolve(VAULT_FILE_NAME);
+        Path legacyFile = directory.resolve(LegacyVaultMigrator.LEGACY_FILE_NAME);
+        long start = OperationMetrics.start();
+
+        try {
+            if (!Files.exists(vaultFile) && Files.exists(legacyFile)) LegacyVaultMigrator.migrate(legacyFile, vaultFile);
+        } catch (IOException e) {
+            VaultMetrics.LOAD.failure(start, e);
+            callback.onPasswordLoadError("Error migrating legacy password file: " + e.getMessage());
+            return;
+        } catch (SecurityException e) {
+            VaultMetrics.LOAD.failure(start, e);
+            callback.onPasswordLoadError("Insufficient permissions to read the password file.");
+            return;
+        }
+        long totalBytes = 0;
+        long generation;
+
+        synchronized (this) {
+            generation = ++loadGeneration;
+            closeJournal();
+            clear();
+        }
+        try {
+            totalBytes = Files.size(vaultFile);
+            long[] bytesRead = new long[1];
+            InputStream inputStream = new FilterInputStream(Files.newInputStream(vaultFile)) {
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    int read = super.read(bytes, offset, length);
+                    if (read > 0) bytesRead[0] += read;
+                    return read;
+                }
+            };
+            try (VaultReader reader = new VaultReader(inputStream)) {
+                synchronized (this) {
+                    kdfParameters = reader.getKdfParameters();
+                }
+                int batchSize = FIRST_BATCH_SIZE;
+                List<PasswordEntry> batch = new ArrayList<>(batchSize);
+                PasswordEntry passwordEntry;
+                boolean stopped = false;
+                while ((passwordEntry = reader.next()) != null) {
+                    batch.add(passwordEntry);
+                    if (batch.size() == batchSize) {
+                        stopped = cancelled.getAsBoolean() || !addLoadedBatch(generation, batch);
+                        if (stopped) break;
+                        callback.onPasswordBatchLoaded(batch);
+                        callback.onPasswordLoadProgress(reader.getEntryCount(), bytesRead[0], totalBytes);
+                        batchSize = LOAD_BATCH_SIZE;
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!stopped && !batch.isEmpty()) {
+                    stopped = cancelled.getAsBoolean() || !addLoadedBatch(generation, batch);
+                    if (!stopped) callback.onPasswordBatchLoaded(batch);
+                }
+                if (stopped || cancelled.getAsBoolean()) {
+                    // A cancelled load is neither a success nor a failure, so it is left out of the load metrics.
+                    clearLoad(generation);
+                    callback.onPasswordLoadCancelled();
+                    return;
+                }
+                callback.onPasswordLoadProgress(reader.getEntryCount(), totalBytes, totalBytes);
+            }
+            boolean replaced;
+            synchronized (this) {
+                replaced = generation != loadGeneration;
+                if (!replaced) {
+                    VaultJournal.replay(directory, this::applyChange);
+                    openJournal(directory);
+                    buildSearchIndex();
+                    buildSecretIndex();
+                }
+            }
+            if (replaced) {
+                callback.onPasswordLoadCancelled();
+                return;
             }
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
+            VaultMetrics.LOAD.failure(start, e);
             callback.onPasswordLoadError("Password file not found.");
-        } catch (IOException | ClassNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            clearLoad(generation);
+            VaultMetrics.LOAD.failure(start, e);
             callback.onPasswordLoadError("Error loading password file: " + e.getMessage());
+            return;
         } catch (SecurityException e) {
+            VaultMetrics.LOAD.failure(start, e);
             callback.onPasswordLoadError("Insufficient permissions to read the password file.");
-        } catch (ClassCastException e) {
-            callback.onPasswordLoadError("Invalid data format in the password file. Unable to cast to List<PasswordEntry>.");
+            return;
         }
+        VaultMetrics.LOAD.success(start, totalBytes);
+        callback.onPasswordLoadSuccess(getPasswordEntries());
+    }
+
+    /**
+     * Adds a batch read by a load, unless a newer load has started since. The journal is closed while loading and
+     * the entries are not user additions, so nothing is journaled or counted in VaultMetrics.ADD.
+     * @return False if the load has been replaced.
+     */
+    private synchronized boolean addLoadedBatch(long generation, List<PasswordEntry> batch) {
+        if (generation != loadGeneration) return false;
+        for (PasswordEntry passwordEntry : batch) {
+            if (!entryIds.containsKey(passwordEntry)) indexEntry(passwordEntry);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the entries of a load which did not finish, unless a newer load owns them by now.
+     */
+    private synchronized void clearLoad(long generation) {
+        if (generation == loadGeneration) clear();
+    }
+
+    /**
+     * Opens the vault in the given directory in read-only mode. The file is memory mapped and entries are only
+     * decoded when accessed, which keeps open time and heap usage low for large shared vaults.
+     * @param locationToLoad The directory holding the vault file.
+     * @return A read-only list view of the vault snapshot. Must be closed by the caller.
+     * @throws IOException If the vault could not be opened.
+     */
+    public static MappedVaultReader openReadOnly(String locationToLoad) throws IOException {
+        return MappedVaultReader.open(Paths.get(locationToLoad, VAULT_FILE_NAME));
+    }
+
+    /**
+     * Closes the journal and waits for a running compaction to finish.
+     */
+    public void close() {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = compactionExecutor;
+            compactionExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            closeJournal();
+        }
+    }
+
+    /**
+     * Appends changes to the journal if it is open. Must be called before the in-memory indexes are updated, so
+     * a change is only visible once it is committed.
+     */
+    private void journalChanges(List<VaultJournal.Change> changes) throws IOException {
+        if (journal != null) journal.appendAll(changes);
+    }
+
+    /**
+     * Applies a replayed journal change to the in-memory indexes. Replays are idempotent, so a change which is
+     * already reflected in the snapshot is simply a no-op.
+     */
+    private void applyChange(VaultJournal.Change change) {
+        switch (change.operation()) {
+            case ADD -> indexEntry(change.entry());
+            case REMOVE -> unindexEntry(change.entry());
+            case EDIT -> replaceEntry(change.entry(), change.replacement());
+        }
+    }
+
+    private void openJournal(Path directory) throws IOException {
+        if (journal != null && journal.getDirectory().equals(directory)) return;
+        closeJournal();
+        journal = VaultJournal.open(directory);
+        history = history.moveTo(directory);
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+            history.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not close the journal", e);
+        }
+        history = PasswordHistory.inMemory(accountIndex::containsKey);
+        journal = null;
+    }
+
+    /**
+     * Folds the journal into a new snapshot in the background. The journal is rotated and the entries copied while
+     * holding the lock, so changes made during the compaction go to the new generation and survive it.
+     */
+    private void scheduleCompaction() throws IOException {
+        if (compacting) return;
+        VaultJournal compactedJournal = journal;
+        long generation = compactedJournal.rotate();
+        List<PasswordEntry> snapshot = new ArrayList<>(passwordEntries.values());
+        KdfParameters snapshotKdfParameters = kdfParameters;
+        if (compactionExecutor == null) {
+            compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "vault-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        compacting = true;
+        compactionExecutor.execute(() -> {
+            long start = OperationMetrics.start();
+            try {
+                writeSnapshot(compactedJournal, generation, snapshot, snapshotKdfParameters);
+                VaultMetrics.SAVE.success(start, Files.size(compactedJournal.getDirectory().resolve(VAULT_FILE_NAME)));
+            } catch (IOException e) {
+                // The old snapshot and every journal generation are still in place, so nothing is lost.
+                VaultMetrics.SAVE.failure(start, e);
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot taken when the journal was rotated to the given generation, then deletes the journal
+     * generations it supersedes. A snapshot older than the one already on disk is skipped, so snapshots written
+     * by concurrent saves and compactions never go back in time.
+     */
+    private void writeSnapshot(VaultJournal snapshotJournal, long generation, List<PasswordEntry> snapshot,
+                               KdfParameters snapshotKdfParameters) throws IOException {
+        writeSnapshot(snapshotJournal, generation, snapshotKdfParameters, writer -> {
+            for (PasswordEntry passwordEntry : snapshot) writer.write(passwordEntry);
+        });
+    }
+
+    private void writeSnapshot(VaultJournal snapshotJournal, long generation, KdfParameters snapshotKdfParameters,
+                               AtomicVaultFile.EntryWriter entries) throws IOException {
+        Path directory = snapshotJournal.getDirectory();
+        synchronized (snapshotLock) {
+            if (generation <= snapshotGenerations.getOrDefault(directory, 0L)) return;
+            AtomicVaultFile.write(directory.resolve(VAULT_FILE_NAME), snapshotKdfParameters, BACKUP_COUNT, entries);
+            snapshotGenerations.put(directory, generation);
+            snapshotJournal.deleteGenerationsBefore(generation);
+        }
+    }
+
+    /**
+     * Adds an entry to the ordered set and the secondary indexes.
+     * @return True if the entry was added, false if it already existed.
+     */
+    private boolean indexEntry(PasswordEntry passwordEntry) {
+        if (entryIds.containsKey(passwordEntry)) return false;
+        long entryId = nextEntryId++;
+        entryIds.put(passwordEntry, entryId);
+        passwordEntries.put(entryId, passwordEntry);
+        indexSecondary(passwordEntry);
+        return true;
+    }
+
+    /**
+     * Replaces an entry with its edited version under the same id, so it keeps its position. Replayed edits of
+     * entries which are missing or whose replacement already exists fall back to a remove and an add.
+     */
+    private void replaceEntry(PasswordEntry oldEntry, PasswordEntry newEntry) {
+        if (oldEntry.equals(newEntry)) return;
+        Long entryId = entryIds.get(oldEntry);
+        if (entryId == null || entryIds.containsKey(newEntry)) {
+            unindexEntry(oldEntry);
+            indexEntry(newEntry);
+            return;
+        }
+        entryIds.remove(oldEntry);
+        unindexSecondary(oldEntry);
+        entryIds.put(newEntry, entryId);
+        passwordEntries.put(entryId, newEntry);
+        indexSecondary(newEntry);
+    }
+
+    private void indexSecondary(PasswordEntry passwordEntry) {
+        accountIndex.computeIfAbsent(accountKey(passwordEntry.website(), passwordEntry.username()),
+                key -> new LinkedHashSet<>()).add(passwordEntry);
+        folderIndex.computeIfAbsent(passwordEntry.folder(), key -> new LinkedHashSet<>()).add(passwordEntry);
+        if (!searchIndexStale) {
+            searchIndex.add(passwordEntry);
+        } else if (pendingSearchChanges != null) {
+            pendingSearchChanges.add(new IndexChange(passwordEntry, true));
+        }
+        if (!secretIndexStale) {
+            indexSecret(passwordEntry);
+        } else if (pendingSecretChanges != null) {
+            pendingSecretChanges.add(new IndexChange(passwordEntry, true));
+        }
+    }
+
+    private void indexSecret(PasswordEntry passwordEntry) {
+        String fingerprint = fingerprinter.fingerprint(passwordEntry.password());
+        if (fingerprint != null) indexSecret(passwordEntry, fingerprint);
+    }
+
+    private void indexSecret(PasswordEntry passwordEntry, String fingerprint) {
+        secretFingerprints.put(passwordEntry, fingerprint);
+        secretIndex.computeIfAbsent(fingerprint, key -> new LinkedHashSet<>()).add(passwordEntry);
+    }
+
+    private void unindexSecret(PasswordEntry passwordEntry) {
+        String fingerprint = secretFingerprints.remove(passwordEntry);
+        if (fingerprint != null) removeFromIndex(secretIndex, fingerprint, passwordEntry);
+    }
+
+    /**
+     * Removes an entry from the ordered set and the secondary indexes.
+     * @return True if the entry was removed, false if it did not exist.
+     */
+    private boolean unindexEntry(PasswordEntry passwordEntry) {
+        Long entryId = entryIds.remove(passwordEntry);
+        if (entryId == null) return false;
+        passwordEntries.remove(entryId);
+        unindexSecondary(passwordEntry);
+        return true;
+    }
+
+    private void unindexSecondary(PasswordEntry passwordEntry) {
+        removeFromIndex(accountIndex, accountKey(passwordEntry.website(), passwordEntry.username()), passwordEntry);
+        removeFromIndex(folderIndex, passwordEntry.folder(), passwordEntry);
+        if (!searchIndexStale) {
+            searchIndex.remove(passwordEntry);
+        } else if (pendingSearchChanges != null) {
+            pendingSearchChanges.add(new IndexChange(passwordEntry, false));
+        }
+        if (!secretIndexStale) {
+            unindexSecret(passwordEntry);
+        } else if (pendingSecretChanges != null) {
+            pendingSecretChanges.add(new IndexChange(passwordEntry, false));
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Set<PasswordEntry>> index, String key, PasswordEntry passwordEntry) {
+        Set<PasswordEntry> entries = index.get(key);
+        if (entries != null) {
+            entries.remove(passwordEntry);
+            if (entries.isEmpty()) index.remove(key);
+        }
+    }
+
+    /**
+     * Builds the account index key. A NUL separator keeps 'a' + 'bc' and 'ab' + 'c' apart.
+     */
+    private static String accountKey(String website, String username) {
+        return website + '\u0000' + username;
     }
 }
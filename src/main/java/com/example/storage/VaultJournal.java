@@ -0,0 +1,291 @@
+package com.example.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of changes made to the vault since the last snapshot.
+ * <p>
+ * Every change is appended as a small checksummed record and forced to disk before the append returns, so a change
+ * is committed once {@link #append} returns. The journal is split into numbered generations
+ * ('passwords.journal.1', 'passwords.journal.2', ...). Compaction rotates to a new generation, writes a fresh
+ * snapshot and then deletes the older generations. Replaying a generation that is already folded into the
+ * snapshot is harmless because every change sets the final state of whole entries.
+ * <p>
+ * A crash in the middle of an append leaves a torn record at the end of the newest generation. It fails its
+ * checksum, is ignored on replay and is cut off when the journal is reopened.
+ */
+public class VaultJournal implements Closeable {
+
+    public static final String JOURNAL_FILE_PREFIX = "passwords.journal.";
+    private static final int MAGIC = 0x53504a4c; // "SPJL"
+    private static final short VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+
+    /**
+     * The kind of change stored in a journal record.
+     */
+    public enum Operation {
+        ADD, REMOVE, EDIT
+    }
+
+    /**
+     * A change to the vault. For EDIT, entry is the old entry and replacement the new one.
+     */
+    public record Change(Operation operation, PasswordEntry entry, PasswordEntry replacement) {
+
+        public static Change add(PasswordEntry entry) {
+            return new Change(Operation.ADD, entry, null);
+        }
+
+        public static Change remove(PasswordEntry entry) {
+            return new Change(Operation.REMOVE, entry, null);
+        }
+
+        public static Change edit(PasswordEntry oldEntry, PasswordEntry newEntry) {
+            return new Change(Operation.EDIT, oldEntry, newEntry);
+        }
+    }
+
+    private final Path directory;
+    private long generation;
+    private FileChannel channel;
+
+    private VaultJournal(Path directory, long generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.channel = openForAppend(journalFile(directory, generation));
+    }
+
+    /**
+     * Opens the journal in the given directory for appending, creating it if needed.
+     * A torn record left at the end of the newest generation is truncated.
+     * @param directory The directory holding the vault.
+     * @return The opened journal.
+     * @throws IOException If the journal could not be opened.
+     */
+    public static VaultJournal open(Path directory) throws IOException {
+        List<Long> generations = listGenerations(directory);
+        long newest = generations.isEmpty() ? 1 : generations.get(generations.size() - 1);
+        return new VaultJournal(directory, newest);
+    }
+
+    /**
+     * Replays every journal generation in the given directory, oldest first.
+     * @param directory The directory holding the vault.
+     * @param consumer Receives every committed change in the order it was appended.
+     * @return The number of changes replayed.
+     * @throws IOException If a journal file could not be read.
+     */
+    public static long replay(Path directory, Consumer<Change> consumer) throws IOException {
+        long replayed = 0;
+        for (long generation : listGenerations(directory)) {
+            replayed += readValidRecords(journalFile(directory, generation), consumer).count;
+        }
+        return replayed;
+    }
+
+    /**
+     * Appends a change and forces it to disk.
+     * @param change The change to append.
+     * @throws IOException If the change could not be written.
+     */
+    public synchronized void append(Change change) throws IOException {
+        appendAll(List.of(change));
+    }
+
+    /**
+     * Appends a batch of changes and forces them to disk once.
+     * @param changes The changes to append.
+     * @throws IOException If the changes could not be written.
+     */
+    public synchronized void appendAll(List<Change> changes) throws IOException {
+        if (channel == null) throw new IOException("VaultJournal is closed");
+        if (changes.isEmpty()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Change change : changes) bytes.write(encode(change));
+        long start = channel.position();
+        try {
+            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()));
+            channel.force(false);
+        } catch (IOException e) {
+            // Drop whatever part of the batch made it to the file so a later append starts at a record boundary.
+            channel.truncate(start);
+            channel.position(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a new journal generation. Changes appended from now on go to the new generation, so a snapshot
+     * taken at this point supersedes every older generation.
+     * @return The new generation. Generations below it may be deleted once the snapshot is durable.
+     * @throws IOException If the new generation could not be created.
+     */
+    public synchronized long rotate() throws IOException {
+        if (channel == null) throw new IOException("VaultJournal is closed");
+        channel.close();
+        generation++;
+        channel = openForAppend(journalFile(directory, generation));
+        return generation;
+    }
+
+    /**
+     * Deletes the journal generations older than the given one.
+     * @param generation The oldest generation to keep.
+     * @throws IOException If a journal file could not be deleted.
+     */
+    public synchronized void deleteGenerationsBefore(long generation) throws IOException {
+        for (long existing : listGenerations(directory)) {
+            if (existing < generation) Files.deleteIfExists(journalFile(directory, existing));
+        }
+    }
+
+    /**
+     * Returns the size of the current generation in bytes.
+     * @return The size of the current generation.
+     * @throws IOException If the size could not be read.
+     */
+    public synchronized long size() throws IOException {
+        if (channel == null) throw new IOException("VaultJournal is closed");
+        return channel.size();
+    }
+
+    /**
+     * Returns the directory the journal is stored in.
+     * @return The journal directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static Path journalFile(Path directory, long generation) {
+        return directory.resolve(JOURNAL_FILE_PREFIX + generation);
+    }
+
+    private static List<Long> listGenerations(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return generations;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(JOURNAL_FILE_PREFIX))
+                    .forEach(name -> {
+                        try {
+                            generations.add(Long.parseLong(name.substring(JOURNAL_FILE_PREFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                            // Not a journal generation, e.g. an editor backup file.
+                        }
+                    });
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private static FileChannel openForAppend(Path file) throws IOException {
+        long validLength = Files.exists(file) ? readValidRecords(file, change -> { }).validLength : 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (validLength < HEADER_LENGTH) {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+                writeFully(channel, header.flip());
+                channel.force(true);
+            } else if (validLength < channel.size()) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            channel.position(channel.size());
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private record ReadResult(long count, long validLength) {}
+
+    /**
+     * Reads records until the end of the file or the first torn / corrupted record.
+     */
+    private static ReadResult readValidRecords(Path file, Consumer<Change> consumer) throws IOException {
+        long count = 0;
+        long validLength = 0;
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (inputStream.readInt() != MAGIC || inputStream.readShort() != VERSION) return new ReadResult(0, 0);
+            inputStream.readShort(); // Reserved flags
+            validLength = HEADER_LENGTH;
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length = inputStream.readInt();
+                int checksum = inputStream.readInt();
+                if (length <= 0 || length > 2 * VaultRecordCodec.MAX_RECORD_LENGTH) break;
+                byte[] body = new byte[length];
+                inputStream.readFully(body);
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) break;
+                consumer.accept(decode(ByteBuffer.wrap(body)));
+                count++;
+                validLength += 2L * Integer.BYTES + length;
+            }
+        } catch (EOFException e) {
+            // End of the journal, possibly in the middle of a torn record.
+        }
+        return new ReadResult(count, validLength);
+    }
+
+    private static byte[] encode(Change change) {
+        byte[] entry = VaultRecordCodec.encode(change.entry());
+        byte[] replacement = change.replacement() == null ? null : VaultRecordCodec.encode(change.replacement());
+        int length = 1 + Integer.BYTES + entry.length + (replacement == null ? 0 : Integer.BYTES + replacement.length);
+        ByteBuffer body = ByteBuffer.allocate(length);
+        body.put((byte) change.operation().ordinal());
+        body.putInt(entry.length).put(entry);
+        if (replacement != null) body.putInt(replacement.length).put(replacement);
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        return ByteBuffer.allocate(2 * Integer.BYTES + length)
+                .putInt(length)
+                .putInt((int) crc.getValue())
+                .put(body.array())
+                .array();
+    }
+
+    private static Change decode(ByteBuffer body) throws IOException {
+        int ordinal = body.get();
+        if (ordinal < 0 || ordinal >= Operation.values().length) throw new IOException("Unknown journal operation");
+        Operation operation = Operation.values()[ordinal];
+        PasswordEntry entry = decodeEntry(body);
+        PasswordEntry replacement = operation == Operation.EDIT ? decodeEntry(body) : null;
+        return new Change(operation, entry, replacement);
+    }
+
+    private static PasswordEntry decodeEntry(ByteBuffer body) throws IOException {
+        int length = body.getInt();
+        if (length < 0 || length > body.remaining()) throw new IOException("Corrupted journal record");
+        ByteBuffer payload = body.slice(body.position(), length);
+        body.position(body.position() + length);
+        return VaultRecordCodec.decode(payload);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
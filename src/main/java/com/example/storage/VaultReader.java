@@ -0,0 +1,91 @@
+package com.example.storage;
+
+import com.example.security.KdfParameters;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a vault file written by {@link VaultWriter} one record at a time, so only a single record is held in
+ * memory by the reader regardless of the vault size.
+ */
+public class VaultReader implements Closeable {
+
+    private final DataInputStream inputStream;
+    private byte[] recordBuffer = new byte[256];
+    private final KdfParameters kdfParameters;
+    private long entryCount;
+    private boolean finished;
+
+    /**
+     * Creates a reader and validates the vault header.
+     * @param inputStream The stream to read the vault from. It is closed when the reader is closed.
+     * @throws IOException If the stream does not start with a valid vault header.
+     */
+    public VaultReader(InputStream inputStream) throws IOException {
+        this.inputStream = new DataInputStream(new BufferedInputStream(inputStream));
+        try {
+            int magic = this.inputStream.readInt();
+            short version = this.inputStream.readShort();
+            short flags = VaultRecordCodec.checkHeader(magic, version, this.inputStream.readShort());
+            if ((flags & VaultRecordCodec.FLAG_KDF_PARAMETERS) != 0) {
+                byte[] block = new byte[this.inputStream.readUnsignedShort()];
+                this.inputStream.readFully(block);
+                kdfParameters = VaultRecordCodec.decodeKdfParameters(ByteBuffer.wrap(block));
+            } else {
+                kdfParameters = null;
+            }
+        } catch (EOFException e) {
+            throw new IOException("Vault file is too short to contain a header");
+        }
+    }
+
+    /**
+     * Returns the KDF parameters stored in the vault header.
+     * @return The parameters, or null if the vault has none (always the case for version 1 vaults).
+     */
+    public KdfParameters getKdfParameters() {
+        return kdfParameters;
+    }
+
+    /**
+     * Reads the next entry from the vault.
+     * @return The next entry, or null once every entry has been read.
+     * @throws IOException If the vault is truncated or corrupted.
+     */
+    public PasswordEntry next() throws IOException {
+        if (finished) return null;
+        try {
+            int length = inputStream.readInt();
+            if (length == VaultRecordCodec.END_OF_RECORDS) {
+                long expectedCount = inputStream.readLong();
+                if (expectedCount != entryCount) {
+                    throw new IOException("Vault trailer expected " + expectedCount + " entries but found " + entryCount);
+                }
+                finished = true;
+                return null;
+            }
+            VaultRecordCodec.checkRecordLength(length);
+            if (recordBuffer.length < length) recordBuffer = new byte[Math.max(length, recordBuffer.length * 2)];
+            inputStream.readFully(recordBuffer, 0, length);
+            PasswordEntry passwordEntry = VaultRecordCodec.decode(ByteBuffer.wrap(recordBuffer, 0, length));
+            entryCount++;
+            return passwordEntry;
+        } catch (EOFException e) {
+            throw new IOException("Vault file is truncated after " + entryCount + " entries");
+        }
+    }
+
+    /**
+     * Returns the number of entries read so far.
+     * @return The number of entries read.
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.storage;
+
+import com.example.security.KdfParameters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the payload of a single vault record.
+ * A payload is the four PasswordEntry fields, each written as an int byte length (-1 for null) followed by
+ * the UTF-8 bytes of the field.
+ * <p>
+ * Also encodes the optional KDF block of the header. Since version 2, the fixed header (magic, version, flags) is
+ * followed by a short block length and the block when the FLAG_KDF_PARAMETERS flag is set. Version 1 files have
+ * no flags and are still read.
+ */
+final class VaultRecordCodec {
+
+    static final int MAGIC = 0x53505654; // "SPVT"
+    static final short VERSION = 2;
+    static final short MIN_VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+    static final short FLAG_KDF_PARAMETERS = 1;
+    static final int END_OF_RECORDS = 0;
+    // Guards against allocating huge buffers when reading a corrupted length prefix.
+    static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private VaultRecordCodec() {
+    }
+
+    /**
+     * Encodes a PasswordEntry into a record payload.
+     * @param passwordEntry The entry to encode.
+     * @return The encoded payload, without the length prefix.
+     */
+    static byte[] encode(PasswordEntry passwordEntry) {
+        byte[] username = toBytes(passwordEntry.username());
+        byte[] password = toBytes(passwordEntry.password());
+        byte[] website = toBytes(passwordEntry.website());
+        byte[] folder = toBytes(passwordEntry.folder());
+        ByteBuffer buffer = ByteBuffer.allocate(fieldLength(username) + fieldLength(password)
+                + fieldLength(website) + fieldLength(folder));
+        putField(buffer, username);
+        putField(buffer, password);
+        putField(buffer, website);
+        putField(buffer, folder);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a record payload starting at the buffer's position. The position is advanced past the payload.
+     * @param buffer The buffer holding the payload.
+     * @return The decoded PasswordEntry.
+     * @throws IOException If the payload is malformed.
+     */
+    static PasswordEntry decode(ByteBuffer buffer) throws IOException {
+        String username = getField(buffer);
+        String password = getField(buffer);
+        String website = getField(buffer);
+        String folder = getField(buffer);
+        return new PasswordEntry(username, password, website, folder);
+    }
+
+    /**
+     * Checks that a record length read from a vault file is plausible.
+     * @param length The length prefix read from the file.
+     * @throws IOException If the length is out of range.
+     */
+    static void checkRecordLength(int length) throws IOException {
+        if (length < 0 || length > MAX_RECORD_LENGTH) {
+            throw new IOException("Corrupted vault record length: " + length);
+        }
+    }
+
+    /**
+     * Checks the fixed part of a vault header.
+     * @return The header flags, always 0 for a version 1 vault.
+     * @throws IOException If the header does not belong to a supported vault file.
+     */
+    static short checkHeader(int magic, short version, short flags) throws IOException {
+        if (magic != MAGIC) throw new IOException("Not a vault file");
+        if (version < MIN_VERSION || version > VERSION) throw new IOException("Unsupported vault version: " + version);
+        return version == 1 ? 0 : flags;
+    }
+
+    /**
+     * Encodes the KDF block of the header, without its length prefix.
+     * @param parameters The parameters to encode.
+     * @return The encoded block.
+     */
+    static byte[] encodeKdfParameters(KdfParameters parameters) {
+        byte[] algorithm = parameters.algorithm().getBytes(StandardCharsets.UTF_8);
+        byte[] salt = parameters.salt();
+        ByteBuffer buffer = ByteBuffer.allocate(Short.BYTES + algorithm.length + 2 * Integer.BYTES + Short.BYTES + salt.length);
+        buffer.putShort((short) algorithm.length).put(algorithm);
+        buffer.putInt(parameters.iterations()).putInt(parameters.keyLength());
+        buffer.putShort((short) salt.length).put(salt);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the KDF block of the header.
+     * @param buffer The buffer holding the block, without its length prefix.
+     * @return The decoded parameters.
+     * @throws IOException If the block is malformed.
+     */
+    static KdfParameters decodeKdfParameters(ByteBuffer buffer) throws IOException {
+        try {
+            byte[] algorithm = new byte[buffer.getShort()];
+            buffer.get(algorithm);
+            int iterations = buffer.getInt();
+            int keyLength = buffer.getInt();
+            byte[] salt = new byte[buffer.getShort()];
+            buffer.get(salt);
+            return new KdfParameters(new String(algorithm, StandardCharsets.UTF_8), iterations, keyLength, salt);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted KDF parameters in the vault header", e);
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int fieldLength(byte[] field) {
+        return Integer.BYTES + (field == null ? 0 : field.length);
+    }
+
+    private static void putField(ByteBuffer buffer, byte[] field) {
+        if (field == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+    }
+
+    private static String getField(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) throw new IOException("Truncated vault record");
+        int length = buffer.getInt();
+        if (length == -1) return null;
+        if (length < 0 || length > buffer.remaining()) throw new IOException("Corrupted vault record field");
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
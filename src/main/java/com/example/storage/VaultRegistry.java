@@ -0,0 +1,338 @@
+package com.example.storage;
+
+import com.example.config.AppConfiguration;
+import com.example.config.ConfigurationFile;
+import com.example.interfaces.PasswordLoadCallback;
+import com.example.interfaces.PasswordSaveCallback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps several vaults open at the same time, each with its own {@link SerializationPasswordStorage},
+ * {@link SerializationFolderStorage} and lock.
+ * <p>
+ * A vault is loaded on its first {@link #acquire}, and the same directory is used for loading and saving it from
+ * then on. Loading one vault only holds that vault's lock, so other vaults can be used or loaded meanwhile. A vault
+ * which has not been used for the idle timeout and has no outstanding {@link Vault} handle is evicted from memory.
+ * Every password change to a loaded vault is already committed to its journal. Folders are only written on
+ * {@link SerializationFolderStorage#saveFolders}, so evicting or closing a vault saves its folders first, closes
+ * the journal, and the next acquire loads the vault again.
+ */
+public class VaultRegistry implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(VaultRegistry.class.getName());
+
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private final Supplier<Duration> idleTimeout;
+    private final LongSupplier compactionThreshold;
+    private ScheduledExecutorService evictionExecutor;
+
+    public VaultRegistry() {
+        this(Map.of());
+    }
+
+    /**
+     * @param vaultLocations The directories of the vaults by vault name.
+     */
+    public VaultRegistry(Map<String, String> vaultLocations) {
+        this(vaultLocations, () -> Duration.ofSeconds(ConfigurationFile.DEFAULT_VAULT_IDLE_TIMEOUT_SECONDS),
+                () -> ConfigurationFile.DEFAULT_COMPACTION_THRESHOLD_BYTES);
+    }
+
+    /**
+     * Registers the vaults of the configuration. The idle timeout and the journal compaction threshold are read
+     * from the configuration whenever they are used, so changes to the configuration file apply to running vaults.
+     * @param appConfig The configuration.
+     */
+    public VaultRegistry(AppConfiguration appConfig) {
+        this(appConfig.getVaultLocations(), appConfig::getVaultIdleTimeout, appConfig::getCompactionThresholdBytes);
+    }
+
+    private VaultRegistry(Map<String, String> vaultLocations, Supplier<Duration> idleTimeout,
+                          LongSupplier compactionThreshold) {
+        this.idleTimeout = idleTimeout;
+        this.compactionThreshold = compactionThreshold;
+        for (Map.Entry<String, String> vault : vaultLocations.entrySet()) register(vault.getKey(), vault.getValue());
+    }
+
+    /**
+     * Registers a vault. Nothing is read until the vault is acquired.
+     * @param name The name of the vault.
+     * @param location The directory holding the vault file.
+     * @throws IllegalArgumentException If another vault is registered under that name.
+     */
+    public void register(String name, String location) {
+        if (name == null || location == null) throw new NullPointerException("Vault name and location cannot be null");
+        if (slots.putIfAbsent(name, new Slot(name, Paths.get(location), compactionThreshold)) != null) {
+            throw new IllegalArgumentException("Vault " + name + " is already registered");
+        }
+    }
+
+    /**
+     * Removes a vault from the registry and closes it if it is loaded.
+     * @param name The name of the vault.
+     * @return True if the vault was registered.
+     */
+    public boolean unregister(String name) {
+        Slot slot = slots.remove(name);
+        if (slot == null) return false;
+        slot.unload();
+        return true;
+    }
+
+    /**
+     * Returns the names of the registered vaults.
+     * @return The names, sorted.
+     */
+    public List<String> getVaultNames() {
+        List<String> names = new ArrayList<>(slots.keySet());
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Returns true if the vault is currently held in memory.
+     * @param name The name of the vault.
+     * @return True if the vault is loaded.
+     */
+    public boolean isLoaded(String name) {
+        Slot slot = slots.get(name);
+        return slot != null && slot.isLoaded();
+    }
+
+    /**
+     * Returns a handle on a vault, loading it first if it is not in memory. A vault whose directory holds no vault
+     * file yet is created empty. The vault is not evicted while the handle is open.
+     * @param name The name of the vault.
+     * @return The handle, to be closed once the caller is done with the vault.
+     * @throws IllegalArgumentException If no vault is registered under that name.
+     * @throws IOException If the vault could not be loaded or created.
+     */
+    public Vault acquire(String name) throws IOException {
+        Slot slot = slots.get(name);
+        if (slot == null) throw new IllegalArgumentException("Vault " + name + " is not registered");
+        return slot.acquire();
+    }
+
+    /**
+     * Evicts the loaded vaults which have no open handle and have not been used for the given time.
+     * @param idleTimeout How long a vault may go unused.
+     * @return The number of vaults evicted.
+     */
+    public int evictIdle(Duration idleTimeout) {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Slot slot : slots.values()) {
+            if (slot.evictIfIdle(now, idleTimeout.toNanos())) evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * Checks for idle vaults in the background, at a tenth of the configured idle timeout.
+     */
+    public synchronized void startEviction() {
+        if (evictionExecutor != null) return;
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vault-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeout.get().toMillis() / 10);
+        evictionExecutor.scheduleWithFixedDelay(() -> evictIdle(idleTimeout.get()), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the eviction and closes every loaded vault.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (evictionExecutor != null) evictionExecutor.shutdownNow();
+            evictionExecutor = null;
+        }
+        for (Slot slot : slots.values()) slot.unload();
+    }
+
+    /**
+     * A vault which is held in memory while the handle is open.
+     */
+    public static class Vault implements Closeable {
+
+        private final Slot slot;
+        private final SerializationPasswordStorage passwordStorage;
+        private final SerializationFolderStorage folderStorage;
+        private boolean closed;
+
+        private Vault(Slot slot, SerializationPasswordStorage passwordStorage, SerializationFolderStorage folderStorage) {
+            this.slot = slot;
+            this.passwordStorage = passwordStorage;
+            this.folderStorage = folderStorage;
+        }
+
+        public String getName() {
+            return slot.name;
+        }
+
+        /**
+         * Returns the directory the vault is loaded from and saved to.
+         * @return The directory holding the vault file.
+         */
+        public String getLocation() {
+            return slot.directory.toString();
+        }
+
+        public SerializationPasswordStorage getPasswordStorage() {
+            return passwordStorage;
+        }
+
+        public SerializationFolderStorage getFolderStorage() {
+            return folderStorage;
+        }
+
+        /**
+         * Releases the handle, so the vault can be evicted once it has been idle for long enough.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            slot.release();
+        }
+    }
+
+    /**
+     * The state of one registered vault, guarded by its own lock.
+     */
+    private static class Slot {
+
+        private final String name;
+        private final Path directory;
+        private final LongSupplier compactionThreshold;
+        private SerializationPasswordStorage passwordStorage;
+        private SerializationFolderStorage folderStorage;
+        private int handles;
+        private long lastUsed;
+
+        private Slot(String name, Path directory, LongSupplier compactionThreshold) {
+            this.name = name;
+            this.directory = directory;
+            this.compactionThreshold = compactionThreshold;
+        }
+
+        synchronized Vault acquire() throws IOException {
+            if (passwordStorage == null) load();
+            handles++;
+            lastUsed = System.nanoTime();
+            return new Vault(this, passwordStorage, folderStorage);
+        }
+
+        synchronized void release() {
+            handles--;
+            lastUsed = System.nanoTime();
+        }
+
+        synchronized boolean isLoaded() {
+            return passwordStorage != null;
+        }
+
+        synchronized boolean evictIfIdle(long now, long idleTimeoutNanos) {
+            if (passwordStorage == null || handles > 0 || now - lastUsed < idleTimeoutNanos) return false;
+            // A vault whose folders could not be written stays loaded, so they are not lost. The next check retries.
+            if (!saveFolders()) return false;
+            closeStorage();
+            return true;
+        }
+
+        synchronized void unload() {
+            if (passwordStorage == null) return;
+            saveFolders();
+            closeStorage();
+        }
+
+        private boolean saveFolders() {
+            try {
+                folderStorage.saveFolders(directory.toString());
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save the folders of vault " + name, e);
+                return false;
+            }
+        }
+
+        private void closeStorage() {
+            passwordStorage.close();
+            passwordStorage = null;
+            folderStorage = null;
+        }
+
+        /**
+         * Loads the vault, or creates it if the directory holds no vault yet. Either way the journal is open
+         * afterwards, so every later change is durable without an explicit save.
+         */
+        private void load() throws IOException {
+            String location = directory.toString();
+            SerializationFolderStorage folders = new SerializationFolderStorage();
+            folders.loadFolders(location);
+            SerializationPasswordStorage storage = new SerializationPasswordStorage();
+            storage.setCompactionThreshold(compactionThreshold.getAsLong());
+            String[] error = new String[1];
+            if (Files.exists(directory.resolve(SerializationPasswordStorage.VAULT_FILE_NAME))
+                    || Files.exists(directory.resolve(LegacyVaultMigrator.LEGACY_FILE_NAME))) {
+                storage.loadPasswords(new PasswordLoadCallback() {
+                    @Override
+                    public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+                    }
+
+                    @Override
+                    public void onPasswordLoadError(String errorMessage) {
+                        error[0] = errorMessage;
+                    }
+                }, location);
+            } else {
+                Files.createDirectories(directory);
+                storage.savePasswords(new PasswordSaveCallback() {
+                    @Override
+                    public void onPasswordSaveSuccess() {
+                    }
+
+                    @Override
+                    public void onPasswordSaveError(String errorMessage) {
+                        error[0] = errorMessage;
+                    }
+
+                    @Override
+                    public void onAddPasswordEntrySuccess() {
+                    }
+
+                    @Override
+                    public void onAddPasswordEntryError(String error) {
+                    }
+                }, location);
+            }
+            if (error[0] != null) {
+                storage.close();
+                throw new IOException("Could not open vault " + name + ": " + error[0]);
+            }
+            passwordStorage = storage;
+            folderStorage = folders;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.storage;
+
+import com.example.interfaces.VaultRekeyCallback;
+import com.example.security.EncryptionUtilities;
+import com.example.security.KdfParameters;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Re-encrypts the secrets of a vault under a new key, e.g. after the master password changed.
+ * <p>
+ * The entries are split into chunks of CHUNK_SIZE, which are decrypted and re-encrypted in parallel on a
+ * ForkJoinPool. The writing thread consumes the chunks in vault order and streams them into the new vault while the
+ * pool keeps working on the chunks ahead of it, so only a bounded number of re-keyed chunks is held in memory.
+ * The new vault replaces the old one atomically with {@link AtomicVaultFile}; a failure at any point leaves the old
+ * vault in place.
+ */
+public class VaultRekeyer {
+
+    static final int CHUNK_SIZE = 4096;
+    // Chunks the pool may run ahead of the writer, per worker thread. Bounds the memory held by finished chunks.
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    private VaultRekeyer() {
+    }
+
+    /**
+     * Re-keys a vault file which is not open in a {@link SerializationPasswordStorage}. The file is memory mapped,
+     * so the old vault is never loaded either. Changes which are still in the journal are not included.
+     * @param vaultFile The vault file to re-key.
+     * @param oldKey The current vault key, or null if the vault is not encrypted yet.
+     * @param newKey The new vault key.
+     * @param newParameters The KDF parameters the new key was derived with, stored in the new vault header.
+     * @param pool The pool the chunks are re-encrypted on.
+     * @param callback Receives progress after every chunk. Only onRekeyProgress is called by this method.
+     * @return The number of entries re-keyed.
+     * @throws IOException If the vault could not be read or written, or a secret could not be decrypted with the
+     *                     old key (the cause is then a GeneralSecurityException).
+     */
+    public static long rekey(Path vaultFile, SecretKey oldKey, SecretKey newKey, KdfParameters newParameters,
+                             ForkJoinPool pool, VaultRekeyCallback callback) throws IOException {
+        try (MappedVaultReader reader = MappedVaultReader.open(vaultFile)) {
+            AtomicVaultFile.write(vaultFile, newParameters, SerializationPasswordStorage.BACKUP_COUNT,
+                    writer -> rekey(reader, oldKey, newKey, pool, callback, writer));
+            return reader.size();
+        }
+    }
+
+    /**
+     * Re-keys the given entries in parallel and writes them, in order, to the writer.
+     * @param entries The entries to re-key. Must support concurrent reads, e.g. an ArrayList or a
+     *                {@link MappedVaultReader}.
+     * @param oldKey The current vault key, or null if the vault is not encrypted yet.
+     * @param newKey The new vault key.
+     * @param pool The pool the chunks are re-encrypted on.
+     * @param callback Receives progress after every chunk.
+     * @param writer The writer of the new vault.
+     * @throws IOException If the entries could not be written, or a secret could not be decrypted with the old key
+     *                     (the cause is then a GeneralSecurityException).
+     */
+    static void rekey(List<PasswordEntry> entries, SecretKey oldKey, SecretKey newKey, ForkJoinPool pool,
+                      VaultRekeyCallback callback, VaultWriter writer) throws IOException {
+        int total = entries.size();
+        int chunks = (total + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int maxAhead = Math.max(1, pool.getParallelism() * CHUNKS_AHEAD_PER_THREAD);
+        Deque<ForkJoinTask<PasswordEntry[]>> pending = new ArrayDeque<>();
+        int nextChunk = 0;
+        try {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                while (nextChunk < chunks && pending.size() < maxAhead) {
+                    int from = nextChunk++ * CHUNK_SIZE;
+                    int to = Math.min(total, from + CHUNK_SIZE);
+                    pending.add(pool.submit(() -> rekeyChunk(entries, from, to, oldKey, newKey)));
+                }
+                PasswordEntry[] rekeyed;
+                try {
+                    rekeyed = pending.poll().join();
+                } catch (RuntimeException e) {
+                    throw new IOException("Failed to re-key the vault", securityCause(e));
+                }
+                for (PasswordEntry passwordEntry : rekeyed) writer.write(passwordEntry);
+                callback.onRekeyProgress(writer.getEntryCount(), total);
+            }
+        } finally {
+            for (ForkJoinTask<PasswordEntry[]> task : pending) task.cancel(false);
+        }
+    }
+
+    /**
+     * Re-encrypts the password field of an entry. A field which is still plaintext is encrypted as is.
+     * @throws GeneralSecurityException If the field could not be decrypted with the old key.
+     */
+    static PasswordEntry rekeyEntry(PasswordEntry passwordEntry, SecretKey oldKey, SecretKey newKey)
+            throws GeneralSecurityException {
+        if (passwordEntry.password() == null) return passwordEntry;
+        return new PasswordEntry(passwordEntry.username(), rekeyPassword(passwordEntry.password(), oldKey, newKey),
+                passwordEntry.website(), passwordEntry.folder());
+    }
+
+    /**
+     * Re-encrypts a stored password, see {@link #rekeyEntry}.
+     * @throws GeneralSecurityException If the password could not be decrypted with the old key.
+     */
+    static String rekeyPassword(String password, SecretKey oldKey, SecretKey newKey) throws GeneralSecurityException {
+        if (password == null) return null;
+        if (EncryptionUtilities.isEncrypted(password)) {
+            if (oldKey == null) throw new GeneralSecurityException("Vault is encrypted but no key was given");
+            password = EncryptionUtilities.decrypt(password, oldKey);
+        }
+        return EncryptionUtilities.encrypt(password, newKey);
+    }
+
+    private static PasswordEntry[] rekeyChunk(List<PasswordEntry> entries, int from, int to, SecretKey oldKey,
+                                              SecretKey newKey) throws GeneralSecurityException {
+        PasswordEntry[] chunk = new PasswordEntry[to - from];
+        for (int i = from; i < to; i++) chunk[i - from] = rekeyEntry(entries.get(i), oldKey, newKey);
+        return chunk;
+    }
+
+    /**
+     * join() wraps the checked exception of a chunk, possibly more than once. Returns the exception which
+     * actually failed the chunk.
+     */
+    private static Throwable securityCause(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof GeneralSecurityException) return cause;
+        }
+        return e;
+    }
+}
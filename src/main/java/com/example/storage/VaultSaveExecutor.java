@@ -0,0 +1,163 @@
+package com.example.storage;
+
+import com.example.config.AppConfiguration;
+import com.example.config.ConfigurationFile;
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.metrics.OperationMetrics;
+import com.example.metrics.VaultMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs vault saves on a dedicated writer thread, so the caller (usually the JavaFX thread) never waits on the disk.
+ * <p>
+ * Save requests arriving within the coalescing window of the first pending request are served by a single call
+ * to {@link SerializationPasswordStorage#commitChanges}, e.g. ten adds within 200 ms become one write. There is
+ * only one writer thread and each write captures every change made before it starts, so a request is never
+ * answered by a write older than the request. Results are reported to each request's {@link PasswordSaveCallback}
+ * on the writer thread. The queue depth, the coalescing and the write latency are recorded in
+ * {@link VaultMetrics#SAVE_QUEUE}.
+ */
+public class VaultSaveExecutor {
+
+    private final SerializationPasswordStorage passwordStorage;
+    private final LongSupplier coalesceWindowMillis;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Object pendingLock = new Object();
+    private List<PasswordSaveCallback> pendingCallbacks = new ArrayList<>();
+    private String pendingLocation;
+    private boolean writeScheduled;
+    private boolean shutdown;
+
+    public VaultSaveExecutor(SerializationPasswordStorage passwordStorage) {
+        this(passwordStorage, ConfigurationFile.DEFAULT_SAVE_COALESCE_WINDOW_MILLIS);
+    }
+
+    public VaultSaveExecutor(SerializationPasswordStorage passwordStorage, long coalesceWindowMillis) {
+        this(passwordStorage, () -> coalesceWindowMillis);
+    }
+
+    /**
+     * @param appConfig The configuration whose coalescing window is used. It is read for every write, so a change
+     *                  to the configuration file applies to the next one.
+     */
+    public VaultSaveExecutor(SerializationPasswordStorage passwordStorage, AppConfiguration appConfig) {
+        this(passwordStorage, appConfig::getSaveCoalesceWindowMillis);
+    }
+
+    private VaultSaveExecutor(SerializationPasswordStorage passwordStorage, LongSupplier coalesceWindowMillis) {
+        this.passwordStorage = passwordStorage;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "vault-save");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Requests the vault to be saved. Returns immediately.
+     * @param callback The callback notified once the write covering this request has finished.
+     * @param locationToSave The directory holding the vault file.
+     */
+    public void requestSave(PasswordSaveCallback callback, String locationToSave) {
+        synchronized (pendingLock) {
+            if (shutdown) {
+                callback.onPasswordSaveError("save_executor_shut_down");
+                return;
+            }
+            if (!pendingCallbacks.isEmpty() && !pendingLocation.equals(locationToSave)) {
+                // Changing location: write what is pending for the old one first, in order.
+                List<PasswordSaveCallback> callbacks = pendingCallbacks;
+                String location = pendingLocation;
+                pendingCallbacks = new ArrayList<>();
+                executor.execute(() -> write(callbacks, location));
+            }
+            pendingLocation = locationToSave;
+            pendingCallbacks.add(callback);
+            VaultMetrics.SAVE_QUEUE.requested();
+            if (!writeScheduled) {
+                writeScheduled = true;
+                executor.schedule(this::writePending, coalesceWindowMillis.getAsLong(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes every pending request and stops the writer thread. Save requests made after this call are rejected.
+     * @param timeout The maximum time to wait for the final write.
+     * @param unit The unit of the timeout.
+     * @return True if the final write finished in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (pendingLock) {
+            if (shutdown) return executor.awaitTermination(timeout, unit);
+            shutdown = true;
+        }
+        // Delayed tasks are dropped by shutdown(), so the final flush is queued as an immediate task.
+        executor.execute(this::writePending);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private void writePending() {
+        List<PasswordSaveCallback> callbacks;
+        String location;
+        synchronized (pendingLock) {
+            writeScheduled = false;
+            if (pendingCallbacks.isEmpty()) return;
+            callbacks = pendingCallbacks;
+            location = pendingLocation;
+            pendingCallbacks = new ArrayList<>();
+        }
+        write(callbacks, location);
+    }
+
+    private void write(List<PasswordSaveCallback> callbacks, String location) {
+        long start = OperationMetrics.start();
+        String[] error = new String[1];
+        Throwable failure = null;
+        try {
+            passwordStorage.commitChanges(new PasswordSaveCallback() {
+                @Override
+                public void onPasswordSaveSuccess() {
+                }
+
+                @Override
+                public void onPasswordSaveError(String errorMessage) {
+                    error[0] = errorMessage;
+                }
+
+                @Override
+                public void onAddPasswordEntrySuccess() {
+                }
+
+                @Override
+                public void onAddPasswordEntryError(String errorMessage) {
+                }
+            }, location);
+        } catch (Throwable e) {
+            // Every request of the batch still gets an answer, or its caller would wait forever.
+            VaultMetrics.SAVE.failure(start, e);
+            failure = e;
+            error[0] = "save_failed";
+        }
+        VaultMetrics.SAVE_QUEUE.written(callbacks.size(), start, error[0] == null);
+
+        for (PasswordSaveCallback callback : callbacks) {
+            if (error[0] == null) {
+                callback.onPasswordSaveSuccess();
+            } else {
+                callback.onPasswordSaveError(error[0]);
+            }
+        }
+        if (failure instanceof Error) throw (Error) failure;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.storage;
+
+import com.example.security.KdfParameters;
+
+import java.io.*;
+
+/**
+ * Writes a vault file one record at a time.
+ * The file starts with a header (magic number, format version and the KDF parameters of the vault, if any),
+ * followed by length-prefixed records and a
+ * trailer holding an end marker and the number of records written. The trailer lets the reader tell a complete
+ * vault from a truncated one.
+ */
+public class VaultWriter implements Closeable {
+
+    private final DataOutputStream outputStream;
+    private long entryCount;
+    private boolean closed;
+
+    /**
+     * Creates a writer and writes the vault header.
+     * @param outputStream The stream to write the vault to. It is closed when the writer is closed.
+     * @throws IOException If the header could not be written.
+     */
+    public VaultWriter(OutputStream outputStream) throws IOException {
+        this(outputStream, null);
+    }
+
+    /**
+     * Creates a writer and writes the vault header, including the KDF parameters of the vault.
+     * @param outputStream The stream to write the vault to. It is closed when the writer is closed.
+     * @param kdfParameters The parameters the vault key is derived with, or null if the vault has none.
+     * @throws IOException If the header could not be written.
+     */
+    public VaultWriter(OutputStream outputStream, KdfParameters kdfParameters) throws IOException {
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
+        this.outputStream.writeInt(VaultRecordCodec.MAGIC);
+        this.outputStream.writeShort(VaultRecordCodec.VERSION);
+        if (kdfParameters == null) {
+            this.outputStream.writeShort(0);
+        } else {
+            byte[] block = VaultRecordCodec.encodeKdfParameters(kdfParameters);
+            this.outputStream.writeShort(VaultRecordCodec.FLAG_KDF_PARAMETERS);
+            this.outputStream.writeShort(block.length);
+            this.outputStream.write(block);
+        }
+    }
+
+    /**
+     * Appends a single entry to the vault.
+     * @param passwordEntry The entry to write.
+     * @throws IOException If the entry could not be written.
+     */
+    public void write(PasswordEntry passwordEntry) throws IOException {
+        if (closed) throw new IOException("VaultWriter is closed");
+        byte[] payload = VaultRecordCodec.encode(passwordEntry);
+        outputStream.writeInt(payload.length);
+        outputStream.write(payload);
+        entryCount++;
+    }
+
+    /**
+     * Returns the number of entries written so far.
+     * @return The number of entries written.
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Writes the trailer and closes the underlying stream.
+     * @throws IOException If the trailer could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try (outputStream) {
+            outputStream.writeInt(VaultRecordCodec.END_OF_RECORDS);
+            outputStream.writeLong(entryCount);
+        }
+    }
+}
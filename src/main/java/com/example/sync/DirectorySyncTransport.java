@@ -0,0 +1,75 @@
+package com.example.sync;
+
+import com.example.storage.AtomicVaultFile;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sync transport over a directory shared by the replicas, e.g. a network drive or a synced folder.
+ * <p>
+ * Summaries are kept as '&lt;replica&gt;.summary' and deltas as '&lt;to&gt;/&lt;from&gt;.&lt;time&gt;.&lt;seq&gt;.delta'. Every file is
+ * written through {@link AtomicVaultFile}, so a replica never reads a partially written one.
+ */
+public class DirectorySyncTransport implements SyncTransport {
+
+    private static final String SUMMARY_SUFFIX = ".summary";
+    private static final String DELTA_SUFFIX = ".delta";
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Path directory;
+
+    /**
+     * @param directory The shared directory. It is created when needed.
+     */
+    public DirectorySyncTransport(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void publishSummary(String replicaId, byte[] summary) throws IOException {
+        Files.createDirectories(directory);
+        AtomicVaultFile.write(directory.resolve(replicaId + SUMMARY_SUFFIX), summary, 0);
+    }
+
+    @Override
+    public byte[] fetchSummary(String replicaId) throws IOException {
+        try {
+            return Files.readAllBytes(directory.resolve(replicaId + SUMMARY_SUFFIX));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void send(String fromReplicaId, String toReplicaId, byte[] delta) throws IOException {
+        Path inbox = Files.createDirectories(directory.resolve(toReplicaId));
+        String name = fromReplicaId + "." + System.currentTimeMillis() + "." + SEQUENCE.incrementAndGet() + DELTA_SUFFIX;
+        AtomicVaultFile.write(inbox.resolve(name), delta, 0);
+    }
+
+    @Override
+    public long receive(String replicaId, DeltaHandler handler) throws IOException {
+        Path inbox = directory.resolve(replicaId);
+        if (!Files.isDirectory(inbox)) return 0;
+        List<Path> deltas = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inbox, "*" + DELTA_SUFFIX)) {
+            for (Path file : files) deltas.add(file);
+        }
+        deltas.sort(null);
+        long bytes = 0;
+        for (Path file : deltas) {
+            byte[] delta = Files.readAllBytes(file);
+            handler.apply(delta);
+            Files.delete(file);
+            bytes += delta.length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.sync;
+
+import com.example.storage.PasswordEntry;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary encoding of summaries, deltas and the sync state.
+ * <p>
+ * Replica ids are UUIDs, so deltas and the state file list each replica once in a table and records refer to it
+ * by index. Strings are length prefixed UTF-8, with a length of -1 for null.
+ */
+final class SyncCodec {
+
+    private static final int SUMMARY_MAGIC = 0x53505353; // "SPSS"
+    private static final int DELTA_MAGIC = 0x53505344; // "SPSD"
+    private static final int STATE_MAGIC = 0x53505359; // "SPSY"
+    private static final short VERSION = 1;
+
+    private SyncCodec() {
+    }
+
+    /**
+     * A decoded delta.
+     */
+    record Delta(String sender, List<SyncRecord> records) {
+    }
+
+    /**
+     * A decoded sync state.
+     */
+    record State(String replicaId, VersionVector summary, List<SyncRecord> records) {
+    }
+
+    static byte[] encodeSummary(VersionVector summary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, SUMMARY_MAGIC);
+        writeVector(out, summary);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static VersionVector decodeSummary(byte[] summary) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(summary));
+        readHeader(in, SUMMARY_MAGIC);
+        return readVector(in);
+    }
+
+    static byte[] encodeDelta(String sender, Collection<SyncRecord> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, DELTA_MAGIC);
+        writeString(out, sender);
+        writeRecords(out, records, true);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Delta decodeDelta(byte[] delta) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+        readHeader(in, DELTA_MAGIC);
+        String sender = readString(in);
+        return new Delta(sender, readRecords(in, true));
+    }
+
+    static void writeState(OutputStream stream, String replicaId, VersionVector summary,
+                           Collection<SyncRecord> records) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        writeHeader(out, STATE_MAGIC);
+        writeString(out, replicaId);
+        writeVector(out, summary);
+        writeRecords(out, records, false);
+        out.flush();
+    }
+
+    static State readState(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        readHeader(in, STATE_MAGIC);
+        String replicaId = readString(in);
+        VersionVector summary = readVector(in);
+        return new State(replicaId, summary, readRecords(in, false));
+    }
+
+    private static void writeRecords(DataOutputStream out, Collection<SyncRecord> records, boolean withEntries)
+            throws IOException {
+        Map<String, Integer> table = new LinkedHashMap<>();
+        for (SyncRecord record : records) {
+            table.putIfAbsent(record.origin(), table.size());
+            for (String replica : record.version().toMap().keySet()) table.putIfAbsent(replica, table.size());
+        }
+        out.writeInt(table.size());
+        for (String replica : table.keySet()) writeString(out, replica);
+        out.writeInt(records.size());
+        for (SyncRecord record : records) {
+            writeString(out, record.key());
+            out.writeBoolean(record.isTombstone());
+            if (withEntries && !record.isTombstone()) {
+                PasswordEntry entry = record.entry();
+                writeString(out, entry.username());
+                writeString(out, entry.password());
+                writeString(out, entry.website());
+                writeString(out, entry.folder());
+            }
+            out.writeLong(record.hash());
+            out.writeLong(record.timestamp());
+            out.writeInt(table.get(record.origin()));
+            out.writeLong(record.counter());
+            Map<String, Long> version = record.version().toMap();
+            out.writeInt(version.size());
+            for (Map.Entry<String, Long> counter : version.entrySet()) {
+                out.writeInt(table.get(counter.getKey()));
+                out.writeLong(counter.getValue());
+            }
+        }
+    }
+
+    private static List<SyncRecord> readRecords(DataInputStream in, boolean withEntries) throws IOException {
+        String[] table = new String[checkCount(in.readInt())];
+        for (int i = 0; i < table.length; i++) table[i] = readString(in);
+        int count = checkCount(in.readInt());
+        List<SyncRecord> records = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            boolean tombstone = in.readBoolean();
+            PasswordEntry entry = null;
+            if (withEntries && !tombstone) {
+                entry = new PasswordEntry(readString(in), readString(in), readString(in), readString(in));
+            }
+            long hash = in.readLong();
+            long timestamp = in.readLong();
+            String origin = replicaAt(table, in.readInt());
+            long counter = in.readLong();
+            int size = checkCount(in.readInt());
+            Map<String, Long> version = new HashMap<>();
+            for (int j = 0; j < size; j++) version.put(replicaAt(table, in.readInt()), in.readLong());
+            records.add(new SyncRecord(key, entry, tombstone, hash, timestamp, origin, counter, VersionVector.of(version)));
+        }
+        return records;
+    }
+
+    private static void writeVector(DataOutputStream out, VersionVector vector) throws IOException {
+        Map<String, Long> counters = vector.toMap();
+        out.writeInt(counters.size());
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            writeString(out, counter.getKey());
+            out.writeLong(counter.getValue());
+        }
+    }
+
+    private static VersionVector readVector(DataInputStream in) throws IOException {
+        int size = checkCount(in.readInt());
+        Map<String, Long> counters = new HashMap<>();
+        for (int i = 0; i < size; i++) counters.put(readString(in), in.readLong());
+        return VersionVector.of(counters);
+    }
+
+    private static void writeHeader(DataOutputStream out, int magic) throws IOException {
+        out.writeInt(magic);
+        out.writeShort(VERSION);
+    }
+
+    private static void readHeader(DataInputStream in, int magic) throws IOException {
+        if (in.readInt() != magic) throw new IOException("Not a sync file");
+        short version = in.readShort();
+        if (version != VERSION) throw new IOException("Unsupported sync format version " + version);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) return null;
+        byte[] bytes = new byte[checkCount(length)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String replicaAt(String[] table, int index) throws IOException {
+        if (index < 0 || index >= table.length) throw new IOException("Invalid replica index " + index);
+        return table[index];
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0) throw new IOException("Invalid length " + count);
+        return count;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.sync;
+
+import com.example.storage.PasswordEntry;
+
+/**
+ * The sync state of one account: its last change, where that change was made and the version it superseded.
+ * @param key The account the record belongs to, see {@link VaultSync#keyOf(PasswordEntry)}.
+ * @param entry The entry of the account. Null for a removed account, and in the sync state, which only keeps hashes.
+ * @param removed True if the account was removed; the record is then kept as a tombstone.
+ * @param hash A hash of the entry, used to notice local changes without keeping the entry in the sync state.
+ * @param timestamp The wall clock time of the change, in milliseconds since the epoch.
+ * @param origin The id of the replica the change was made on.
+ * @param counter The counter of the origin replica for the change.
+ * @param version Every change the record reflects.
+ */
+public record SyncRecord(String key, PasswordEntry entry, boolean removed, long hash, long timestamp, String origin, long counter,
+                         VersionVector version) {
+
+    public boolean isTombstone() {
+        return removed;
+    }
+
+    /**
+     * Decides between two concurrent changes of the same account. Every replica picks the same winner: the later
+     * change, then the change of the greater origin id and counter, then the greater hash.
+     * @param other The concurrent change.
+     * @return True if this change wins.
+     */
+    public boolean wins(SyncRecord other) {
+        if (timestamp != other.timestamp) return timestamp > other.timestamp;
+        int byOrigin = origin.compareTo(other.origin);
+        if (byOrigin != 0) return byOrigin > 0;
+        if (counter != other.counter) return counter > other.counter;
+        return Long.compare(hash, other.hash) >= 0;
+    }
+}
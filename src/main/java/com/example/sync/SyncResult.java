@@ -0,0 +1,14 @@
+package com.example.sync;
+
+/**
+ * The outcome of one sync with a peer.
+ * @param recordsReceived The number of records received from peers.
+ * @param recordsApplied The number of received records which changed the vault.
+ * @param conflicts The number of received records which were concurrent with a local change.
+ * @param recordsSent The number of records sent to the peer.
+ * @param bytesReceived The size of the deltas received.
+ * @param bytesSent The size of the delta sent.
+ */
+public record SyncResult(int recordsReceived, int recordsApplied, int conflicts, int recordsSent,
+                         long bytesReceived, long bytesSent) {
+}
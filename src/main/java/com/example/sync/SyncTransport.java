@@ -0,0 +1,54 @@
+package com.example.sync;
+
+import java.io.IOException;
+
+/**
+ * Carries deltas and version summaries between vault replicas.
+ * <p>
+ * Transports are mailboxes: a delta sent to a replica waits until that replica syncs, so replicas never have to
+ * be online at the same time.
+ */
+public interface SyncTransport {
+
+    /**
+     * Publishes the version summary of a replica, which peers use to work out which changes it is missing.
+     * @param replicaId The replica.
+     * @param summary The encoded summary.
+     * @throws IOException If the summary could not be published.
+     */
+    void publishSummary(String replicaId, byte[] summary) throws IOException;
+
+    /**
+     * Returns the last summary published by a replica.
+     * @param replicaId The replica.
+     * @return The encoded summary, or null if the replica has never published one.
+     * @throws IOException If the summary could not be read.
+     */
+    byte[] fetchSummary(String replicaId) throws IOException;
+
+    /**
+     * Sends a delta to a replica.
+     * @param fromReplicaId The sending replica.
+     * @param toReplicaId The receiving replica.
+     * @param delta The encoded delta.
+     * @throws IOException If the delta could not be sent.
+     */
+    void send(String fromReplicaId, String toReplicaId, byte[] delta) throws IOException;
+
+    /**
+     * Hands every delta waiting for a replica to the handler. A delta is only discarded once the handler returned
+     * normally, so a failed sync receives it again.
+     * @param replicaId The receiving replica.
+     * @param handler Applies one delta.
+     * @return The number of bytes received.
+     * @throws IOException If a delta could not be read, or the handler failed.
+     */
+    long receive(String replicaId, DeltaHandler handler) throws IOException;
+
+    /**
+     * Applies a received delta.
+     */
+    interface DeltaHandler {
+        void apply(byte[] delta) throws IOException;
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.sync;
+
+import com.example.storage.AtomicVaultFile;
+import com.example.storage.PasswordEntry;
+import com.example.storage.SerializationPasswordStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps a vault in sync with replicas of it on other machines by exchanging only the accounts which changed.
+ * <p>
+ * Entries are identified by account (website and username), as in the import. Every account has a
+ * {@link SyncRecord} holding the version vector of its last change. Local changes are found on each sync by
+ * comparing a hash of every entry to the one recorded at the previous sync, so the vault itself needs no extra
+ * bookkeeping. Removed accounts are kept as tombstones, so removals propagate too.
+ * <p>
+ * Each replica publishes a summary, the highest counter it has seen from every replica. A replica sends a peer
+ * only the records whose change is newer than the peer's summary, so a one entry change transfers one record
+ * whatever the size of the vault. A record which is concurrent with the local one is resolved with
+ * {@link SyncRecord#wins}, which picks the same winner on every replica.
+ * <p>
+ * The sync state is kept as 'passwords.sync' next to the vault file. It holds hashes, not entries.
+ */
+public class VaultSync {
+
+    public static final String STATE_FILE_NAME = "passwords.sync";
+
+    private final SerializationPasswordStorage passwordStorage;
+    private final Path stateFile;
+    private final SyncTransport transport;
+    private final MessageDigest digest;
+    private final String replicaId;
+    private VersionVector summary;
+    private final Map<String, SyncRecord> records = new HashMap<>();
+
+    /**
+     * Opens the sync state of a vault, or starts a new replica if the vault has never been synced.
+     * @param passwordStorage The loaded vault.
+     * @param location The directory holding the vault file.
+     * @param transport The transport to the other replicas.
+     * @throws IOException If the sync state could not be read.
+     */
+    public VaultSync(SerializationPasswordStorage passwordStorage, String location, SyncTransport transport)
+            throws IOException {
+        this.passwordStorage = passwordStorage;
+        this.stateFile = Paths.get(location, STATE_FILE_NAME);
+        this.transport = transport;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        SyncCodec.State state = readState(stateFile);
+        if (state == null) {
+            replicaId = UUID.randomUUID().toString();
+            summary = VersionVector.EMPTY;
+        } else {
+            replicaId = state.replicaId();
+            summary = state.summary();
+            for (SyncRecord record : state.records()) records.put(record.key(), record);
+        }
+    }
+
+    /**
+     * Returns the id of this replica, which peers address it by.
+     * @return The replica id.
+     */
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    /**
+     * Syncs with a peer: records the local changes made since the last sync, applies the deltas peers have sent
+     * to this replica, then sends the peer the changes it has not seen. A peer which has never published a
+     * summary is sent every record.
+     * @param peerId The id of the peer replica.
+     * @return What was exchanged.
+     * @throws IOException If the transport failed or the sync state could not be written. Deltas which were not
+     *                     applied are received again on the next sync.
+     */
+    public synchronized SyncResult sync(String peerId) throws IOException {
+        Map<String, PasswordEntry> current = new HashMap<>();
+        for (PasswordEntry entry : passwordStorage.getPasswordEntries()) current.put(keyOf(entry), entry);
+        boolean changed = recordLocalChanges(current);
+
+        int[] received = new int[3];
+        long bytesReceived = transport.receive(replicaId, bytes -> {
+            // A delta holds one record per account, so new accounts can be added in a single batch.
+            List<PasswordEntry> added = new ArrayList<>();
+            for (SyncRecord remote : SyncCodec.decodeDelta(bytes).records()) {
+                received[0]++;
+                int outcome = merge(remote, current, added);
+                if (outcome > 0) received[1]++;
+                if (outcome == 2 || outcome == -2) received[2]++;
+            }
+            passwordStorage.addPasswordEntries(added);
+            // Persist after every delta, since the transport discards it once this returns.
+            writeState();
+        });
+        if (changed) writeState();
+        transport.publishSummary(replicaId, SyncCodec.encodeSummary(summary));
+
+        byte[] peerSummary = transport.fetchSummary(peerId);
+        VersionVector peerVersion = peerSummary == null ? VersionVector.EMPTY : SyncCodec.decodeSummary(peerSummary);
+        List<SyncRecord> delta = new ArrayList<>();
+        for (SyncRecord record : records.values()) {
+            if (record.counter() <= peerVersion.get(record.origin())) continue;
+            PasswordEntry entry = record.isTombstone() ? null : current.get(record.key());
+            if (!record.isTombstone() && entry == null) continue;
+            delta.add(new SyncRecord(record.key(), entry, record.removed(), record.hash(), record.timestamp(),
+                    record.origin(), record.counter(), record.version()));
+        }
+        long bytesSent = 0;
+        if (!delta.isEmpty()) {
+            byte[] encoded = SyncCodec.encodeDelta(replicaId, delta);
+            transport.send(replicaId, peerId, encoded);
+            bytesSent = encoded.length;
+        }
+        return new SyncResult(received[0], received[1], received[2], delta.size(), bytesReceived, bytesSent);
+    }
+
+    /**
+     * Returns the key identifying an entry across replicas.
+     * @param entry The entry.
+     * @return The account of the entry.
+     */
+    public static String keyOf(PasswordEntry entry) {
+        return entry.website() + '\u0000' + entry.username();
+    }
+
+    /**
+     * Gives every account whose entry differs from the previous sync a new version from this replica.
+     */
+    private boolean recordLocalChanges(Map<String, PasswordEntry> current) {
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        for (Map.Entry<String, PasswordEntry> account : current.entrySet()) {
+            SyncRecord previous = records.get(account.getKey());
+            long hash = hashOf(account.getValue());
+            if (previous != null && !previous.isTombstone() && previous.hash() == hash) continue;
+            recordLocalChange(account.getKey(), account.getValue(), hash, previous, now);
+            changed = true;
+        }
+        for (SyncRecord previous : new ArrayList<>(records.values())) {
+            if (previous.isTombstone() || current.containsKey(previous.key())) continue;
+            recordLocalChange(previous.key(), null, 0, previous, now);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void recordLocalChange(String key, PasswordEntry entry, long hash, SyncRecord previous, long now) {
+        long counter = summary.get(replicaId) + 1;
+        summary = summary.with(replicaId, counter);
+        VersionVector version = (previous == null ? VersionVector.EMPTY : previous.version()).with(replicaId, counter);
+        records.put(key, new SyncRecord(key, null, entry == null, hash, now, replicaId, counter, version));
+    }
+
+    /**
+     * Merges a record received from a peer.
+     * @return 1 if it was applied, 2 if it won a conflict, -2 if it lost one, 0 if it was already known.
+     */
+    private int merge(SyncRecord remote, Map<String, PasswordEntry> current, List<PasswordEntry> added) {
+        summary = summary.merge(remote.version());
+        SyncRecord local = records.get(remote.key());
+        int outcome = 1;
+        VersionVector version = remote.version();
+        if (local != null) {
+            switch (remote.version().compare(local.version())) {
+                case EQUAL, BEFORE -> {
+                    return 0;
+                }
+                case CONCURRENT -> {
+                    version = local.version().merge(remote.version());
+                    if (!remote.wins(local)) {
+                        records.put(local.key(), new SyncRecord(local.key(), null, local.removed(), local.hash(),
+                                local.timestamp(), local.origin(), local.counter(), version));
+                        return -2;
+                    }
+                    outcome = 2;
+                }
+                case AFTER -> {
+                }
+            }
+        }
+        apply(remote, current, added);
+        long hash = remote.isTombstone() ? 0 : hashOf(remote.entry());
+        records.put(remote.key(), new SyncRecord(remote.key(), null, remote.removed(), hash, remote.timestamp(),
+                remote.origin(), remote.counter(), version));
+        return outcome;
+    }
+
+    /**
+     * Applies a remote change to the vault, through the journal like any other change. Entries of new accounts
+     * are collected in added instead.
+     */
+    private void apply(SyncRecord remote, Map<String, PasswordEntry> current, List<PasswordEntry> added) {
+        PasswordEntry local = current.get(remote.key());
+        if (remote.isTombstone()) {
+            if (local == null) return;
+            for (PasswordEntry entry : passwordStorage.getPasswordEntries(local.website(), local.username())) {
+                passwordStorage.removePasswordEntry(entry);
+            }
+            current.remove(remote.key());
+            return;
+        }
+        PasswordEntry entry = remote.entry();
+        List<PasswordEntry> existing = passwordStorage.getPasswordEntries(entry.website(), entry.username());
+        if (existing.isEmpty()) {
+            added.add(entry);
+        } else if (!existing.contains(entry)) {
+            passwordStorage.editPasswordEntry(existing.get(0), entry);
+        }
+        current.put(remote.key(), entry);
+    }
+
+    private long hashOf(PasswordEntry entry) {
+        digest.reset();
+        for (String field : new String[]{entry.username(), entry.password(), entry.website(), entry.folder()}) {
+            if (field == null) {
+                digest.update((byte) 0);
+            } else {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                digest.update((byte) 1);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                digest.update(bytes);
+            }
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private void writeState() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new BufferedOutputStream(bytes)) {
+            SyncCodec.writeState(out, replicaId, summary, records.values());
+        }
+        AtomicVaultFile.write(stateFile, bytes.toByteArray(), 0);
+    }
+
+    private static SyncCodec.State readState(Path stateFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(stateFile))) {
+            return SyncCodec.readState(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.sync;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable version vector: the number of changes seen from each replica.
+ * <p>
+ * Replica ids are kept sorted in a plain array next to the counters, since a vault holds one vector per entry and
+ * most vectors only name one or two replicas.
+ */
+public final class VersionVector {
+
+    public static final VersionVector EMPTY = new VersionVector(new String[0], new long[0]);
+
+    /**
+     * How two vectors relate.
+     */
+    public enum Order {
+        EQUAL, BEFORE, AFTER, CONCURRENT
+    }
+
+    private final String[] replicas;
+    private final long[] counters;
+
+    private VersionVector(String[] replicas, long[] counters) {
+        this.replicas = replicas;
+        this.counters = counters;
+    }
+
+    /**
+     * Creates a vector from counters by replica id.
+     * @param counters The counters. Replicas with a counter of 0 are left out.
+     * @return The vector.
+     */
+    public static VersionVector of(Map<String, Long> counters) {
+        TreeMap<String, Long> sorted = new TreeMap<>(counters);
+        sorted.values().removeIf(counter -> counter <= 0);
+        String[] replicas = sorted.keySet().toArray(new String[0]);
+        long[] values = new long[replicas.length];
+        for (int i = 0; i < replicas.length; i++) values[i] = sorted.get(replicas[i]);
+        return new VersionVector(replicas, values);
+    }
+
+    /**
+     * Returns the counter of a replica.
+     * @param replica The replica id.
+     * @return The number of changes seen from the replica, 0 if none.
+     */
+    public long get(String replica) {
+        int index = Arrays.binarySearch(replicas, replica);
+        return index < 0 ? 0 : counters[index];
+    }
+
+    /**
+     * Returns a copy of this vector with the counter of one replica set.
+     * @param replica The replica id.
+     * @param counter The new counter, which should not be lower than the current one.
+     * @return The new vector.
+     */
+    public VersionVector with(String replica, long counter) {
+        int index = Arrays.binarySearch(replicas, replica);
+        if (index >= 0) {
+            long[] values = counters.clone();
+            values[index] = counter;
+            return new VersionVector(replicas, values);
+        }
+        int insert = -index - 1;
+        String[] newReplicas = new String[replicas.length + 1];
+        long[] newCounters = new long[counters.length + 1];
+        System.arraycopy(replicas, 0, newReplicas, 0, insert);
+        System.arraycopy(counters, 0, newCounters, 0, insert);
+        newReplicas[insert] = replica;
+        newCounters[insert] = counter;
+        System.arraycopy(replicas, insert, newReplicas, insert + 1, replicas.length - insert);
+        System.arraycopy(counters, insert, newCounters, insert + 1, counters.length - insert);
+        return new VersionVector(newReplicas, newCounters);
+    }
+
+    /**
+     * Returns the component-wise maximum of this vector and another.
+     * @param other The other vector.
+     * @return The merged vector.
+     */
+    public VersionVector merge(VersionVector other) {
+        VersionVector merged = this;
+        for (int i = 0; i < other.replicas.length; i++) {
+            if (other.counters[i] > merged.get(other.replicas[i])) merged = merged.with(other.replicas[i], other.counters[i]);
+        }
+        return merged;
+    }
+
+    /**
+     * Compares this vector to another.
+     * @param other The other vector.
+     * @return AFTER if this vector has seen every change the other has and more, BEFORE for the reverse, EQUAL or
+     *         CONCURRENT if each has seen changes the other has not.
+     */
+    public Order compare(VersionVector other) {
+        boolean ahead = false;
+        boolean behind = false;
+        for (int i = 0; i < replicas.length; i++) {
+            long theirs = other.get(replicas[i]);
+            if (counters[i] > theirs) ahead = true;
+            if (counters[i] < theirs) behind = true;
+        }
+        for (int i = 0; i < other.replicas.length; i++) {
+            if (get(other.replicas[i]) < other.counters[i]) behind = true;
+        }
+        if (ahead && behind) return Order.CONCURRENT;
+        if (ahead) return Order.AFTER;
+        return behind ? Order.BEFORE : Order.EQUAL;
+    }
+
+    /**
+     * Returns the counters by replica id.
+     * @return The counters, sorted by replica id.
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new TreeMap<>();
+        for (int i = 0; i < replicas.length; i++) map.put(replicas[i], counters[i]);
+        return map;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof VersionVector vector && Arrays.equals(replicas, vector.replicas)
+                && Arrays.equals(counters, vector.counters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(replicas) + Arrays.hashCode(counters);
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -1,9 +1,134 @@
 package com.example.utilities;
 
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
+/**
+ * Generates random passwords.
+ * <p>
+ * The static {@link #generatePassword} builds its character set on every call. For generating many passwords, create
+ * a generator once: its character tables are built in the constructor, every thread draws from its own
+ * SecureRandom, and passwords are returned as char arrays which can be wiped after use. Generators are immutable
+ * and can be shared between threads.
+ */
 public class PasswordGenerator {
 
+    private static final char[] ALPHA = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    private static final char[] NUMBERS = "0123456789".toCharArray();
+    private static final char[] SPECIAL_CHARACTERS = "!@#$%^&*()-_=+[{]};:'\\\",<.>/?".toCharArray();
+
+    // SecureRandom instances synchronize internally, so parallel batches would contend on a shared one.
+    private static final ThreadLocal<RandomIndexes> RANDOM = ThreadLocal.withInitial(RandomIndexes::new);
+
+    /**
+     * Draws random table indexes from a per-thread SecureRandom. Random bytes are fetched in blocks, since every
+     * SecureRandom call takes a lock. The DRBG generator (NIST SP 800-90A, seeded by the OS) is used where
+     * available, as it produces bytes about twice as fast as the default native generator.
+     */
+    private static final class RandomIndexes {
+        private static final int BLOCK_SIZE = 4096;
+
+        private final SecureRandom random = newSecureRandom();
+        private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE).position(BLOCK_SIZE);
+
+        /**
+         * Returns a random index in [0, bound) by scaling 32 random bits instead of rejecting out of range values.
+         * The probabilities differ by less than bound / 2^32 (below 10^-7 for our tables), far below anything
+         * measurable.
+         */
+        int nextIndex(int bound) {
+            if (!block.hasRemaining()) {
+                random.nextBytes(block.array());
+                block.clear();
+            }
+            return (int) ((Integer.toUnsignedLong(block.getInt()) * bound) >>> 32);
+        }
+
+        private static SecureRandom newSecureRandom() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+    }
+
+    private final char[][] classes;
+    private final char[] allCharacters;
+    private final int passwordLength;
+
+    /**
+     * Creates a generator for passwords which contain at least one character of every selected class.
+     *
+     * @param hasSpecialCharacters Whether to include special characters in the passwords.
+     * @param hasNumbers           Whether to include numbers in the passwords.
+     * @param hasAlpha             Whether to include alphabets in the passwords.
+     * @param passwordLength       The length of the passwords.
+     * @throws IllegalArgumentException If no class is selected, or the length cannot fit one character of each.
+     */
+    public PasswordGenerator(boolean hasSpecialCharacters, boolean hasNumbers, boolean hasAlpha, int passwordLength) {
+        List<char[]> selected = new ArrayList<>(3);
+        if (hasAlpha) selected.add(ALPHA);
+        if (hasNumbers) selected.add(NUMBERS);
+        if (hasSpecialCharacters) selected.add(SPECIAL_CHARACTERS);
+        if (selected.isEmpty()) throw new IllegalArgumentException("Valid Characters is Empty");
+        if (passwordLength < selected.size()) {
+            throw new IllegalArgumentException("Password length " + passwordLength + " cannot include all "
+                    + selected.size() + " character classes");
+        }
+        this.classes = selected.toArray(new char[0][]);
+        StringBuilder all = new StringBuilder();
+        for (char[] characterClass : classes) all.append(characterClass);
+        this.allCharacters = all.toString().toCharArray();
+        this.passwordLength = passwordLength;
+    }
+
+    /**
+     * Generates a password. The first characters are drawn one from each selected class and the rest from all of
+     * them, then the positions are shuffled. Every character and swap is drawn uniformly without rejection sampling,
+     * and no password is ever thrown away and redrawn.
+     *
+     * @return The password. Wipe it with {@link #wipe} once it has been used.
+     */
+    public char[] generate() {
+        RandomIndexes random = RANDOM.get();
+        char[] password = new char[passwordLength];
+        for (int i = 0; i < classes.length; i++) password[i] = classes[i][random.nextIndex(classes[i].length)];
+        for (int i = classes.length; i < passwordLength; i++) password[i] = allCharacters[random.nextIndex(allCharacters.length)];
+        for (int i = passwordLength - 1; i > 0; i--) {
+            int j = random.nextIndex(i + 1);
+            char swap = password[i];
+            password[i] = password[j];
+            password[j] = swap;
+        }
+        return password;
+    }
+
+    /**
+     * Generates many passwords in parallel, e.g. to provision service accounts.
+     *
+     * @param count The number of passwords to generate.
+     * @return The passwords. Wipe them with {@link #wipe} once they have been used.
+     */
+    public List<char[]> generateBatch(int count) {
+        if (count < 0) throw new IllegalArgumentException("count must not be negative");
+        return IntStream.range(0, count).parallel().mapToObj(i -> generate()).toList();
+    }
+
+    /**
+     * Overwrites a generated password in memory.
+     *
+     * @param password The password to wipe.
+     */
+    public static void wipe(char[] password) {
+        if (password != null) Arrays.fill(password, '\0');
+    }
+
     /**
      * Generates a random password based on the specified criteria.
      *
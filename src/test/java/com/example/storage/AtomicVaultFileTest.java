@@ -0,0 +1,113 @@
+package com.example.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class AtomicVaultFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Output stream which fails once a given number of bytes has been written, as if the process was killed or
+     * the disk filled up at that offset.
+     */
+    private static class FailingOutputStream extends FilterOutputStream {
+
+        private long remaining;
+
+        FailingOutputStream(OutputStream out, long failAfter) {
+            super(out);
+            this.remaining = failAfter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            int allowed = (int) Math.min(length, remaining);
+            out.write(bytes, offset, allowed);
+            remaining -= allowed;
+            if (allowed < length) throw new IOException("Injected failure");
+        }
+    }
+
+    private static List<PasswordEntry> entries(int count, String secret) {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) entries.add(new PasswordEntry("user" + i, secret + i, "site" + i + ".com", "Websites"));
+        return entries;
+    }
+
+    private static List<PasswordEntry> read(Path vaultFile) throws IOException {
+        List<PasswordEntry> entries = new ArrayList<>();
+        try (VaultReader reader = new VaultReader(Files.newInputStream(vaultFile))) {
+            PasswordEntry entry;
+            while ((entry = reader.next()) != null) entries.add(entry);
+        }
+        return entries;
+    }
+
+    @Test
+    public void testFailedWriteLeavesPreviousVaultLoadable() throws IOException {
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        List<PasswordEntry> committed = entries(500, "old");
+        AtomicVaultFile.write(vaultFile, committed, 2);
+        List<PasswordEntry> replacement = entries(800, "new");
+        ByteArrayOutputStream replacementBytes = new ByteArrayOutputStream();
+        try (VaultWriter writer = new VaultWriter(replacementBytes)) {
+            for (PasswordEntry entry : replacement) writer.write(entry);
+        }
+        long fullSize = replacementBytes.size();
+
+        Random random = new Random(42);
+        for (int attempt = 0; attempt < 200; attempt++) {
+            long failAfter = (long) (random.nextDouble() * fullSize);
+            Assertions.assertThrows(IOException.class, () -> AtomicVaultFile.write(vaultFile, replacement, 2,
+                    out -> new FailingOutputStream(out, failAfter)), "offset " + failAfter);
+
+            Assertions.assertEquals(committed, read(vaultFile), "vault damaged by failure at offset " + failAfter);
+            Assertions.assertFalse(Files.exists(tempDir.resolve(vaultFile.getFileName() + AtomicVaultFile.TEMP_SUFFIX)));
+        }
+
+        AtomicVaultFile.write(vaultFile, replacement, 2);
+        Assertions.assertEquals(replacement, read(vaultFile));
+    }
+
+    @Test
+    public void testLeftoverTempFileIsIgnored() throws IOException {
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        AtomicVaultFile.write(vaultFile, entries(10, "old"), 0);
+        // A process killed mid-save leaves a partial temporary file behind.
+        Files.write(tempDir.resolve(vaultFile.getFileName() + AtomicVaultFile.TEMP_SUFFIX), new byte[]{1, 2, 3});
+
+        Assertions.assertEquals(entries(10, "old"), read(vaultFile));
+        AtomicVaultFile.write(vaultFile, entries(5, "new"), 0);
+        Assertions.assertEquals(entries(5, "new"), read(vaultFile));
+    }
+
+    @Test
+    public void testBackupsRotate() throws IOException {
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        for (int version = 1; version <= 4; version++) AtomicVaultFile.write(vaultFile, entries(version, "v"), 2);
+
+        Assertions.assertEquals(entries(4, "v"), read(vaultFile));
+        Assertions.assertEquals(entries(3, "v"), read(AtomicVaultFile.backupFile(vaultFile, 1)));
+        Assertions.assertEquals(entries(2, "v"), read(AtomicVaultFile.backupFile(vaultFile, 2)));
+        Assertions.assertFalse(Files.exists(AtomicVaultFile.backupFile(vaultFile, 3)));
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.example.storage;
+
+import com.example.config.AppConfiguration;
+import com.example.config.ConfigurationFile;
+import com.example.config.ConfigurationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ConfigurationServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSettingsAreCachedAndDefaulted() throws IOException {
+        Path configFile = tempDir.resolve("config.json");
+        Files.writeString(configFile, "{\"fileLocation\": \"/vaults\", \"kdfIterations\": 300000, \"unknown\": true}");
+        ConfigurationService service = new ConfigurationService(configFile);
+        service.load();
+        AppConfiguration config = new AppConfiguration(service);
+
+        Files.delete(configFile);
+        Assertions.assertEquals("/vaults", config.getFileLocation());
+        Assertions.assertEquals(300_000, config.getKdfIterations());
+        Assertions.assertEquals(ConfigurationFile.DEFAULT_SAVE_COALESCE_WINDOW_MILLIS, config.getSaveCoalesceWindowMillis());
+        Assertions.assertEquals(ConfigurationFile.DEFAULT_REVEALED_CACHE_SIZE, config.getRevealedCacheSize());
+
+        service.update(service.get().withFileLocation("/elsewhere"));
+        Assertions.assertEquals("/elsewhere", config.getFileLocation());
+        Assertions.assertEquals(new ConfigurationFile("/elsewhere", 300_000, null, null, null, null, null, null),
+                new ConfigurationService(configFile).load());
+    }
+
+    @Test
+    public void testExternalChangesArePickedUp() throws Exception {
+        Path configFile = tempDir.resolve("config.json");
+        ConfigurationService service = new ConfigurationService(configFile);
+        service.update(new ConfigurationFile("/vaults"));
+        List<ConfigurationFile> changes = new CopyOnWriteArrayList<>();
+        service.addListener(changes::add);
+        service.startWatching();
+        try {
+            // Our own writes do not count as changes.
+            service.update(new ConfigurationFile("/vaults"));
+            Files.writeString(configFile, "{\"fileLocation\": \"/vaults\", \"revealedCacheSize\": 4}");
+
+            // The configuration is cached before the listeners are called, so wait for the listener.
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (changes.isEmpty()) {
+                if (System.currentTimeMillis() > deadline) Assertions.fail("change was not picked up");
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(4, service.get().revealedCacheSize());
+            Assertions.assertEquals(List.of(service.get()), changes);
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.storage;
+
+import com.example.security.EncryptionUtilities;
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class EntryEncryptionEngineTest {
+
+    private static EntryEncryptionEngine engine(String masterPassword) throws GeneralSecurityException {
+        KdfParameters parameters = KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS);
+        return EntryEncryptionEngine.unlock(masterPassword.toCharArray(), parameters);
+    }
+
+    @Test
+    public void testOnlyThePasswordIsEncrypted() throws GeneralSecurityException {
+        EntryEncryptionEngine engine = engine("master");
+        PasswordEntry entry = new PasswordEntry("user", "pässwörd €", "example.com", "Websites");
+
+        PasswordEntry encrypted = engine.encryptEntry(entry);
+
+        Assertions.assertTrue(EncryptionUtilities.isEncrypted(encrypted.password()));
+        Assertions.assertEquals(entry.website(), encrypted.website());
+        Assertions.assertNotEquals(encrypted, engine.encryptEntry(entry), "IVs must not repeat");
+        Assertions.assertSame(encrypted, engine.encryptEntry(encrypted));
+        Assertions.assertEquals(entry, engine.decryptEntry(encrypted));
+        Assertions.assertArrayEquals("pässwörd €".getBytes(StandardCharsets.UTF_8), engine.decryptSecret(encrypted.password()));
+    }
+
+    @Test
+    public void testWrongKeyAndTamperingAreDetected() throws GeneralSecurityException {
+        String token = engine("master").encryptEntry(new PasswordEntry("u", "secret", "w", null)).password();
+        EntryEncryptionEngine other = engine("other");
+        Assertions.assertThrows(GeneralSecurityException.class, () -> other.decryptSecret(token));
+
+        EntryEncryptionEngine engine = engine("master");
+        char[] chars = engine.encryptEntry(new PasswordEntry("u", "secret", "w", null)).password().toCharArray();
+        chars[20] = chars[20] == 'A' ? 'B' : 'A';
+        Assertions.assertThrows(GeneralSecurityException.class, () -> engine.decryptSecret(new String(chars)));
+        Assertions.assertThrows(GeneralSecurityException.class, () -> engine.decryptSecret("$gcm$not base64!"));
+    }
+
+    @Test
+    public void testConcurrentBulkEncryption() throws Exception {
+        EntryEncryptionEngine engine = engine("master");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    List<PasswordEntry> entries = new ArrayList<>();
+                    // Secrets of growing length make the per-thread buffers grow while in use.
+                    for (int i = 0; i < 2000; i++) entries.add(new PasswordEntry("u" + i, ("s" + thread).repeat(i % 300), "w", null));
+                    Assertions.assertEquals(entries, engine.decryptAll(engine.encryptAll(entries)));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
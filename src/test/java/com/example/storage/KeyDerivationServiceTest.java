@@ -0,0 +1,38 @@
+package com.example.storage;
+
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+import com.example.security.PasswordHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+
+public class KeyDerivationServiceTest {
+
+    @Test
+    public void testHashPasswordUsesTheDerivationService() throws Exception {
+        byte[] salt = PasswordHandler.generateSalt();
+        KdfParameters parameters = new KdfParameters(KeyDerivationService.DEFAULT_ALGORITHM, 10000,
+                KeyDerivationService.DEFAULT_KEY_LENGTH, salt);
+
+        String hash = PasswordHandler.hashPassword("master".toCharArray(), salt);
+
+        Assertions.assertEquals(hash, PasswordHandler.hashPassword("master".toCharArray(), parameters));
+        Assertions.assertArrayEquals(Base64.getDecoder().decode(hash),
+                KeyDerivationService.deriveKey("master".toCharArray(), parameters));
+        Assertions.assertNotEquals(hash, PasswordHandler.hashPassword("master".toCharArray(), PasswordHandler.generateSalt()));
+    }
+
+    @Test
+    public void testCalibrationScalesWithTheTargetLatency() {
+        int fast = KeyDerivationService.calibrate(Duration.ofMillis(1));
+        int slow = KeyDerivationService.calibrate(Duration.ofMillis(200));
+
+        Assertions.assertEquals(KeyDerivationService.MIN_ITERATIONS, fast);
+        Assertions.assertTrue(slow > fast, "calibrated " + slow);
+        Assertions.assertEquals(0, slow % 1000);
+    }
+
+}
@@ -0,0 +1,260 @@
+package com.example.storage;
+
+import com.example.additionalfuc.EncryptedArchive;
+import com.example.additionalfuc.ExportResult;
+import com.example.additionalfuc.ImportResult;
+import com.example.additionalfuc.PasswordExportImport;
+import com.example.interfaces.ExportCallback;
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.KeyDerivationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PasswordExportImportTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCsvImportHandlesQuotingDuplicatesAndRejections() throws IOException {
+        Path file = tempDir.resolve("export.csv");
+        Files.writeString(file, "name,url,username,password,grouping\r\n"
+                + "Mail,mail.com,alice,\"pa,ss\",Email Accounts\r\n"
+                + "Shop,shop.com,bob,\"say \"\"hi\"\"\nnext line\",\r\n"
+                + "Shop again,shop.com,bob,other,\r\n"
+                + "Existing,bank.com,carol,secret,Websites\r\n"
+                + "No password,site.com,dave,,\r\n"
+                + "Broken,row\r\n");
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(List.of(new PasswordEntry("carol", "secret", "bank.com", "Websites")));
+
+        ImportResult result = new PasswordExportImport(storage, null).importEntries(file, PasswordExportImport.Format.CSV);
+
+        Assertions.assertEquals(6, result.rowsRead());
+        Assertions.assertEquals(2, result.imported());
+        Assertions.assertEquals(2, result.duplicates());
+        Assertions.assertEquals(2, result.rejected());
+        Assertions.assertEquals(List.of("line 7: no password", "line 8: expected 5 columns but found 2"), result.rejections());
+        Assertions.assertEquals(List.of(new PasswordEntry("alice", "pa,ss", "mail.com", "Email Accounts")),
+                storage.getPasswordEntries("mail.com", "alice"));
+        Assertions.assertEquals(List.of(new PasswordEntry("bob", "say \"hi\"\nnext line", "shop.com", null)),
+                storage.getPasswordEntries("shop.com", "bob"));
+    }
+
+    @Test
+    public void testJsonImportReadsNestedLoginItems() throws IOException {
+        Path file = tempDir.resolve("export.json");
+        Files.writeString(file, "{\"encrypted\": false, \"folders\": [{\"id\": \"1\"}], \"items\": ["
+                + "{\"name\": \"Mail\", \"folder\": \"Email Accounts\", \"login\": {\"uris\": [{\"uri\": \"mail.com\"}],"
+                + " \"username\": \"alice\", \"password\": \"one\"}},"
+                + "{\"website\": \"shop.com\", \"username\": \"bob\", \"password\": \"two\", \"notes\": {\"a\": [1, 2]}},"
+                + "{\"name\": \"Note\", \"login\": null}]}");
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+
+        ImportResult result = new PasswordExportImport(storage, null).importEntries(file, PasswordExportImport.formatOf(file));
+
+        Assertions.assertEquals(3, result.rowsRead());
+        Assertions.assertEquals(2, result.imported());
+        Assertions.assertEquals(List.of("item 3: no password"), result.rejections());
+        Assertions.assertEquals(List.of(new PasswordEntry("alice", "one", "mail.com", "Email Accounts"),
+                new PasswordEntry("bob", "two", "shop.com", null)), storage.getPasswordEntries());
+    }
+
+    @Test
+    public void testLargeCsvImportIsStreamedInBatches() throws IOException {
+        Path file = tempDir.resolve("large.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("url,username,password\n");
+            for (int i = 0; i < 200_000; i++) writer.write("site" + i + ".com,user" + i + ",secret" + i + "\n");
+        }
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+
+        ImportResult result = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> new PasswordExportImport(storage, null).importEntries(file, PasswordExportImport.Format.CSV));
+
+        Assertions.assertEquals(200_000, result.imported());
+        Assertions.assertEquals(200_000, storage.size());
+        Assertions.assertTrue(result.rowsPerSecond() > 0);
+    }
+
+    @Test
+    public void testFailedBatchStopsTheProducer() throws IOException {
+        Path file = tempDir.resolve("large.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("url,username,password\n");
+            for (int i = 0; i < 50_000; i++) writer.write("site" + i + ".com,user" + i + ",secret" + i + "\n");
+        }
+        SerializationPasswordStorage storage = new SerializationPasswordStorage() {
+            @Override
+            public synchronized int addPasswordEntries(Collection<PasswordEntry> entries) {
+                throw new UncheckedIOException(new IOException("journal failed"));
+            }
+        };
+
+        Assertions.assertThrows(UncheckedIOException.class,
+                () -> new PasswordExportImport(storage, null).importEntries(file, PasswordExportImport.Format.CSV));
+
+        // The producer has been joined, so it no longer holds the file.
+        Assertions.assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().equals("password-import")));
+    }
+
+    private static SerializationPasswordStorage sampleStorage(int count) {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String folder = switch (i % 3) {
+                case 0 -> "Work";
+                case 1 -> "Work/Servers";
+                default -> null;
+            };
+            entries.add(new PasswordEntry("user" + i, "p\"a,ss\n" + i, "site" + i + ".com", folder));
+        }
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(entries);
+        return storage;
+    }
+
+    @Test
+    public void testExportedFoldersImportAgainAndMatchTheirChecksum() throws IOException {
+        SerializationPasswordStorage storage = sampleStorage(300);
+        PasswordExportImport exporter = new PasswordExportImport(storage, null);
+
+        for (PasswordExportImport.Format format : PasswordExportImport.Format.values()) {
+            Path file = tempDir.resolve("work." + format.name().toLowerCase());
+            ExportResult result = exporter.exportFile(file, format, List.of("Work"));
+
+            Assertions.assertEquals(200, result.entriesExported());
+            Assertions.assertEquals(Files.size(file), result.bytesWritten());
+            Assertions.assertTrue(PasswordExportImport.verifyChecksum(file));
+            SerializationPasswordStorage imported = new SerializationPasswordStorage();
+            Assertions.assertEquals(200, new PasswordExportImport(imported, null).importEntries(file, format).imported());
+            Assertions.assertEquals(storage.getPasswordEntriesInFolder("Work/Servers"),
+                    imported.getPasswordEntriesInFolder("Work/Servers"));
+
+            byte[] content = Files.readAllBytes(file);
+            content[content.length / 2] ^= 1;
+            Files.write(file, content);
+            Assertions.assertFalse(PasswordExportImport.verifyChecksum(file));
+        }
+    }
+
+    @Test
+    public void testEncryptedArchiveRoundTrip() throws IOException {
+        // Large enough for the archive to span several chunks.
+        SerializationPasswordStorage storage = sampleStorage(5000);
+        Path file = tempDir.resolve("vault.archive");
+
+        ExportResult result = new PasswordExportImport(storage, null).exportEncrypted(file,
+                PasswordExportImport.Format.JSON, null, "archive passphrase".toCharArray());
+
+        Assertions.assertEquals(5000, result.entriesExported());
+        Assertions.assertFalse(Files.readString(file, StandardCharsets.ISO_8859_1).contains("site1.com"));
+        SerializationPasswordStorage imported = new SerializationPasswordStorage();
+        Assertions.assertThrows(IOException.class, () -> new PasswordExportImport(imported, null)
+                .importEncrypted(file, PasswordExportImport.Format.JSON, "wrong".toCharArray()));
+        new PasswordExportImport(imported, null).importEncrypted(file, PasswordExportImport.Format.JSON,
+                "archive passphrase".toCharArray());
+        Assertions.assertEquals(storage.getPasswordEntries(), imported.getPasswordEntries());
+    }
+
+    @Test
+    public void testUntrustedArchivesAndVaultCiphertextAreRejected() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(archive);
+        header.writeInt(EncryptedArchive.MAGIC);
+        header.writeShort(EncryptedArchive.VERSION);
+        header.writeUTF("PBKDF2WithHmacSHA256");
+        header.writeInt(Integer.MAX_VALUE);
+        header.writeInt(256);
+        header.writeShort(16);
+        header.write(new byte[16 + 8]);
+        Path file = tempDir.resolve("crafted.csv.enc");
+        Files.write(file, archive.toByteArray());
+        PasswordExportImport importer = new PasswordExportImport(new SerializationPasswordStorage(), null);
+
+        // Rejected from the header, without running the KDF.
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> Assertions.assertThrows(IOException.class,
+                () -> importer.importEncrypted(file, PasswordExportImport.Format.CSV, "passphrase".toCharArray())));
+
+        EntryEncryptionEngine engine = EntryEncryptionEngine.unlock("master".toCharArray(),
+                KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS));
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(List.of(engine.encryptEntry(new PasswordEntry("a", "secret", "mail.com", null))));
+        Path export = tempDir.resolve("export.csv");
+        Assertions.assertThrows(IOException.class,
+                () -> new PasswordExportImport(storage, null).exportFile(export, PasswordExportImport.Format.CSV, null));
+        Assertions.assertFalse(Files.exists(export));
+        new PasswordExportImport(storage, engine).exportFile(export, PasswordExportImport.Format.CSV, null);
+        Assertions.assertTrue(Files.readString(export).contains("secret"));
+    }
+
+    @Test
+    public void testAsyncExportCanBeCancelled() throws Exception {
+        SerializationPasswordStorage storage = sampleStorage(10_000);
+        Path file = tempDir.resolve("export.csv");
+        CountDownLatch firstProgress = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<ExportResult> export = new PasswordExportImport(storage, null).exportAsync(file,
+                PasswordExportImport.Format.CSV, null, null, new ExportCallback() {
+                    @Override
+                    public void onExportSuccess(ExportResult result) {
+                        events.add("success");
+                    }
+
+                    @Override
+                    public void onExportError(String errorMessage) {
+                        events.add("error");
+                    }
+
+                    @Override
+                    public void onExportProgress(long entriesExported, long totalEntries) {
+                        firstProgress.countDown();
+                        try {
+                            resume.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    @Override
+                    public void onExportCancelled() {
+                        events.add("cancelled");
+                    }
+                });
+
+        Assertions.assertTrue(firstProgress.await(10, TimeUnit.SECONDS));
+        export.cancel(false);
+        resume.countDown();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (events.isEmpty()) {
+            if (System.currentTimeMillis() > deadline) Assertions.fail("export did not stop");
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(List.of("cancelled"), events);
+        Assertions.assertFalse(Files.exists(file));
+        try (var files = Files.list(tempDir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+}
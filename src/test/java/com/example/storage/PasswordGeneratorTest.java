@@ -4,6 +4,10 @@ import com.example.utilities.PasswordGenerator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class PasswordGeneratorTest {
 
     @Test
@@ -114,4 +118,31 @@ public class PasswordGeneratorTest {
                 false, false, 6));
     }
 
+    @Test
+    public void testGeneratorIncludesEverySelectedClass() {
+        PasswordGenerator generator = new PasswordGenerator(true, true, true, 3);
+        for (int i = 0; i < 1000; i++) {
+            String password = new String(generator.generate());
+            Assertions.assertTrue(password.matches(".*[a-zA-Z].*"), password);
+            Assertions.assertTrue(password.matches(".*[0-9].*"), password);
+            Assertions.assertTrue(password.matches(".*[^a-zA-Z0-9].*"), password);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PasswordGenerator(true, true, true, 2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PasswordGenerator(false, false, false, 8));
+    }
+
+    @Test
+    public void testBatchGeneratesDistinctWipeablePasswords() {
+        List<char[]> passwords = new PasswordGenerator(false, true, true, 16).generateBatch(5000);
+
+        Set<String> distinct = new HashSet<>();
+        for (char[] password : passwords) {
+            Assertions.assertEquals(16, password.length);
+            distinct.add(new String(password));
+            PasswordGenerator.wipe(password);
+            Assertions.assertArrayEquals(new char[16], password);
+        }
+        Assertions.assertEquals(5000, distinct.size());
+    }
+
 }
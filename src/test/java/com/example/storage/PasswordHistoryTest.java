@@ -0,0 +1,145 @@
+package com.example.storage;
+
+import com.example.interfaces.PasswordLoadCallback;
+import com.example.interfaces.PasswordSaveCallback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class PasswordHistoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final PasswordSaveCallback FAIL_ON_ERROR = new PasswordSaveCallback() {
+        @Override
+        public void onPasswordSaveSuccess() {
+        }
+
+        @Override
+        public void onPasswordSaveError(String errorMessage) {
+            Assertions.fail(errorMessage);
+        }
+
+        @Override
+        public void onAddPasswordEntrySuccess() {
+        }
+
+        @Override
+        public void onAddPasswordEntryError(String error) {
+            Assertions.fail(error);
+        }
+    };
+
+    private static PasswordEntry entry(int i) {
+        return new PasswordEntry("user" + i, "secret" + i, "site" + i + ".com", "Websites");
+    }
+
+    private SerializationPasswordStorage load() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.loadPasswords(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+        }, tempDir.toString());
+        return storage;
+    }
+
+    @Test
+    public void testUpdateKeepsIdPositionAndBoundedHistory() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(List.of(entry(1), entry(2), entry(3)));
+        long id = storage.getEntryId(entry(2));
+
+        for (int i = 0; i < 15; i++) {
+            storage.updatePasswordEntry(id, new PasswordEntry("user2", "rotated" + i, "site2.com", "Websites"));
+        }
+
+        PasswordEntry current = new PasswordEntry("user2", "rotated14", "site2.com", "Websites");
+        Assertions.assertEquals(current, storage.getPasswordEntry(id));
+        Assertions.assertEquals(List.of(entry(1), current, entry(3)), storage.getPasswordEntries());
+        List<PasswordHistory.Version> history = storage.getPasswordHistory(id);
+        Assertions.assertEquals(PasswordHistory.MAX_VERSIONS, history.size());
+        Assertions.assertEquals("rotated13", history.get(0).password());
+        Assertions.assertEquals("rotated4", history.get(PasswordHistory.MAX_VERSIONS - 1).password());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> storage.updatePasswordEntry(id, entry(1)));
+        Assertions.assertNull(storage.getEntryId(entry(2)));
+    }
+
+    @Test
+    public void testUpdateOnlyWritesTheChange() throws IOException {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(List.of(entry(1), entry(2)));
+        storage.savePasswords(FAIL_ON_ERROR, tempDir.toString());
+        byte[] snapshot = Files.readAllBytes(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME));
+
+        long id = storage.getEntryId(entry(1));
+        PasswordEntry renamed = new PasswordEntry("user1", "changed", "renamed.com", "Websites");
+        storage.updatePasswordEntry(id, renamed);
+        storage.close();
+
+        Assertions.assertArrayEquals(snapshot, Files.readAllBytes(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME)));
+        SerializationPasswordStorage reloaded = load();
+        Assertions.assertEquals(List.of(renamed, entry(2)), reloaded.getPasswordEntries());
+        // The history follows the entry to its new account.
+        List<PasswordHistory.Version> history = reloaded.getPasswordHistory(reloaded.getEntryId(renamed));
+        Assertions.assertEquals(List.of("secret1"), history.stream().map(PasswordHistory.Version::password).toList());
+        reloaded.close();
+    }
+
+    @Test
+    public void testHistoryFailureDoesNotLoseTheUpdate() throws IOException {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(List.of(entry(1)));
+        storage.savePasswords(FAIL_ON_ERROR, tempDir.toString());
+        long id = storage.getEntryId(entry(1));
+        // A record with a negative length makes every read of the history fail.
+        Path historyFile = tempDir.resolve(PasswordHistory.HISTORY_FILE_NAME);
+        Files.write(historyFile, new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xfb},
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        PasswordEntry moved = new PasswordEntry("user1", "changed", "moved.com", "Websites");
+        storage.updatePasswordEntry(id, moved);
+
+        Assertions.assertEquals(moved, storage.getPasswordEntry(id));
+        Assertions.assertEquals(id, storage.getEntryId(moved));
+        Assertions.assertNull(storage.getEntryId(entry(1)));
+        storage.close();
+        // The journal holds the same update as memory.
+        Files.delete(historyFile);
+        SerializationPasswordStorage reloaded = load();
+        Assertions.assertEquals(List.of(moved), reloaded.getPasswordEntries());
+        reloaded.close();
+    }
+
+    @Test
+    public void testFrequentRotationsKeepTheHistoryFileBounded() throws IOException {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(List.of(entry(1)));
+        storage.savePasswords(FAIL_ON_ERROR, tempDir.toString());
+        long id = storage.getEntryId(entry(1));
+        String padding = "x".repeat(200);
+
+        for (int i = 0; i < 5_000; i++) {
+            storage.updatePasswordEntry(id, new PasswordEntry("user1", padding + i, "site1.com", "Websites"));
+        }
+
+        // Without compaction the file would hold all 5000 versions, more than a megabyte.
+        Assertions.assertTrue(Files.size(tempDir.resolve(PasswordHistory.HISTORY_FILE_NAME)) < 256 * 1024);
+        Assertions.assertEquals(padding + 4998, storage.getPasswordHistory(id).get(0).password());
+        Assertions.assertEquals(PasswordHistory.MAX_VERSIONS, storage.getPasswordHistory(id).size());
+        storage.close();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class PasswordSearchIndexTest {
+
+    private static final PasswordEntry GITHUB = new PasswordEntry("octocat", "secret", "GitHub.com", "Websites");
+    private static final PasswordEntry GITLAB = new PasswordEntry("tanuki", "secret", "gitlab.com", "Websites");
+    private static final PasswordEntry GMAIL = new PasswordEntry("me@gmail.com", "secret", "mail.google.com", "Email Accounts");
+
+    private static PasswordSearchIndex index() {
+        PasswordSearchIndex index = new PasswordSearchIndex();
+        index.add(GITHUB);
+        index.add(GITLAB);
+        index.add(GMAIL);
+        return index;
+    }
+
+    @Test
+    public void testPrefixMatchesValuesAndTokens() {
+        PasswordSearchIndex index = index();
+        Assertions.assertEquals(List.of(GITHUB, GITLAB), index.searchPrefix("Git", 10));
+        Assertions.assertEquals(List.of(GMAIL), index.searchPrefix("goog", 10));
+        Assertions.assertEquals(List.of(GMAIL), index.searchPrefix("email", 10));
+        Assertions.assertEquals(1, index.searchPrefix("git", 1).size());
+    }
+
+    @Test
+    public void testSubstringMatches() {
+        PasswordSearchIndex index = index();
+        Assertions.assertEquals(List.of(GITLAB), index.searchSubstring("tlab", 10));
+        Assertions.assertEquals(List.of(GMAIL), index.searchSubstring("@", 10));
+        Assertions.assertEquals(List.of(), index.searchSubstring("bitbucket", 10));
+    }
+
+    @Test
+    public void testFuzzyMatchesTypos() {
+        PasswordSearchIndex index = index();
+        Assertions.assertEquals(List.of(GITHUB), index.searchFuzzy("githbu", 2, 10));
+        Assertions.assertEquals(List.of(GITHUB), index.searchFuzzy("octocta", 2, 10));
+        Assertions.assertEquals(List.of(), index.searchFuzzy("octocta", 1, 10));
+        Assertions.assertEquals(List.of(GITHUB), index.search("octocst", 10));
+    }
+
+    @Test
+    public void testFuzzyMatchesTyposOfShortTerms() {
+        PasswordEntry bank = new PasswordEntry("me", "secret", "bank", "Finance");
+        PasswordEntry login = new PasswordEntry("me", "secret", "login.paypal.com", "Finance");
+        PasswordEntry git = new PasswordEntry("me", "secret", "git.io", "Code");
+        PasswordSearchIndex index = index();
+        index.add(bank);
+        index.add(login);
+        index.add(git);
+
+        // Substitutions and deletions which leave no trigram in common with the term.
+        Assertions.assertEquals(List.of(bank), index.searchFuzzy("bamk", 1, 10));
+        Assertions.assertEquals(List.of(bank), index.searchFuzzy("bnk", 1, 10));
+        Assertions.assertEquals(List.of(git), index.searchFuzzy("gut", 1, 10));
+        Assertions.assertEquals(List.of(git), index.searchFuzzy("gt", 1, 10));
+        Assertions.assertEquals(List.of(login), index.searchFuzzy("logon", 1, 10));
+        Assertions.assertEquals(List.of(login), index.searchFuzzy("lgin", 1, 10));
+        Assertions.assertEquals(List.of(bank), index.search("bnk", 10));
+        Assertions.assertEquals(List.of(), index.searchFuzzy("bunt", 1, 10));
+
+        index.remove(bank);
+        Assertions.assertEquals(List.of(), index.searchFuzzy("bamk", 1, 10));
+    }
+
+    @Test
+    public void testRemovedEntriesAreNotFound() {
+        PasswordSearchIndex index = index();
+        index.remove(GITHUB);
+        Assertions.assertEquals(List.of(GITLAB), index.searchPrefix("git", 10));
+        Assertions.assertEquals(List.of(), index.searchSubstring("hub", 10));
+        Assertions.assertEquals(List.of(), index.searchFuzzy("octocat", 1, 10));
+    }
+
+    @Test
+    public void testStorageKeepsIndexUpToDate() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(List.of(GITHUB, GITLAB));
+        PasswordEntry renamed = new PasswordEntry("octocat", "secret", "github.io", "Websites");
+        storage.editPasswordEntry(GITHUB, renamed);
+
+        Assertions.assertEquals(List.of(renamed), storage.searchPasswordEntries("github", 10));
+        Assertions.assertEquals(List.of(), storage.searchPasswordEntries("github.com", 10));
+    }
+
+}
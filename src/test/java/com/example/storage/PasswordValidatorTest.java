@@ -0,0 +1,104 @@
+package com.example.storage;
+
+import com.example.additionalfuc.*;
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.KeyDerivationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class PasswordValidatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testPatternsLowerTheEstimate() {
+        PasswordStrength weak = PasswordValidator.evaluate("P@ssw0rd1990".toCharArray());
+        Assertions.assertEquals(List.of("common word", "year"), weak.weaknesses());
+        Assertions.assertEquals(PasswordStrength.Score.VERY_WEAK, weak.score());
+
+        Assertions.assertEquals(List.of("keyboard pattern", "sequence"),
+                PasswordValidator.evaluate("zxcvbnm,abcdefgh".toCharArray()).weaknesses());
+        Assertions.assertEquals(List.of("too short", "repeated characters"),
+                PasswordValidator.evaluate("zzzzzz".toCharArray()).weaknesses());
+
+        PasswordStrength strong = PasswordValidator.evaluate("r7#Kq2!vX9@pLm4$".toCharArray());
+        Assertions.assertEquals(List.of(), strong.weaknesses());
+        Assertions.assertEquals(PasswordStrength.Score.VERY_STRONG, strong.score());
+    }
+
+    @Test
+    public void testBreachListLookups() throws IOException {
+        Path text = tempDir.resolve("pwned.txt");
+        List<String> breached = List.of("123456", "password", "hunter2", "correct horse battery staple");
+        try (Stream<String> hashes = breached.stream()
+                .map(password -> HexFormat.of().withUpperCase().formatHex(BreachedPasswordList.sha1(password.getBytes(StandardCharsets.UTF_8))))
+                .sorted()) {
+            Files.write(text, hashes.map(hash -> hash + ":42").toList());
+        }
+        Path binary = tempDir.resolve("pwned.bin");
+        Assertions.assertEquals(4, BreachedPasswordList.convert(text, binary));
+
+        try (BreachedPasswordList list = BreachedPasswordList.open(binary)) {
+            for (String password : breached) {
+                Assertions.assertTrue(list.contains(BreachedPasswordList.sha1(password.getBytes(StandardCharsets.UTF_8))));
+            }
+            Assertions.assertFalse(list.contains(BreachedPasswordList.sha1("r7#Kq2!vX9@pLm4$".getBytes(StandardCharsets.UTF_8))));
+        }
+
+        Files.write(text, List.of("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", "0000000000000000000000000000000000000000"));
+        Assertions.assertThrows(IOException.class, () -> BreachedPasswordList.convert(text, tempDir.resolve("unsorted.bin")));
+    }
+
+    @Test
+    public void testAuditFlagsReuseAndOnlyReanalysesChangedEntries() throws Exception {
+        EntryEncryptionEngine engine = EntryEncryptionEngine.unlock("master".toCharArray(),
+                KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS));
+        Path text = tempDir.resolve("pwned.txt");
+        Files.writeString(text, HexFormat.of().formatHex(BreachedPasswordList.sha1("hunter2".getBytes(StandardCharsets.UTF_8))));
+        Path binary = tempDir.resolve("pwned.bin");
+        BreachedPasswordList.convert(text, binary);
+
+        PasswordEntry mail = engine.encryptEntry(new PasswordEntry("a", "Tr0ub4dor&3-horse", "mail.com", null));
+        PasswordEntry bank = engine.encryptEntry(new PasswordEntry("b", "Tr0ub4dor&3-horse", "bank.com", null));
+        PasswordEntry shop = new PasswordEntry("c", "hunter2", "shop.com", null);
+        try (BreachedPasswordList list = BreachedPasswordList.open(binary)) {
+            PasswordValidator validator = new PasswordValidator(engine, list);
+
+            AuditReport first = validator.audit(List.of(mail, bank, shop));
+            Assertions.assertEquals(3, first.analysed());
+            Assertions.assertEquals(List.of(1, 1, 0), first.entries().stream().map(EntryAudit::reuseCount).toList());
+            Assertions.assertEquals(List.of(false, false, true), first.entries().stream().map(EntryAudit::breached).toList());
+
+            PasswordEntry newBank = engine.encryptEntry(new PasswordEntry("b", "an0ther-Long-passphrase!", "bank.com", null));
+            AuditReport second = validator.audit(List.of(mail, newBank, shop));
+            Assertions.assertEquals(1, second.analysed());
+            Assertions.assertEquals(0, second.reusedCount());
+            Assertions.assertEquals(List.of(shop), second.atRisk().stream().map(EntryAudit::entry).toList());
+
+            Assertions.assertThrows(java.security.GeneralSecurityException.class,
+                    () -> new PasswordValidator(null, list).audit(List.of(mail)));
+        }
+    }
+
+    @Test
+    public void testEntriesWithoutPasswordAreNotReused() throws Exception {
+        PasswordEntry noPassword = new PasswordEntry("a", null, "mail.com", null);
+        PasswordEntry emptyPassword = new PasswordEntry("b", "", "bank.com", null);
+        PasswordEntry otherEmpty = new PasswordEntry("c", "", "shop.com", null);
+
+        AuditReport report = new PasswordValidator(null, null).audit(List.of(noPassword, emptyPassword, otherEmpty));
+
+        Assertions.assertEquals(List.of(0, 0, 0), report.entries().stream().map(EntryAudit::reuseCount).toList());
+        Assertions.assertEquals(0, report.reusedCount());
+    }
+}
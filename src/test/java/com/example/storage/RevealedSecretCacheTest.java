@@ -0,0 +1,88 @@
+package com.example.storage;
+
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+import com.example.security.RevealedSecretCache;
+import com.example.security.SecurityManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RevealedSecretCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedSecretIsEvictedAndZeroed() {
+        RevealedSecretCache cache = new RevealedSecretCache(2, Duration.ofMinutes(1));
+        char[] first = "first".toCharArray();
+        cache.put("a", first);
+        cache.put("b", "second".toCharArray());
+        Assertions.assertArrayEquals(first, cache.get("a"));
+
+        cache.put("c", "third".toCharArray());
+
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertArrayEquals("first".toCharArray(), cache.get("a"));
+        Assertions.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testSecretsExpire() {
+        AtomicLong now = new AtomicLong();
+        RevealedSecretCache cache = new RevealedSecretCache(10, Duration.ofSeconds(30), now::get);
+        cache.put("a", "secret".toCharArray());
+
+        now.addAndGet(Duration.ofSeconds(29).toNanos());
+        Assertions.assertNotNull(cache.get("a"));
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRevealDecryptsOnDemandUntilLocked() throws Exception {
+        KdfParameters parameters = KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS);
+        PasswordEntry entry = EntryEncryptionEngine.unlock("master".toCharArray(), parameters)
+                .encryptEntry(new PasswordEntry("user", "hunter2", "example.com", "Websites"));
+        RevealedSecretCache cache = new RevealedSecretCache(4, Duration.ofMinutes(1));
+        SecurityManager securityManager = new SecurityManager(cache);
+        securityManager.unlock("master".toCharArray(), parameters);
+
+        Assertions.assertArrayEquals("hunter2".toCharArray(), securityManager.revealPassword(entry));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertArrayEquals("hunter2".toCharArray(), securityManager.revealPassword(entry));
+
+        securityManager.lock();
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertThrows(IllegalStateException.class, () -> securityManager.revealPassword(entry));
+        Assertions.assertArrayEquals("legacy".toCharArray(),
+                securityManager.revealPassword(new PasswordEntry("u", "legacy", "w", null)));
+    }
+
+    @Test
+    public void testUnlockAndRekeyForgetRevealedSecrets() throws Exception {
+        KdfParameters parameters = KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS);
+        EntryEncryptionEngine engine = EntryEncryptionEngine.unlock("master".toCharArray(), parameters);
+        PasswordEntry entry = engine.encryptEntry(new PasswordEntry("user", "hunter2", "example.com", "Websites"));
+        RevealedSecretCache cache = new RevealedSecretCache(4, Duration.ofMinutes(1));
+        SecurityManager securityManager = new SecurityManager(cache);
+        securityManager.unlock("master".toCharArray(), parameters);
+        securityManager.revealPassword(entry);
+        Assertions.assertEquals(1, cache.size());
+
+        // Unlocking with another key, e.g. of another vault, forgets what the previous session revealed.
+        securityManager.unlock("other".toCharArray(), parameters);
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertThrows(GeneralSecurityException.class, () -> securityManager.revealPassword(entry));
+
+        securityManager.rekey(engine.getVaultKey());
+        Assertions.assertArrayEquals("hunter2".toCharArray(), securityManager.revealPassword(entry));
+        Assertions.assertEquals(1, cache.size());
+        securityManager.rekey(EntryEncryptionEngine.unlock("new".toCharArray(), parameters).getVaultKey());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+}
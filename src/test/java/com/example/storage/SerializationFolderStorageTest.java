@@ -0,0 +1,146 @@
+package com.example.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SerializationFolderStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> names(List<Folder> folders) {
+        return folders.stream().map(Folder::folderName).toList();
+    }
+
+    @Test
+    public void testNestedFoldersCreateParentsAndMoveTogether() {
+        SerializationFolderStorage storage = new SerializationFolderStorage();
+        Assertions.assertTrue(storage.addFolder("Work/Servers/Prod"));
+        Assertions.assertFalse(storage.addFolder("Work/Servers"));
+        Assertions.assertEquals(List.of("Work/Servers"), names(storage.getSubfolders("Work")));
+
+        Assertions.assertEquals(Map.of("Work", "Job", "Work/Servers", "Job/Servers", "Work/Servers/Prod", "Job/Servers/Prod"),
+                storage.renameFolder("Work", "Job"));
+        Assertions.assertFalse(storage.folderExists("Work/Servers"));
+        Assertions.assertTrue(storage.folderExists("Job/Servers/Prod"));
+        Assertions.assertEquals(Map.of(), storage.renameFolder("Job", "Websites"));
+        Assertions.assertEquals(Map.of(), storage.renameFolder("Job", "Job/Inner"));
+
+        Assertions.assertEquals(List.of("Job/Servers", "Job/Servers/Prod"), names(storage.deleteFolder("Job/Servers")));
+        Assertions.assertEquals(List.of("Applications", "Email Accounts", "Job", "Websites"), names(storage.getFolders()));
+    }
+
+    @Test
+    public void testRenameReportsTheParentsItCreated() {
+        SerializationFolderStorage storage = new SerializationFolderStorage();
+        storage.addFolder("Work");
+        storage.addFolder("Archive");
+        List<String> createdParents = new ArrayList<>();
+
+        Assertions.assertEquals(Map.of("Work", "Archive/2024/Q1/Work"),
+                storage.renameFolder("Work", "Archive/2024/Q1/Work", createdParents));
+        Assertions.assertEquals(List.of("Archive/2024", "Archive/2024/Q1"), createdParents);
+
+        // Undoing the rename removes the created parents again, deepest first, but keeps the existing 'Archive'.
+        storage.renameFolder("Archive/2024/Q1/Work", "Work");
+        Assertions.assertTrue(storage.deleteEmptyFolder("Archive/2024/Q1"));
+        Assertions.assertTrue(storage.deleteEmptyFolder("Archive/2024"));
+        Assertions.assertEquals(List.of("Applications", "Archive", "Email Accounts", "Websites", "Work"),
+                names(storage.getFolders()));
+
+        storage.addFolder("Archive/2023");
+        Assertions.assertFalse(storage.deleteEmptyFolder("Archive"));
+        Assertions.assertTrue(storage.folderExists("Archive/2023"));
+    }
+
+    @Test
+    public void testFoldersArePersistedNextToTheVault() throws IOException {
+        SerializationFolderStorage storage = new SerializationFolderStorage();
+        storage.addFolder("Work/Servers");
+        storage.deleteFolder("Applications");
+        storage.saveFolders(tempDir.toString());
+
+        SerializationFolderStorage loaded = new SerializationFolderStorage();
+        loaded.loadFolders(tempDir.toString());
+        Assertions.assertEquals(storage.getFolders(), loaded.getFolders());
+
+        SerializationFolderStorage fresh = new SerializationFolderStorage();
+        fresh.loadFolders(tempDir.resolve("missing").toString());
+        Assertions.assertEquals(List.of("Applications", "Email Accounts", "Websites"), names(fresh.getFolders()));
+    }
+
+    @Test
+    public void testConcurrentCreateAndDelete() throws Exception {
+        SerializationFolderStorage storage = new SerializationFolderStorage();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        String folderName = "Root" + random.nextInt(4) + "/Child" + random.nextInt(8) + "/Leaf" + random.nextInt(4);
+                        switch (random.nextInt(4)) {
+                            case 0 -> {
+                                if (storage.addFolder(folderName)) created.incrementAndGet();
+                            }
+                            case 1 -> deleted.addAndGet(storage.deleteFolder(folderName).size());
+                            case 2 -> deleted.addAndGet(storage.deleteFolder(folderName.substring(0, folderName.lastIndexOf('/'))).size());
+                            default -> storage.renameFolder("Root" + thread % 4, "Root" + (thread + 1) % 4);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // No folder may outlive its parent, whatever the interleaving was.
+        for (Folder folder : storage.getFolders()) {
+            if (folder.parentName() != null) Assertions.assertTrue(storage.folderExists(folder.parentName()), folder.folderName());
+        }
+        Assertions.assertTrue(created.get() > 0);
+        Assertions.assertTrue(deleted.get() > 0);
+    }
+
+    @Test
+    public void testOnlyOneConcurrentAddSucceeds() throws Exception {
+        SerializationFolderStorage storage = new SerializationFolderStorage();
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                String folderName = "Shared" + round + "/Child";
+                List<Callable<Boolean>> adds = Collections.nCopies(threads, () -> {
+                    start.await();
+                    return storage.addFolder(folderName);
+                });
+                int successes = 0;
+                for (Future<Boolean> result : executor.invokeAll(adds)) if (result.get()) successes++;
+                Assertions.assertEquals(1, successes, folderName);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+package com.example.storage;
+
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.security.EntryEncryptionEngine;
+import com.example.security.KeyDerivationService;
+import com.example.security.SecretFingerprinter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SerializationPasswordStorageTest {
+
+    private static final PasswordSaveCallback NO_OP_CALLBACK = new PasswordSaveCallback() {
+        @Override
+        public void onPasswordSaveSuccess() {
+        }
+
+        @Override
+        public void onPasswordSaveError(String errorMessage) {
+        }
+
+        @Override
+        public void onAddPasswordEntrySuccess() {
+        }
+
+        @Override
+        public void onAddPasswordEntryError(String error) {
+        }
+    };
+
+    @Test
+    public void testAddRejectsDuplicateEntry() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        List<String> errors = new ArrayList<>();
+        PasswordSaveCallback callback = new PasswordSaveCallback() {
+            @Override
+            public void onPasswordSaveSuccess() {
+            }
+
+            @Override
+            public void onPasswordSaveError(String errorMessage) {
+            }
+
+            @Override
+            public void onAddPasswordEntrySuccess() {
+            }
+
+            @Override
+            public void onAddPasswordEntryError(String error) {
+                errors.add(error);
+            }
+        };
+
+        storage.addPasswordEntry(new PasswordEntry("user", "secret", "example.com", "Websites"), callback);
+        storage.addPasswordEntry(new PasswordEntry("user", "secret", "example.com", "Websites"), callback);
+
+        Assertions.assertEquals(1, storage.size());
+        Assertions.assertEquals(List.of("password_already_exists"), errors);
+    }
+
+    @Test
+    public void testRemoveUpdatesAccountIndex() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordEntry entry = new PasswordEntry("user", "secret", "example.com", "Websites");
+        storage.addPasswordEntry(entry, NO_OP_CALLBACK);
+        Assertions.assertTrue(storage.accountAlreadyExists("example.com", "user"));
+
+        storage.removePasswordEntry(entry);
+
+        Assertions.assertFalse(storage.passwordAlreadyExists(entry));
+        Assertions.assertFalse(storage.accountAlreadyExists("example.com", "user"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> storage.removePasswordEntry(entry));
+    }
+
+    @Test
+    public void testEntriesKeepInsertionOrder() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordEntry first = new PasswordEntry("a", "1", "one.com", "Websites");
+        PasswordEntry second = new PasswordEntry("b", "2", "two.com", "Websites");
+        PasswordEntry third = new PasswordEntry("c", "3", "three.com", "Websites");
+
+        Assertions.assertEquals(3, storage.addPasswordEntries(List.of(first, second, third, second)));
+        storage.removePasswordEntry(second);
+
+        Assertions.assertEquals(List.of(first, third), storage.getPasswordEntries());
+    }
+
+    @Test
+    public void testBulkInsertIsLinear() {
+        List<PasswordEntry> small = newEntries(10_000);
+        List<PasswordEntry> large = newEntries(100_000);
+
+        // Ten times the entries should take about ten times as long; a quadratic list scan takes about a hundred.
+        // The timeout is only a backstop in case the inserts hang.
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            insertionTime(small);
+            long smallTime = Math.min(insertionTime(small), insertionTime(small));
+            long largeTime = insertionTime(large);
+            double ratio = (double) largeTime / smallTime;
+            Assertions.assertTrue(ratio < 30, "100k inserts took " + ratio + " times as long as 10k inserts");
+        });
+    }
+
+    private static List<PasswordEntry> newEntries(int count) {
+        List<PasswordEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new PasswordEntry("user" + i, "secret" + i, "site" + i + ".com", "Websites"));
+        }
+        return entries;
+    }
+
+    /**
+     * Adds the entries one by one, checks they were all indexed and adds them again in bulk to a second storage.
+     */
+    private static long insertionTime(List<PasswordEntry> entries) {
+        long start = System.nanoTime();
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        for (PasswordEntry entry : entries) storage.addPasswordEntry(entry, NO_OP_CALLBACK);
+        for (PasswordEntry entry : entries) Assertions.assertTrue(storage.passwordAlreadyExists(entry));
+        Assertions.assertEquals(entries.size(), new SerializationPasswordStorage().addPasswordEntries(entries));
+        long elapsed = System.nanoTime() - start;
+        Assertions.assertEquals(entries.size(), storage.size());
+        return elapsed;
+    }
+
+    @Test
+    public void testFolderIndexFollowsRenameAndDelete() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordEntry mail = new PasswordEntry("a", "1", "mail.com", "Email Accounts");
+        PasswordEntry shop = new PasswordEntry("b", "2", "shop.com", "Websites");
+        PasswordEntry bank = new PasswordEntry("c", "3", "bank.com", "Websites");
+        storage.addPasswordEntries(List.of(mail, shop, bank));
+        Assertions.assertEquals(List.of(shop, bank), storage.getPasswordEntriesInFolder("Websites"));
+        Assertions.assertEquals(Map.of("Websites", 2, "Email Accounts", 1), storage.getFolderEntryCounts());
+
+        Assertions.assertEquals(2, storage.renameFolder("Websites", "Shopping"));
+
+        Assertions.assertEquals(0, storage.getFolderEntryCount("Websites"));
+        Assertions.assertEquals(List.of(new PasswordEntry("b", "2", "shop.com", "Shopping"),
+                new PasswordEntry("c", "3", "bank.com", "Shopping")), storage.getPasswordEntriesInFolder("Shopping"));
+
+        Assertions.assertEquals(2, storage.removeFolderEntries("Shopping"));
+        Assertions.assertEquals(List.of(mail), storage.getPasswordEntries());
+        Assertions.assertEquals(Map.of("Email Accounts", 1), storage.getFolderEntryCounts());
+    }
+
+    @Test
+    public void testLargeFolderDeleteOnlyVisitsItsEntries() {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            entries.add(new PasswordEntry("user" + i, "secret" + i, "site" + i + ".com", i % 2 == 0 ? "Work" : "Home"));
+        }
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntries(entries);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> Assertions.assertEquals(50_000, storage.removeFolderEntries("Work")));
+        Assertions.assertEquals(50_000, storage.size());
+        Assertions.assertEquals(50_000, storage.getFolderEntryCount("Home"));
+    }
+
+    @Test
+    public void testSecretIndexFindsReusedPasswords() throws Exception {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordEntry mail = new PasswordEntry("a", "shared", "mail.com", "Email Accounts");
+        PasswordEntry shop = new PasswordEntry("b", "shared", "shop.com", "Websites");
+        PasswordEntry bank = new PasswordEntry("c", "unique", "bank.com", "Websites");
+        storage.addPasswordEntries(List.of(mail, shop, bank));
+
+        Assertions.assertEquals(List.of(shop), storage.getEntriesSharingPassword(mail));
+        Assertions.assertEquals(2, storage.countEntriesUsingPassword("shared"));
+        Assertions.assertEquals(List.of(List.of(mail, shop)), storage.getReusedPasswordGroups());
+
+        PasswordEntry newShop = new PasswordEntry("b", "changed", "shop.com", "Websites");
+        storage.editPasswordEntry(shop, newShop);
+        Assertions.assertEquals(List.of(), storage.getEntriesSharingPassword(mail));
+        Assertions.assertEquals(List.of(), storage.getReusedPasswordGroups());
+
+        // Encrypted passwords only match once the fingerprinter can decrypt them.
+        EntryEncryptionEngine engine = EntryEncryptionEngine.unlock("master".toCharArray(),
+                KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS));
+        PasswordEntry work = engine.encryptEntry(new PasswordEntry("d", "unique", "work.com", null));
+        storage.addPasswordEntries(List.of(work));
+        Assertions.assertEquals(List.of(), storage.getEntriesSharingPassword(bank));
+        storage.setSecretFingerprinter(new SecretFingerprinter(engine));
+        storage.buildSecretIndex().join();
+        Assertions.assertEquals(List.of(work), storage.getEntriesSharingPassword(bank));
+        Assertions.assertEquals(2, storage.countEntriesUsingPassword("unique"));
+    }
+
+    @Test
+    public void testSearchIndexIsBuiltInTheBackgroundAfterClear() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordEntry mail = new PasswordEntry("a", "1", "mail.com", "Email Accounts");
+        PasswordEntry shop = new PasswordEntry("b", "2", "shop.com", "Websites");
+        PasswordEntry bank = new PasswordEntry("c", "3", "bank.com", "Banking");
+        storage.addPasswordEntries(List.of(mail));
+        storage.clear();
+        storage.addPasswordEntries(List.of(mail, shop));
+
+        // Searches scan the entries until the index is ready.
+        Assertions.assertEquals(List.of(shop), storage.searchPasswordEntries("shop", 10));
+        Assertions.assertEquals(List.of(mail), storage.searchPasswordEntries("mall", 10));
+        Assertions.assertEquals(List.of(mail), storage.searchPasswordEntriesFuzzy("maol.com", 1, 10));
+        storage.buildSearchIndex().join();
+        Assertions.assertEquals(List.of(shop), storage.searchPasswordEntries("shop", 10));
+
+        // Changes made while the index is built are applied to it before it is installed.
+        storage.clear();
+        storage.addPasswordEntries(List.of(mail, shop));
+        CompletableFuture<Void> build;
+        synchronized (storage) {
+            build = storage.buildSearchIndex();
+            storage.removePasswordEntry(mail);
+            storage.addPasswordEntries(List.of(bank));
+        }
+        build.join();
+        Assertions.assertEquals(List.of(), storage.searchPasswordEntries("mail", 10));
+        Assertions.assertEquals(List.of(bank), storage.searchPasswordEntries("bank", 10));
+
+        // Once built, the index follows every change.
+        storage.addPasswordEntries(List.of(mail));
+        Assertions.assertEquals(List.of(mail), storage.searchPasswordEntries("mail", 10));
+    }
+
+    @Test
+    public void testUnlockBuildsTheReuseIndexInTheBackground() throws Exception {
+        EntryEncryptionEngine engine = EntryEncryptionEngine.unlock("master".toCharArray(),
+                KeyDerivationService.newParameters(KeyDerivationService.MIN_ITERATIONS));
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordEntry mail = engine.encryptEntry(new PasswordEntry("a", "shared", "mail.com", null));
+        PasswordEntry shop = engine.encryptEntry(new PasswordEntry("b", "shared", "shop.com", null));
+        PasswordEntry bank = engine.encryptEntry(new PasswordEntry("c", "", "bank.com", null));
+        PasswordEntry work = engine.encryptEntry(new PasswordEntry("d", "shared", "work.com", null));
+        storage.addPasswordEntries(List.of(mail, shop, bank));
+        Thread caller = Thread.currentThread();
+        AtomicInteger fingerprinted = new AtomicInteger();
+        AtomicInteger fingerprintedByCaller = new AtomicInteger();
+        SecretFingerprinter counting = new SecretFingerprinter(engine) {
+            @Override
+            public String fingerprint(String password) {
+                fingerprinted.incrementAndGet();
+                if (Thread.currentThread() == caller) fingerprintedByCaller.incrementAndGet();
+                return super.fingerprint(password);
+            }
+        };
+
+        // Queries made while the index is built neither decrypt anything nor wait; they find no reuse yet.
+        // Changes made meanwhile are applied to the index before it is installed.
+        CompletableFuture<Void> build;
+        synchronized (storage) {
+            storage.setSecretFingerprinter(counting);
+            build = storage.buildSecretIndex();
+            Assertions.assertEquals(0, storage.countEntriesUsingPassword("shared"));
+            Assertions.assertEquals(List.of(), storage.getReusedPasswordGroups());
+            storage.removePasswordEntry(shop);
+            storage.addPasswordEntries(List.of(work));
+        }
+        build.join();
+
+        Assertions.assertEquals(0, fingerprintedByCaller.get());
+        Assertions.assertEquals(4, fingerprinted.get());
+        Assertions.assertEquals(List.of(List.of(mail, work)), storage.getReusedPasswordGroups());
+        Assertions.assertEquals(2, storage.countEntriesUsingPassword("shared"));
+        Assertions.assertEquals(0, storage.countEntriesUsingPassword(""));
+        Assertions.assertEquals(4, fingerprinted.get());
+    }
+
+}
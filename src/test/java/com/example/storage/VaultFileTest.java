@@ -0,0 +1,317 @@
+package com.example.storage;
+
+import com.example.interfaces.PasswordLoadCallback;
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class VaultFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<PasswordEntry> sampleEntries(int count) {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new PasswordEntry("user" + i, "pässwörd" + i, "site" + i + ".com", i % 2 == 0 ? "Websites" : null));
+        }
+        return entries;
+    }
+
+    private static byte[] writeVault(List<PasswordEntry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (VaultWriter writer = new VaultWriter(bytes)) {
+            for (PasswordEntry entry : entries) writer.write(entry);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<PasswordEntry> readVault(byte[] vault) throws IOException {
+        List<PasswordEntry> entries = new ArrayList<>();
+        try (VaultReader reader = new VaultReader(new ByteArrayInputStream(vault))) {
+            PasswordEntry entry;
+            while ((entry = reader.next()) != null) entries.add(entry);
+        }
+        return entries;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<PasswordEntry> entries = sampleEntries(50);
+        Assertions.assertEquals(entries, readVault(writeVault(entries)));
+        Assertions.assertEquals(List.of(), readVault(writeVault(List.of())));
+    }
+
+    @Test
+    public void testTruncatedVaultIsRejected() throws IOException {
+        byte[] vault = writeVault(sampleEntries(10));
+        for (int length = 0; length < vault.length; length++) {
+            byte[] truncated = Arrays.copyOf(vault, length);
+            Assertions.assertThrows(IOException.class, () -> readVault(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    public void testLoadDeliversBatchesBeforeCompletion() throws IOException {
+        List<PasswordEntry> entries = sampleEntries(2500);
+        Files.write(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME), writeVault(entries));
+        List<Integer> batchSizes = new ArrayList<>();
+        List<PasswordEntry> loaded = new ArrayList<>();
+
+        new SerializationPasswordStorage().loadPasswords(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+                loaded.addAll(passwordEntries);
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+
+            @Override
+            public void onPasswordBatchLoaded(List<PasswordEntry> passwordEntries) {
+                batchSizes.add(passwordEntries.size());
+            }
+        }, tempDir.toString());
+
+        Assertions.assertEquals(List.of(100, 1000, 1000, 400), batchSizes);
+        Assertions.assertEquals(entries, loaded);
+    }
+
+    @Test
+    public void testAsyncLoadCanBeCancelled() throws Exception {
+        Files.write(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME), writeVault(sampleEntries(5000)));
+        CountDownLatch firstBatch = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+
+        CompletableFuture<Void> load = storage.loadPasswordsAsync(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+                events.add("success");
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                events.add("error");
+            }
+
+            @Override
+            public void onPasswordBatchLoaded(List<PasswordEntry> passwordEntries) {
+                firstBatch.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onPasswordLoadCancelled() {
+                events.add("cancelled");
+            }
+        }, tempDir.toString());
+
+        Assertions.assertTrue(firstBatch.await(10, TimeUnit.SECONDS));
+        load.cancel(false);
+        resume.countDown();
+        Assertions.assertThrows(CancellationException.class, () -> load.get(10, TimeUnit.SECONDS));
+
+        // The cancelled future completes right away, so wait for the load thread to report.
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (storage.size() != 0 || events.isEmpty()) {
+            if (System.currentTimeMillis() > deadline) Assertions.fail("load did not stop");
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(List.of("cancelled"), events);
+    }
+
+    @Test
+    public void testCancelledLoadKeepsEntriesOfTheNextLoad() throws Exception {
+        List<PasswordEntry> entries = sampleEntries(5000);
+        Files.write(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME), writeVault(entries));
+        CountDownLatch firstBatch = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+
+        CompletableFuture<Void> load = storage.loadPasswordsAsync(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+                Assertions.fail("cancelled load succeeded");
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+
+            @Override
+            public void onPasswordBatchLoaded(List<PasswordEntry> passwordEntries) {
+                firstBatch.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onPasswordLoadCancelled() {
+                stopped.countDown();
+            }
+        }, tempDir.toString());
+        Assertions.assertTrue(firstBatch.await(10, TimeUnit.SECONDS));
+        load.cancel(false);
+
+        // The next load finishes while the cancelled one is still running.
+        List<PasswordEntry> loaded = new ArrayList<>();
+        storage.loadPasswords(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+                loaded.addAll(passwordEntries);
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+        }, tempDir.toString());
+        resume.countDown();
+
+        Assertions.assertTrue(stopped.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(entries, loaded);
+        Assertions.assertEquals(entries, storage.getPasswordEntries());
+        storage.close();
+    }
+
+    @Test
+    public void testLegacyFileIsMigrated() throws IOException {
+        List<PasswordEntry> entries = sampleEntries(20);
+        Path legacyFile = tempDir.resolve(LegacyVaultMigrator.LEGACY_FILE_NAME);
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(Files.newOutputStream(legacyFile))) {
+            outputStream.writeObject(new ArrayList<>(entries));
+        }
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+
+        Assertions.assertEquals(20, LegacyVaultMigrator.migrate(legacyFile, vaultFile));
+
+        Assertions.assertFalse(Files.exists(legacyFile));
+        Assertions.assertEquals(entries, readVault(Files.readAllBytes(vaultFile)));
+    }
+
+    @Test
+    public void testMappedReaderDecodesOnAccess() throws IOException {
+        List<PasswordEntry> entries = sampleEntries(3000);
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        Files.write(vaultFile, writeVault(entries));
+
+        try (MappedVaultReader reader = MappedVaultReader.open(vaultFile)) {
+            Assertions.assertEquals(3000, reader.size());
+            Assertions.assertEquals(entries.get(2999), reader.get(2999));
+            Assertions.assertEquals(entries.get(0), reader.get(0));
+            Assertions.assertEquals(entries, reader);
+        }
+    }
+
+    @Test
+    public void testMappedReaderRejectsTruncatedVault() throws IOException {
+        byte[] vault = writeVault(sampleEntries(10));
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        for (int length = 0; length < vault.length; length += 7) {
+            Files.write(vaultFile, Arrays.copyOf(vault, length));
+            Assertions.assertThrows(IOException.class, () -> MappedVaultReader.open(vaultFile).close(), "length " + length);
+        }
+    }
+
+    @Test
+    public void testKdfParametersAreStoredInTheHeader() throws IOException {
+        KdfParameters parameters = KeyDerivationService.newParameters(123_000);
+        List<PasswordEntry> entries = sampleEntries(5);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (VaultWriter writer = new VaultWriter(bytes, parameters)) {
+            for (PasswordEntry entry : entries) writer.write(entry);
+        }
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        Files.write(vaultFile, bytes.toByteArray());
+
+        try (VaultReader reader = new VaultReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Assertions.assertEquals(parameters, reader.getKdfParameters());
+        }
+        try (MappedVaultReader reader = MappedVaultReader.open(vaultFile)) {
+            Assertions.assertEquals(parameters, reader.getKdfParameters());
+            Assertions.assertEquals(entries, reader);
+        }
+
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.loadPasswords(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+        }, tempDir.toString());
+        Assertions.assertEquals(parameters, storage.getKdfParameters());
+        storage.setKdfParameters(KeyDerivationService.newParameters(456_000));
+        storage.savePasswords(new PasswordSaveCallback() {
+            @Override
+            public void onPasswordSaveSuccess() {
+            }
+
+            @Override
+            public void onPasswordSaveError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+
+            @Override
+            public void onAddPasswordEntrySuccess() {
+            }
+
+            @Override
+            public void onAddPasswordEntryError(String error) {
+            }
+        }, tempDir.toString());
+        storage.close();
+        try (MappedVaultReader reader = MappedVaultReader.open(vaultFile)) {
+            Assertions.assertEquals(456_000, reader.getKdfParameters().iterations());
+        }
+    }
+
+    @Test
+    public void testVersionOneVaultIsStillRead() throws IOException {
+        List<PasswordEntry> entries = sampleEntries(10);
+        byte[] vault = writeVault(entries);
+        // A version 1 header is the same as a version 2 header without flags.
+        ByteBuffer.wrap(vault).putShort(Integer.BYTES, (short) 1);
+
+        Assertions.assertEquals(entries, readVault(vault));
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        Files.write(vaultFile, vault);
+        try (MappedVaultReader reader = MappedVaultReader.open(vaultFile)) {
+            Assertions.assertNull(reader.getKdfParameters());
+            Assertions.assertEquals(entries, reader);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.example.storage;
+
+import com.example.interfaces.PasswordLoadCallback;
+import com.example.interfaces.PasswordSaveCallback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VaultJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final PasswordSaveCallback FAIL_ON_ERROR = new PasswordSaveCallback() {
+        @Override
+        public void onPasswordSaveSuccess() {
+        }
+
+        @Override
+        public void onPasswordSaveError(String errorMessage) {
+            Assertions.fail(errorMessage);
+        }
+
+        @Override
+        public void onAddPasswordEntrySuccess() {
+        }
+
+        @Override
+        public void onAddPasswordEntryError(String error) {
+            Assertions.fail(error);
+        }
+    };
+
+    private static PasswordEntry entry(int i) {
+        return new PasswordEntry("user" + i, "secret" + i, "site" + i + ".com", "Websites");
+    }
+
+    private List<PasswordEntry> load() {
+        List<PasswordEntry> loaded = new ArrayList<>();
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.loadPasswords(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+                loaded.addAll(passwordEntries);
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+        }, tempDir.toString());
+        storage.close();
+        return loaded;
+    }
+
+    @Test
+    public void testReplayReturnsChangesInOrder() throws IOException {
+        List<VaultJournal.Change> changes = List.of(
+                VaultJournal.Change.add(entry(1)),
+                VaultJournal.Change.edit(entry(1), entry(2)),
+                VaultJournal.Change.remove(entry(2)));
+        try (VaultJournal journal = VaultJournal.open(tempDir)) {
+            for (VaultJournal.Change change : changes) journal.append(change);
+        }
+
+        List<VaultJournal.Change> replayed = new ArrayList<>();
+        Assertions.assertEquals(3, VaultJournal.replay(tempDir, replayed::add));
+        Assertions.assertEquals(changes, replayed);
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws IOException {
+        try (VaultJournal journal = VaultJournal.open(tempDir)) {
+            journal.append(VaultJournal.Change.add(entry(1)));
+            journal.append(VaultJournal.Change.add(entry(2)));
+        }
+        Path journalFile = tempDir.resolve(VaultJournal.JOURNAL_FILE_PREFIX + 1);
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3); // Simulate a crash in the middle of the second append
+        }
+
+        try (VaultJournal journal = VaultJournal.open(tempDir)) {
+            journal.append(VaultJournal.Change.add(entry(3)));
+        }
+
+        List<VaultJournal.Change> replayed = new ArrayList<>();
+        VaultJournal.replay(tempDir, replayed::add);
+        Assertions.assertEquals(List.of(VaultJournal.Change.add(entry(1)), VaultJournal.Change.add(entry(3))), replayed);
+    }
+
+    @Test
+    public void testCommittedChangesSurviveRestart() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.addPasswordEntry(entry(1), FAIL_ON_ERROR);
+        storage.commitChanges(FAIL_ON_ERROR, tempDir.toString()); // First commit writes the snapshot
+        long snapshotSize = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME).toFile().length();
+
+        storage.addPasswordEntry(entry(2), FAIL_ON_ERROR);
+        storage.commitChanges(FAIL_ON_ERROR, tempDir.toString());
+        storage.editPasswordEntry(entry(1), entry(3));
+        storage.removePasswordEntry(entry(2));
+        storage.addPasswordEntry(entry(4), FAIL_ON_ERROR);
+        // No close(): the storage is abandoned as if the process had crashed.
+
+        Assertions.assertEquals(snapshotSize, tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME).toFile().length());
+        Assertions.assertEquals(List.of(entry(3), entry(4)), load());
+    }
+
+    @Test
+    public void testCompactionFoldsJournalIntoSnapshot() throws IOException {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.setCompactionThreshold(256);
+        storage.commitChanges(FAIL_ON_ERROR, tempDir.toString());
+        List<PasswordEntry> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            storage.addPasswordEntry(entry(i), FAIL_ON_ERROR);
+            storage.commitChanges(FAIL_ON_ERROR, tempDir.toString());
+            expected.add(entry(i));
+        }
+        storage.close();
+
+        long journalBytes;
+        try (var files = Files.list(tempDir)) {
+            journalBytes = files.filter(file -> file.getFileName().toString().startsWith(VaultJournal.JOURNAL_FILE_PREFIX))
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+        Assertions.assertTrue(journalBytes < 4096, "journal was not compacted: " + journalBytes + " bytes");
+        Assertions.assertEquals(expected, load());
+    }
+
+    @Test
+    public void testFolderRenameAndDeleteAreJournaled() {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        storage.savePasswords(FAIL_ON_ERROR, tempDir.toString());
+        storage.addPasswordEntries(List.of(entry(1), entry(2), new PasswordEntry("u", "p", "w.com", "Email Accounts")));
+        storage.renameFolder("Websites", "Sites");
+        storage.removeFolderEntries("Email Accounts");
+        storage.close();
+
+        Assertions.assertEquals(List.of(new PasswordEntry("user1", "secret1", "site1.com", "Sites"),
+                new PasswordEntry("user2", "secret2", "site2.com", "Sites")), load());
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.example.storage;
+
+import com.example.interfaces.PasswordLoadCallback;
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.MetricsReporter;
+import com.example.metrics.OperationMetrics;
+import com.example.metrics.VaultMetrics;
+import com.example.security.KeyDerivationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VaultMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testHistogramQuantilesAreWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) histogram.record(value * 1000);
+
+        Assertions.assertEquals(100_000, histogram.getCount());
+        Assertions.assertEquals(100_000_000, histogram.getMaxNanos());
+        Assertions.assertEquals(50_000_500, histogram.getMeanNanos(), 1);
+        Assertions.assertEquals(50_000_000, histogram.getValueAtQuantile(0.5), 50_000_000 * 0.0625);
+        Assertions.assertEquals(99_000_000, histogram.getValueAtQuantile(0.99), 99_000_000 * 0.0625);
+        Assertions.assertEquals(100_000_000, histogram.getValueAtQuantile(1));
+        histogram.reset();
+        Assertions.assertEquals(0, histogram.getValueAtQuantile(0.5));
+    }
+
+    @Test
+    public void testStorageOperationsAreRecorded() throws IOException {
+        VaultMetrics.reset();
+        List<String> errors = new ArrayList<>();
+        PasswordSaveCallback callback = new PasswordSaveCallback() {
+            @Override
+            public void onPasswordSaveSuccess() {
+            }
+
+            @Override
+            public void onPasswordSaveError(String errorMessage) {
+                errors.add(errorMessage);
+            }
+
+            @Override
+            public void onAddPasswordEntrySuccess() {
+            }
+
+            @Override
+            public void onAddPasswordEntryError(String error) {
+                errors.add(error);
+            }
+        };
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordEntry entry = new PasswordEntry("user", "secret", "example.com", "Websites");
+        storage.addPasswordEntry(entry, callback);
+        storage.savePasswords(callback, tempDir.toString());
+        PasswordEntry edited = new PasswordEntry("user", "rotated", "example.com", "Websites");
+        storage.updatePasswordEntry(storage.getEntryId(entry), edited);
+        storage.removePasswordEntry(edited);
+        storage.savePasswords(callback, tempDir.resolve("missing").toString());
+        storage.close();
+        // Loading the vault and calibrating the KDF are neither additions nor key derivations.
+        SerializationPasswordStorage reloaded = new SerializationPasswordStorage();
+        reloaded.loadPasswords(new PasswordLoadCallback() {
+            @Override
+            public void onPasswordLoadSuccess(List<PasswordEntry> passwordEntries) {
+            }
+
+            @Override
+            public void onPasswordLoadError(String errorMessage) {
+                errors.add(errorMessage);
+            }
+        }, tempDir.toString());
+        reloaded.close();
+        KeyDerivationService.calibrate(Duration.ofMillis(10));
+
+        Assertions.assertEquals(1, errors.size());
+        Assertions.assertEquals(1, VaultMetrics.ADD.getCount());
+        Assertions.assertEquals(1, VaultMetrics.EDIT.getCount());
+        Assertions.assertEquals(1, VaultMetrics.REMOVE.getCount());
+        Assertions.assertEquals(1, VaultMetrics.LOAD.getCount());
+        Assertions.assertEquals(0, VaultMetrics.KEY_DERIVATION.getCount());
+        Assertions.assertEquals(2, VaultMetrics.SAVE.getCount());
+        Assertions.assertEquals(1, VaultMetrics.SAVE.getErrorCount());
+        Assertions.assertEquals(0.5, VaultMetrics.SAVE.getErrorRate());
+        Assertions.assertEquals(Files.size(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME)),
+                VaultMetrics.SAVE.getBytes());
+        Assertions.assertNotNull(VaultMetrics.SAVE.getLastError());
+
+        Path dump = tempDir.resolve("metrics.json");
+        MetricsReporter.dump(dump);
+        Assertions.assertTrue(Files.readString(dump).contains("\"save\""));
+    }
+
+    @Test
+    public void testMBeansAreRegistered() throws Exception {
+        VaultMetrics.registerMBeans();
+        VaultMetrics.registerMBeans();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        OperationMetrics metrics = VaultMetrics.LOAD;
+        Assertions.assertEquals(metrics.getCount(), server.getAttribute(VaultMetrics.objectName(metrics), "Count"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+public class VaultRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testVaultsAreSeparateAndSurviveEviction() throws IOException {
+        Map<String, String> locations = Map.of("personal", tempDir.resolve("personal").toString(),
+                "team", tempDir.resolve("team").toString());
+        PasswordEntry mail = new PasswordEntry("a", "1", "mail.com", "Email Accounts");
+        PasswordEntry build = new PasswordEntry("b", "2", "ci.example.com", "Build/Servers");
+        try (VaultRegistry registry = new VaultRegistry(locations)) {
+            Assertions.assertEquals(List.of("personal", "team"), registry.getVaultNames());
+            Assertions.assertFalse(registry.isLoaded("team"));
+
+            try (VaultRegistry.Vault personal = registry.acquire("personal");
+                 VaultRegistry.Vault team = registry.acquire("team")) {
+                personal.getPasswordStorage().addPasswordEntries(List.of(mail));
+                team.getPasswordStorage().addPasswordEntries(List.of(build));
+                team.getFolderStorage().addFolder("Build/Servers");
+                Assertions.assertNotSame(personal.getPasswordStorage(), team.getPasswordStorage());
+                // Vaults with an open handle are never evicted.
+                Assertions.assertEquals(0, registry.evictIdle(Duration.ZERO));
+            }
+            Assertions.assertEquals(2, registry.evictIdle(Duration.ZERO));
+            Assertions.assertFalse(registry.isLoaded("personal"));
+
+            try (VaultRegistry.Vault team = registry.acquire("team")) {
+                Assertions.assertEquals(List.of(build), team.getPasswordStorage().getPasswordEntries());
+                Assertions.assertTrue(team.getFolderStorage().folderExists("Build/Servers"));
+            }
+            try (VaultRegistry.Vault personal = registry.acquire("personal")) {
+                Assertions.assertEquals(List.of(mail), personal.getPasswordStorage().getPasswordEntries());
+            }
+            Assertions.assertThrows(IllegalArgumentException.class, () -> registry.acquire("missing"));
+        }
+    }
+}
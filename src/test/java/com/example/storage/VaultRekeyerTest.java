@@ -0,0 +1,154 @@
+package com.example.storage;
+
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.interfaces.VaultRekeyCallback;
+import com.example.security.EncryptionUtilities;
+import com.example.security.KdfParameters;
+import com.example.security.KeyDerivationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class VaultRekeyerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    public void shutDownPool() {
+        pool.shutdownNow();
+    }
+
+    private static class RecordingCallback implements VaultRekeyCallback {
+        final List<Long> progress = new ArrayList<>();
+        String error;
+        long rekeyed = -1;
+
+        @Override
+        public void onRekeySuccess(long entriesRekeyed) {
+            rekeyed = entriesRekeyed;
+        }
+
+        @Override
+        public void onRekeyError(String errorMessage) {
+            error = errorMessage;
+        }
+
+        @Override
+        public void onRekeyProgress(long entriesRekeyed, long totalEntries) {
+            progress.add(entriesRekeyed);
+        }
+    }
+
+    private static List<PasswordEntry> entries(int count) {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) entries.add(new PasswordEntry("user" + i, "secret" + i, "site" + i + ".com", "Websites"));
+        return entries;
+    }
+
+    private static SecretKey key(String masterPassword, KdfParameters parameters) throws GeneralSecurityException {
+        return EncryptionUtilities.deriveVaultKey(masterPassword.toCharArray(), parameters);
+    }
+
+    private static List<String> decryptPasswords(Path vaultFile, SecretKey key) throws Exception {
+        List<String> passwords = new ArrayList<>();
+        try (MappedVaultReader reader = MappedVaultReader.open(vaultFile)) {
+            for (PasswordEntry entry : reader) passwords.add(EncryptionUtilities.decrypt(entry.password(), key));
+        }
+        return passwords;
+    }
+
+    @Test
+    public void testRekeyEncryptsAndReencryptsEveryEntryInOrder() throws Exception {
+        List<PasswordEntry> entries = entries(10_000);
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        AtomicVaultFile.write(vaultFile, entries, 0);
+        KdfParameters firstParameters = KeyDerivationService.newParameters(10_000);
+        KdfParameters secondParameters = KeyDerivationService.newParameters(10_000);
+        SecretKey firstKey = key("first", firstParameters);
+        SecretKey secondKey = key("second", secondParameters);
+
+        RecordingCallback callback = new RecordingCallback();
+        Assertions.assertEquals(10_000, VaultRekeyer.rekey(vaultFile, null, firstKey, firstParameters, pool, callback));
+        Assertions.assertEquals(List.of(4096L, 8192L, 10_000L), callback.progress);
+        VaultRekeyer.rekey(vaultFile, firstKey, secondKey, secondParameters, pool, new RecordingCallback());
+
+        List<String> expected = entries.stream().map(PasswordEntry::password).toList();
+        Assertions.assertEquals(expected, decryptPasswords(vaultFile, secondKey));
+        try (MappedVaultReader reader = MappedVaultReader.open(vaultFile)) {
+            Assertions.assertEquals(secondParameters, reader.getKdfParameters());
+            Assertions.assertEquals(entries.get(9_999).website(), reader.get(9_999).website());
+        }
+    }
+
+    @Test
+    public void testWrongKeyLeavesVaultInPlace() throws Exception {
+        Path vaultFile = tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME);
+        AtomicVaultFile.write(vaultFile, entries(5_000), 0);
+        KdfParameters parameters = KeyDerivationService.newParameters(10_000);
+        SecretKey key = key("right", parameters);
+        VaultRekeyer.rekey(vaultFile, null, key, parameters, pool, new RecordingCallback());
+        byte[] encrypted = Files.readAllBytes(vaultFile);
+
+        IOException failure = Assertions.assertThrows(IOException.class, () -> VaultRekeyer.rekey(vaultFile,
+                key("wrong", parameters), key("new", parameters), parameters, pool, new RecordingCallback()));
+
+        Assertions.assertInstanceOf(GeneralSecurityException.class, failure.getCause());
+        Assertions.assertArrayEquals(encrypted, Files.readAllBytes(vaultFile));
+    }
+
+    @Test
+    public void testStorageRekeyFoldsTheJournal() throws Exception {
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        PasswordSaveCallback saveCallback = new PasswordSaveCallback() {
+            @Override
+            public void onPasswordSaveSuccess() {
+            }
+
+            @Override
+            public void onPasswordSaveError(String errorMessage) {
+                Assertions.fail(errorMessage);
+            }
+
+            @Override
+            public void onAddPasswordEntrySuccess() {
+            }
+
+            @Override
+            public void onAddPasswordEntryError(String error) {
+                Assertions.fail(error);
+            }
+        };
+        storage.savePasswords(saveCallback, tempDir.toString());
+        storage.addPasswordEntries(entries(100));
+        KdfParameters parameters = KeyDerivationService.newParameters(10_000);
+        SecretKey key = key("master", parameters);
+
+        RecordingCallback callback = new RecordingCallback();
+        storage.rekeyVault(null, key, parameters, tempDir.toString(), pool, callback);
+        storage.close();
+
+        Assertions.assertNull(callback.error);
+        Assertions.assertEquals(100, callback.rekeyed);
+        Assertions.assertEquals(parameters, storage.getKdfParameters());
+        Assertions.assertTrue(EncryptionUtilities.isEncrypted(storage.getPasswordEntries().get(0).password()));
+        Assertions.assertEquals(entries(100).stream().map(PasswordEntry::password).toList(),
+                decryptPasswords(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME), key));
+        // The reuse index follows the new key.
+        storage.buildSecretIndex().join();
+        Assertions.assertEquals(1, storage.countEntriesUsingPassword("secret0"));
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.example.storage;
+
+import com.example.interfaces.PasswordSaveCallback;
+import com.example.metrics.VaultMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VaultSaveExecutorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static PasswordSaveCallback countingCallback(AtomicInteger successes, AtomicInteger errors) {
+        return new PasswordSaveCallback() {
+            @Override
+            public void onPasswordSaveSuccess() {
+                successes.incrementAndGet();
+            }
+
+            @Override
+            public void onPasswordSaveError(String errorMessage) {
+                errors.incrementAndGet();
+            }
+
+            @Override
+            public void onAddPasswordEntrySuccess() {
+            }
+
+            @Override
+            public void onAddPasswordEntryError(String error) {
+            }
+        };
+    }
+
+    @Test
+    public void testBurstIsCoalescedIntoOneWrite() throws InterruptedException {
+        VaultMetrics.reset();
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        VaultSaveExecutor saveExecutor = new VaultSaveExecutor(storage, 500);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            storage.addPasswordEntries(List.of(new PasswordEntry("user" + i, "secret", "site.com", "Websites")));
+            saveExecutor.requestSave(countingCallback(successes, errors), tempDir.toString());
+        }
+        Assertions.assertEquals(0, VaultMetrics.SAVE.getCount());
+        Assertions.assertTrue(saveExecutor.shutdown(10, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(10, successes.get());
+        Assertions.assertEquals(0, errors.get());
+        // The ten requests were served by a single write.
+        Assertions.assertEquals(1, VaultMetrics.SAVE.getCount());
+        Assertions.assertTrue(Files.exists(tempDir.resolve(SerializationPasswordStorage.VAULT_FILE_NAME)));
+        storage.close();
+    }
+
+    @Test
+    public void testQueueDepthCoalescingAndLatencyAreRecorded() throws Exception {
+        VaultMetrics.reset();
+        SerializationPasswordStorage storage = new SerializationPasswordStorage();
+        // The window outlasts the test, so only the flush on shutdown writes.
+        VaultSaveExecutor saveExecutor = new VaultSaveExecutor(storage, 60_000);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            storage.addPasswordEntries(List.of(new PasswordEntry("user" + i, "secret", "site.com", "Websites")));
+            saveExecutor.requestSave(countingCallback(successes, errors), tempDir.toString());
+        }
+        Assertions.assertEquals(10, VaultMetrics.SAVE_QUEUE.getPendingRequests());
+        VaultMetrics.registerMBeans();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(VaultMetrics.JMX_DOMAIN + ":type=SaveQueue,name=saveQueue");
+        Assertions.assertEquals(10L, server.getAttribute(name, "PendingRequests"));
+        Assertions.assertTrue(saveExecutor.shutdown(10, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(10, successes.get());
+        Assertions.assertEquals(0, VaultMetrics.SAVE_QUEUE.getPendingRequests());
+        Assertions.assertEquals(10, VaultMetrics.SAVE_QUEUE.getRequests());
+        Assertions.assertEquals(1, VaultMetrics.SAVE_QUEUE.getWrites());
+        Assertions.assertEquals(0, VaultMetrics.SAVE_QUEUE.getFailedWrites());
+        Assertions.assertEquals(9, VaultMetrics.SAVE_QUEUE.getCoalescedRequests());
+        Assertions.assertEquals(10, VaultMetrics.SAVE_QUEUE.getMaxRequestsPerWrite());
+        Assertions.assertEquals(10.0, VaultMetrics.SAVE_QUEUE.getMeanRequestsPerWrite());
+        Assertions.assertTrue(VaultMetrics.SAVE_QUEUE.getMaxLatencyMillis() > 0);
+        Assertions.assertTrue(VaultMetrics.snapshot().containsKey("saveQueue"));
+        storage.close();
+    }
+
+    @Test
+    public void testRequestsAfterShutdownAreRejected() throws InterruptedException, IOException {
+        VaultSaveExecutor saveExecutor = new VaultSaveExecutor(new SerializationPasswordStorage());
+        saveExecutor.shutdown(1, TimeUnit.SECONDS);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        saveExecutor.requestSave(countingCallback(successes, errors), tempDir.toString());
+
+        Assertions.assertEquals(0, successes.get());
+        Assertions.assertEquals(1, errors.get());
+        try (var files = Files.list(tempDir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testUnexpectedFailureAnswersEveryRequest() throws InterruptedException {
+        VaultMetrics.reset();
+        SerializationPasswordStorage storage = new SerializationPasswordStorage() {
+            @Override
+            public void commitChanges(PasswordSaveCallback callback, String locationToSave) {
+                throw new IllegalStateException("disk gone");
+            }
+        };
+        VaultSaveExecutor saveExecutor = new VaultSaveExecutor(storage, 100);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) saveExecutor.requestSave(countingCallback(successes, errors), tempDir.toString());
+        Assertions.assertTrue(saveExecutor.shutdown(10, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(0, successes.get());
+        Assertions.assertEquals(3, errors.get());
+        Assertions.assertEquals(0, VaultMetrics.SAVE_QUEUE.getPendingRequests());
+        Assertions.assertEquals(VaultMetrics.SAVE_QUEUE.getWrites(), VaultMetrics.SAVE_QUEUE.getFailedWrites());
+    }
+
+}
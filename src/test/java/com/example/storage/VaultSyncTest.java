@@ -0,0 +1,89 @@
+package com.example.storage;
+
+import com.example.sync.DirectorySyncTransport;
+import com.example.sync.SyncResult;
+import com.example.sync.VaultSync;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+public class VaultSyncTest {
+
+    @TempDir
+    Path tempDir;
+
+    private VaultSync replica(SerializationPasswordStorage storage, String name) throws IOException {
+        Path location = Files.createDirectories(tempDir.resolve(name));
+        return new VaultSync(storage, location.toString(), new DirectorySyncTransport(tempDir.resolve("shared")));
+    }
+
+    private static void assertSameEntries(SerializationPasswordStorage expected, SerializationPasswordStorage actual) {
+        Assertions.assertEquals(new HashSet<>(expected.getPasswordEntries()), new HashSet<>(actual.getPasswordEntries()));
+    }
+
+    @Test
+    public void testOnlyChangedRecordsAreSent() throws IOException {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            entries.add(new PasswordEntry("user" + i, "secret" + i, "site" + i + ".com", "Websites"));
+        }
+        SerializationPasswordStorage first = new SerializationPasswordStorage();
+        first.addPasswordEntries(entries);
+        SerializationPasswordStorage second = new SerializationPasswordStorage();
+        VaultSync a = replica(first, "a");
+        VaultSync b = replica(second, "b");
+
+        Assertions.assertEquals(20_000, a.sync(b.getReplicaId()).recordsSent());
+        Assertions.assertEquals(20_000, b.sync(a.getReplicaId()).recordsApplied());
+        assertSameEntries(first, second);
+        Assertions.assertEquals(0, a.sync(b.getReplicaId()).recordsSent());
+
+        first.editPasswordEntry(entries.get(42), new PasswordEntry("user42", "changed", "site42.com", "Websites"));
+        SyncResult sent = a.sync(b.getReplicaId());
+        Assertions.assertEquals(1, sent.recordsSent());
+        Assertions.assertTrue(sent.bytesSent() < 512, "sent " + sent.bytesSent() + " bytes");
+        SyncResult received = b.sync(a.getReplicaId());
+        Assertions.assertEquals(1, received.recordsApplied());
+        Assertions.assertEquals(sent.bytesSent(), received.bytesReceived());
+        assertSameEntries(first, second);
+    }
+
+    @Test
+    public void testConcurrentEditsConvergeAndRemovalsPropagate() throws IOException {
+        PasswordEntry mail = new PasswordEntry("a", "1", "mail.com", "Email Accounts");
+        PasswordEntry shop = new PasswordEntry("b", "2", "shop.com", "Websites");
+        SerializationPasswordStorage first = new SerializationPasswordStorage();
+        first.addPasswordEntries(List.of(mail, shop));
+        SerializationPasswordStorage second = new SerializationPasswordStorage();
+        VaultSync a = replica(first, "a");
+        VaultSync b = replica(second, "b");
+        a.sync(b.getReplicaId());
+        b.sync(a.getReplicaId());
+
+        first.editPasswordEntry(mail, new PasswordEntry("a", "from-a", "mail.com", "Email Accounts"));
+        second.editPasswordEntry(mail, new PasswordEntry("a", "from-b", "mail.com", "Email Accounts"));
+        second.removePasswordEntry(shop);
+        a.sync(b.getReplicaId());
+        SyncResult atB = b.sync(a.getReplicaId());
+        SyncResult atA = a.sync(b.getReplicaId());
+
+        // The replica which sees both edits first resolves the conflict; the other receives the merged version.
+        Assertions.assertEquals(1, atB.conflicts());
+        Assertions.assertEquals(0, atA.conflicts());
+        assertSameEntries(first, second);
+        Assertions.assertEquals(1, first.size());
+        Assertions.assertEquals(List.of(), first.getPasswordEntries("shop.com", "b"));
+
+        // The state survives a restart.
+        VaultSync reopened = replica(first, "a");
+        Assertions.assertEquals(a.getReplicaId(), reopened.getReplicaId());
+        Assertions.assertEquals(0, reopened.sync(b.getReplicaId()).recordsSent());
+    }
+}